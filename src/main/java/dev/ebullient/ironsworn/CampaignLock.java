@@ -0,0 +1,44 @@
+package dev.ebullient.ironsworn;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A per-campaign read/write lock (see {@link CampaignRegistry#lock(String, String)}).
+ * <p>
+ * Used instead of <code>synchronized</code> because the guarded work does file and network
+ * I/O on virtual threads: a virtual thread blocked on (or holding) a monitor pins its carrier,
+ * whereas one waiting on this lock unmounts. Readers share the lock; writers are exclusive.
+ *
+ * <pre>
+ * try (var held = lock.write()) {
+ *     // ...
+ * }
+ * </pre>
+ */
+public class CampaignLock {
+
+    /** A held lock, released by {@link #close()}. */
+    @FunctionalInterface
+    public interface Held extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Acquire the shared (read) lock. */
+    public Held read() {
+        lock.readLock().lock();
+        return lock.readLock()::unlock;
+    }
+
+    /** Acquire the exclusive (write) lock. */
+    public Held write() {
+        lock.writeLock().lock();
+        return lock.writeLock()::unlock;
+    }
+
+    public boolean isWriteLocked() {
+        return lock.isWriteLocked();
+    }
+}
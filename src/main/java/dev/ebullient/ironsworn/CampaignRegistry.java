@@ -0,0 +1,170 @@
+package dev.ebullient.ironsworn;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+
+/**
+ * Lifecycle of per-campaign state held in memory: named locks, and a reference count of
+ * live {@link CampaignSession}s.
+ * <p>
+ * A campaign is evicted once no session holds it and it has not been used for
+ * <code>ironsworn.campaign.idle-evict-ms</code>, or immediately when it is deleted.
+ * Components that keep their own per-campaign maps register an eviction listener
+ * ({@link #onEvict(Consumer)}) to drop their entries, and {@link #track(String, Map)} them
+ * so their size is exported as <code>ironsworn.campaign.state.entries</code>.
+ */
+@Singleton
+public class CampaignRegistry {
+
+    /** How long an unused campaign's state is kept after its last session closes. */
+    @ConfigProperty(name = "ironsworn.campaign.idle-evict-ms", defaultValue = "900000")
+    long idleEvictMillis;
+
+    @Inject
+    MeterRegistry registry;
+
+    private static final class Entry {
+        final ConcurrentHashMap<String, CampaignLock> locks = new ConcurrentHashMap<>();
+        /** Live sessions; guarded by the entries map (only changed in compute). */
+        int sessions;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        Entry touch() {
+            lastUsed = System.currentTimeMillis();
+            return this;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    private ScheduledExecutorService sweeper;
+
+    @PostConstruct
+    void init() {
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofVirtual().name("campaign-registry-", 0).factory());
+        long interval = Math.max(1000, Math.min(idleEvictMillis, 60_000));
+        sweeper.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+        track("registry", entries);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * The campaign's lock with the given name, e.g. "journal". Callers hold it
+     * for the duration of one operation.
+     */
+    public CampaignLock lock(String campaignId, String name) {
+        return entry(campaignId).locks.computeIfAbsent(name, k -> new CampaignLock());
+    }
+
+    /**
+     * Mark the campaign as in use (it will not be evicted for the idle period).
+     */
+    public void touch(String campaignId) {
+        entry(campaignId);
+    }
+
+    /**
+     * A session opened on the campaign: its state is kept until {@link #release(String)}.
+     */
+    public void retain(String campaignId) {
+        entries.compute(campaignId, (id, e) -> {
+            Entry entry = e != null ? e.touch() : new Entry();
+            entry.sessions++;
+            return entry;
+        });
+    }
+
+    /**
+     * A session on the campaign closed. Its state is evicted after the idle period.
+     */
+    public void release(String campaignId) {
+        entries.computeIfPresent(campaignId, (id, e) -> {
+            e.sessions = Math.max(0, e.sessions - 1);
+            return e.touch();
+        });
+    }
+
+    /**
+     * Evict a campaign now (it was deleted).
+     */
+    public void remove(String campaignId) {
+        entries.remove(campaignId);
+        evicted(campaignId, "removed");
+    }
+
+    /**
+     * Register a listener called with the id of each evicted campaign.
+     */
+    public void onEvict(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Export the size of a per-campaign map as <code>ironsworn.campaign.state.entries{map=name}</code>.
+     */
+    public void track(String name, Map<?, ?> state) {
+        Gauge.builder("ironsworn.campaign.state.entries", state, Map::size)
+                .description("Campaigns with in-memory state")
+                .tag("map", name)
+                .register(registry);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    void sweep() {
+        long cutoff = System.currentTimeMillis() - idleEvictMillis;
+        for (String campaignId : entries.keySet()) {
+            boolean[] idle = { false };
+            entries.computeIfPresent(campaignId, (id, e) -> {
+                idle[0] = e.sessions == 0 && e.lastUsed < cutoff;
+                return idle[0] ? null : e;
+            });
+            if (idle[0]) {
+                evicted(campaignId, "idle");
+            }
+        }
+    }
+
+    private Entry entry(String campaignId) {
+        return entries.compute(campaignId, (id, e) -> e != null ? e.touch() : new Entry());
+    }
+
+    private void evicted(String campaignId, String reason) {
+        Log.debugf("Evicting campaign state: %s (%s)", campaignId, reason);
+        registry.counter("ironsworn.campaign.evicted", "reason", reason).increment();
+        for (Consumer<String> listener : listeners) {
+            try {
+                listener.accept(campaignId);
+            } catch (Exception e) {
+                Log.warnf(e, "Error evicting state for campaign %s", campaignId);
+            }
+        }
+    }
+}
@@ -0,0 +1,638 @@
+package dev.ebullient.ironsworn;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+import dev.ebullient.ironsworn.JournalParser.JournalBlock;
+import dev.ebullient.ironsworn.chat.MarkdownAugmenter;
+import dev.ebullient.ironsworn.model.CharacterSheet;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+
+/**
+ * Live state for a campaign, shared by every WebSocket connection open on it.
+ * <p>
+ * Holds the current character sheet, the journal block model,
+ * and the in-flight generation. Character changes are applied in memory and written
+ * behind to the {@link GameJournal} (see {@link CharacterWriteBehind}). Instances are managed
+ * by {@link CampaignSessions}.
+ * <p>
+ * Model calls run through {@link #generate(Callable)} so they can be cancelled when the player
+ * asks or the last connection closes. Cancelling interrupts the call, which cancels its response
+ * stream and so closes the request to the model server (see <code>chat.PlayNarrator</code>).
+ * Responses are journaled only once complete: a cancelled generation journals nothing.
+ * <p>
+ * Each generation is tracked as a {@link Generation} from {@link #beginGeneration(String, Subscriber)} to
+ * {@link #endGeneration()}, so a client that reconnects while one is running can wait for it
+ * (or collect a completed reply that never reached it) rather than starting another.
+ * <p>
+ * Connections that have started play are {@link Subscriber}s. What one connection produces
+ * (journal blocks, character changes, generation replies, loading and cancellation notices)
+ * is sent to it directly and broadcast to the others, so several people can watch one game
+ * with a single generation. Broadcast payloads are encoded once per protocol version and shared.
+ */
+public class CampaignSession {
+
+    /**
+     * The journal section and its (unrendered) blocks, tagged with the journal revision.
+     */
+    public record JournalHistory(long revision, String markdown, List<JournalBlock> blocks) {
+        public int indexOf(String blockId) {
+            for (int i = 0; i < blocks.size(); i++) {
+                if (blocks.get(i).id().equals(blockId)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        public Optional<JournalBlock> find(String blockId) {
+            int i = indexOf(blockId);
+            return i < 0 ? Optional.empty() : Optional.of(blocks.get(i));
+        }
+    }
+
+    /**
+     * A window of rendered blocks. The cursor is the id of the oldest block in the page;
+     * pass it back to {@link #before(String, int)} to fetch the preceding page.
+     */
+    public record HistoryPage(List<JournalBlock> blocks, boolean hasMore, String cursor) {
+    }
+
+    /** A rendered block to insert on the client after the block with the given id (null: at the top). */
+    public record BlockInsert(String after, JournalBlock block) {
+    }
+
+    /**
+     * Changes a client needs to apply to its block list: blocks to insert and ids to remove.
+     * Blocks that are unchanged are not sent.
+     */
+    public record BlockDelta(List<BlockInsert> inserts, List<String> tombstones) {
+        public boolean isEmpty() {
+            return inserts.isEmpty() && tombstones.isEmpty();
+        }
+    }
+
+    /**
+     * Result of reconciling a reconnecting client's blocks with the journal.
+     * A null delta means the client's blocks are too far behind (or unknown) and it
+     * should reset from the latest page instead.
+     */
+    public record SyncResult(BlockDelta delta, boolean hasMore, String cursor) {
+    }
+
+    /** How a connection takes part in the campaign (from the <code>role</code> field of <code>start</code>). */
+    public enum Role {
+        /** Plays: sends input, rolls moves and oracles, edits the journal. */
+        PLAYER,
+        /** Watches: receives everything the campaign produces, but cannot change it. */
+        SPECTATOR;
+
+        /**
+         * @return the role with the given wire name; anything other than "spectator" is a player
+         */
+        public static Role fromWire(String role) {
+            return "spectator".equalsIgnoreCase(role) ? SPECTATOR : PLAYER;
+        }
+    }
+
+    /** A connection receiving the campaign's broadcasts. */
+    public record Subscriber(String id, PlayProtocol protocol, OutboundChannel outbound, Role role) {
+        public boolean isSpectator() {
+            return role == Role.SPECTATOR;
+        }
+    }
+
+    /** Encodes a broadcast message for one protocol version. */
+    @FunctionalInterface
+    public interface Broadcast {
+        /**
+         * @return the message to send, or null to send nothing
+         */
+        String encode(PlayProtocol protocol) throws Exception;
+    }
+
+    /** Beyond this many blocks to reconcile, a client is reset rather than synced. */
+    static final int MAX_SYNC_BLOCKS = 200;
+
+    /** Cancellation flag of the generation running on the current thread. */
+    private static final ThreadLocal<AtomicBoolean> CANCELLED = new ThreadLocal<>();
+
+    private record InFlight(Future<?> future, AtomicBoolean cancelled) {
+    }
+
+    private final String campaignId;
+    private final GameJournal journal;
+    private final MarkdownAugmenter prettify;
+    private final ExecutorService generationExecutor;
+    private final MeterRegistry registry;
+    private final RequestWindow requests;
+    private final CharacterWriteBehind characterWriter;
+
+    private final AtomicBoolean generating = new AtomicBoolean(false);
+    private final AtomicInteger connections = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Rendered HTML by block id. Ids are content-derived, so entries never go stale. */
+    private final ConcurrentHashMap<String, String> renderedHtml = new ConcurrentHashMap<>();
+
+    private final AtomicLong generationIds = new AtomicLong();
+    private volatile InFlight inFlight;
+    private volatile Generation generation;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final DistributionSummary fanout;
+
+    private CharacterSheet character;
+    private JournalHistory history;
+
+    /** The journal as last published to subscribers. */
+    private JournalHistory published;
+
+    /** Encoded journal-derived messages shared by connections, valid for one journal revision. */
+    private final Map<String, String> shared = new HashMap<>();
+    private long sharedRevision = -1;
+
+    CampaignSession(String campaignId, GameJournal journal, MarkdownAugmenter prettify,
+            ExecutorService generationExecutor, MeterRegistry registry, int requestWindow,
+            CharacterWriteBehind characterWriter) {
+        this.campaignId = campaignId;
+        this.journal = journal;
+        this.prettify = prettify;
+        this.generationExecutor = generationExecutor;
+        this.registry = registry;
+        this.requests = new RequestWindow(requestWindow);
+        this.characterWriter = characterWriter;
+        this.fanout = DistributionSummary.builder("ironsworn.campaign.broadcast.fanout")
+                .description("Connections a campaign broadcast was sent to")
+                .register(registry);
+    }
+
+    public String campaignId() {
+        return campaignId;
+    }
+
+    /** Recent client request ids and their replies, shared by the campaign's connections. */
+    public RequestWindow requests() {
+        return requests;
+    }
+
+    /**
+     * Take the campaign's generation slot. Only one generation runs per campaign;
+     * every successful call must be paired with {@link #endGeneration()}.
+     *
+     * Other subscribers are sent <code>loading</code>.
+     *
+     * @param kind what is being generated (for logs and metrics)
+     * @param origin the connection starting the generation
+     * @return false if another generation holds the slot
+     */
+    public boolean beginGeneration(String kind, Subscriber origin) {
+        if (!generating.compareAndSet(false, true)) {
+            return false;
+        }
+        Generation started = new Generation(generationIds.incrementAndGet(), kind, origin);
+        generation = started;
+        subscribers.stream()
+                .filter(s -> s != origin)
+                .forEach(s -> s.outbound().sendLoading(started));
+        return true;
+    }
+
+    /**
+     * The generation's result has been journaled: publish its reply to any connection waiting on it.
+     * Other subscribers are sent the new journal blocks, then the rest of the reply.
+     *
+     * @return the completed generation (null if none was pending)
+     */
+    public Generation completeGeneration(Generation.Reply reply) {
+        Generation current = generation;
+        if (current == null || !current.isPending()) {
+            return null;
+        }
+        current.complete(reply);
+        publishJournal(current.origin());
+        if (broadcast(current.origin(), p -> reply.encode(p, false)) > 0) {
+            current.delivered();
+        }
+        return current;
+    }
+
+    /**
+     * Release the generation slot. A generation that did not complete (cancelled or failed)
+     * is failed, and forgotten; other subscribers are sent <code>cancelled</code>.
+     */
+    public void endGeneration() {
+        Generation current = generation;
+        if (current != null && current.isPending()) {
+            current.fail(new CancellationException("Generation did not complete"));
+            generation = null;
+            broadcast(current.origin(), p -> p.json(MessageType.CANCELLED));
+        }
+        generating.set(false);
+    }
+
+    public boolean isGenerating() {
+        return generating.get();
+    }
+
+    /**
+     * The latest generation, if it is still pending or completed but not yet delivered.
+     */
+    public Optional<Generation> activeGeneration() {
+        Generation current = generation;
+        if (current == null || current.state() == Generation.State.DELIVERED) {
+            return Optional.empty();
+        }
+        return Optional.of(current);
+    }
+
+    /**
+     * Record that a connection has been sent the reply.
+     *
+     * @return true for the first delivery
+     */
+    public boolean markDelivered(Generation delivered) {
+        return delivered != null && delivered.delivered();
+    }
+
+    /**
+     * Run a model call on its own virtual thread and wait for the result.
+     * Callers hold the generation slot ({@link #beginGeneration(String, Subscriber)}).
+     *
+     * @throws CancellationException if the generation was cancelled
+     */
+    public <T> T generate(Callable<T> call) throws Exception {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Generation current = generation;
+        Future<T> future = generationExecutor.submit(() -> {
+            CANCELLED.set(cancelled);
+            if (current != null) {
+                current.running();
+            }
+            return call.call();
+        });
+        inFlight = new InFlight(future, cancelled);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Generation interrupted");
+        } finally {
+            inFlight = null;
+        }
+    }
+
+    /**
+     * Cancel the in-flight generation, if any. The campaign's waiting handler is released at once
+     * and the thread making the model call is interrupted, which cancels a streamed model call
+     * (closing the request, so the model server stops generating).
+     *
+     * @return true if a generation was cancelled
+     */
+    public boolean cancelGeneration(String reason) {
+        InFlight current = inFlight;
+        if (current == null) {
+            return false;
+        }
+        current.cancelled().set(true);
+        if (!current.future().cancel(true)) {
+            return false;
+        }
+        Log.infof("%s: generation cancelled (%s)", campaignId, reason);
+        registry.counter("ironsworn.generation.cancelled", "reason", reason).increment();
+        return true;
+    }
+
+    /**
+     * Shut the session down (its campaign was deleted): cancel the generation, drop unwritten
+     * character changes, and disconnect its subscribers.
+     */
+    void close(String reason) {
+        cancelGeneration(reason);
+        characterWriter.discard();
+        subscribers.forEach(s -> s.outbound().disconnect());
+        subscribers.clear();
+    }
+
+    /**
+     * Called by generation work before it journals a result: a cancelled
+     * generation must not write to the journal.
+     *
+     * @throws CancellationException if the current generation has been cancelled
+     */
+    public static void ensureNotCancelled() {
+        AtomicBoolean cancelled = CANCELLED.get();
+        if ((cancelled != null && cancelled.get()) || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Generation cancelled");
+        }
+    }
+
+    public CharacterSheet character() {
+        lock.lock();
+        try {
+            if (character == null) {
+                character = journal.readCharacter(campaignId);
+            }
+            return character;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Apply a change to the character sheet. It takes effect immediately; the journal
+     * is updated shortly after (changes in quick succession are written once).
+     *
+     * @return the updated character sheet
+     */
+    public CharacterSheet updateCharacter(UnaryOperator<CharacterSheet> update) {
+        lock.lock();
+        try {
+            CharacterSheet updated = update.apply(character());
+            character = updated;
+            characterWriter.submit(updated);
+            return updated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write any pending character change to the journal now.
+     */
+    public void flushCharacter() {
+        characterWriter.flush();
+    }
+
+    public CharacterSheet replaceCharacter(CharacterSheet updated) {
+        return updateCharacter(c -> updated);
+    }
+
+    public void updateLocation(String location) {
+        // The location is part of the sheet's header: a pending sheet write must carry it
+        updateCharacter(c -> c.withLocation(location));
+    }
+
+    /**
+     * The journal and its blocks. Re-parsed only when the journal
+     * has changed since the last call; HTML is rendered on demand.
+     */
+    public JournalHistory history() {
+        lock.lock();
+        try {
+            long revision = journal.journalRevision(campaignId);
+            if (history == null || history.revision() != revision) {
+                String markdown = journal.getFullJournal(campaignId);
+                history = new JournalHistory(revision, markdown, JournalParser.parseToBlocks(markdown, null));
+            }
+            return history;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The most recent blocks, rendered.
+     */
+    public HistoryPage latest(int limit) {
+        List<JournalBlock> blocks = history().blocks();
+        return page(blocks, blocks.size(), limit);
+    }
+
+    /**
+     * Rendered blocks immediately preceding the given block id.
+     * An unknown id yields an empty page.
+     */
+    public HistoryPage before(String blockId, int limit) {
+        JournalHistory current = history();
+        int end = current.indexOf(blockId);
+        if (end < 0) {
+            return new HistoryPage(List.of(), false, null);
+        }
+        return page(current.blocks(), end, limit);
+    }
+
+    /**
+     * Render the given blocks, reusing previously rendered HTML where possible.
+     */
+    public List<JournalBlock> render(List<JournalBlock> blocks) {
+        return blocks.stream()
+                .map(b -> b.html() != null
+                        ? b
+                        : b.withHtml(renderedHtml.computeIfAbsent(b.id(), id -> prettify.markdownToHtml(b.markdown()))))
+                .toList();
+    }
+
+    /**
+     * Reconcile the blocks a reconnecting client holds (by id, oldest first) with the journal.
+     * The client keeps the window from its oldest surviving block to the end of the journal;
+     * only blocks it is missing are sent, and blocks that no longer exist are tombstoned.
+     */
+    public SyncResult sync(List<String> knownIds) {
+        List<JournalBlock> blocks = history().blocks();
+        Set<String> known = new HashSet<>(knownIds);
+        int first = -1;
+        for (int i = 0; i < blocks.size(); i++) {
+            if (known.contains(blocks.get(i).id())) {
+                first = i;
+                break;
+            }
+        }
+        if (first < 0 || blocks.size() - first > MAX_SYNC_BLOCKS) {
+            return new SyncResult(null, false, null);
+        }
+
+        List<JournalBlock> window = blocks.subList(first, blocks.size());
+        Set<String> windowIds = new HashSet<>();
+        List<BlockInsert> inserts = new ArrayList<>();
+        for (int i = 0; i < window.size(); i++) {
+            JournalBlock block = window.get(i);
+            windowIds.add(block.id());
+            if (!known.contains(block.id())) {
+                inserts.add(new BlockInsert(window.get(i - 1).id(), render(List.of(block)).getFirst()));
+            }
+        }
+        List<String> tombstones = knownIds.stream()
+                .filter(id -> !windowIds.contains(id))
+                .toList();
+        return new SyncResult(new BlockDelta(inserts, tombstones), first > 0, window.getFirst().id());
+    }
+
+    /**
+     * Blocks added and removed between an earlier snapshot of the journal and now.
+     */
+    public BlockDelta changesSince(JournalHistory before) {
+        List<JournalBlock> after = history().blocks();
+        Set<String> oldIds = new HashSet<>();
+        before.blocks().forEach(b -> oldIds.add(b.id()));
+        Set<String> newIds = new HashSet<>();
+        after.forEach(b -> newIds.add(b.id()));
+
+        List<BlockInsert> inserts = new ArrayList<>();
+        for (int i = 0; i < after.size(); i++) {
+            JournalBlock block = after.get(i);
+            if (!oldIds.contains(block.id())) {
+                String anchor = i == 0 ? null : after.get(i - 1).id();
+                inserts.add(new BlockInsert(anchor, render(List.of(block)).getFirst()));
+            }
+        }
+        List<String> tombstones = before.blocks().stream()
+                .map(JournalBlock::id)
+                .filter(id -> !newIds.contains(id))
+                .toList();
+        return new BlockDelta(inserts, tombstones);
+    }
+
+    private HistoryPage page(List<JournalBlock> blocks, int end, int limit) {
+        int start = Math.max(0, end - limit);
+        List<JournalBlock> window = render(blocks.subList(start, end));
+        return new HistoryPage(window, start > 0, window.isEmpty() ? null : window.getFirst().id());
+    }
+
+    /**
+     * Start sending this campaign's broadcasts to a connection.
+     */
+    public void subscribe(Subscriber subscriber) {
+        lock.lock();
+        try {
+            if (published == null) {
+                published = history();
+            }
+        } finally {
+            lock.unlock();
+        }
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * Send a message to every open subscriber except the sender. The message is encoded
+     * once per protocol version; subscribers speaking the same version share the payload.
+     *
+     * @param from the connection the message originates from (null: send to all)
+     * @return the number of subscribers it was sent to
+     */
+    public int broadcast(Subscriber from, Broadcast message) {
+        Map<Integer, String> encoded = new HashMap<>();
+        int sent = 0;
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber == from || !subscriber.outbound().isOpen()) {
+                continue;
+            }
+            int version = subscriber.protocol().version();
+            String payload = encoded.get(version);
+            if (payload == null && !encoded.containsKey(version)) {
+                try {
+                    payload = message.encode(subscriber.protocol());
+                } catch (Exception e) {
+                    Log.errorf(e, "%s: unable to encode broadcast", campaignId);
+                }
+                encoded.put(version, payload);
+            }
+            if (payload != null) {
+                subscriber.outbound().send(payload);
+                sent++;
+            }
+        }
+        if (sent > 0) {
+            fanout.record(sent);
+        }
+        return sent;
+    }
+
+    /**
+     * Send a changed character sheet to every subscriber except the sender.
+     * Sheets are encoded per connection: version 2 deltas depend on what each client last saw.
+     */
+    public void broadcastCharacter(Subscriber from, CharacterSheet updated) {
+        subscribers.stream()
+                .filter(s -> s != from)
+                .forEach(s -> s.outbound().sendCharacter(updated));
+    }
+
+    /**
+     * Send journal changes made since the last publish to every subscriber except the sender,
+     * which has been sent its own changes directly. Clients skip blocks they already hold.
+     */
+    public void publishJournal(Subscriber from) {
+        BlockDelta delta;
+        lock.lock();
+        try {
+            JournalHistory current = history();
+            if (published == null || published.revision() == current.revision()) {
+                return;
+            }
+            boolean audience = subscribers.stream().anyMatch(s -> s != from);
+            delta = audience ? changesSince(published) : null;
+            published = current;
+        } finally {
+            lock.unlock();
+        }
+        if (delta != null && !delta.isEmpty()) {
+            broadcast(from, p -> p.json(p.delta(MessageType.BLOCK_DELTA, delta)));
+        }
+    }
+
+    /**
+     * An encoded message derived only from the journal (such as the resume page), shared by
+     * every connection asking for the same key until the journal changes.
+     */
+    public String shared(String key, Callable<String> encoder) throws Exception {
+        lock.lock();
+        try {
+            long revision = history().revision();
+            if (revision != sharedRevision) {
+                shared.clear();
+                sharedRevision = revision;
+            }
+            String payload = shared.get(key);
+            if (payload == null) {
+                payload = encoder.call();
+                shared.put(key, payload);
+            }
+            return payload;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int retain() {
+        return connections.incrementAndGet();
+    }
+
+    int release() {
+        return connections.decrementAndGet();
+    }
+
+    public int connectionCount() {
+        return connections.get();
+    }
+}
@@ -0,0 +1,155 @@
+package dev.ebullient.ironsworn;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import dev.ebullient.ironsworn.chat.MarkdownAugmenter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+
+/**
+ * Registry of live {@link CampaignSession}s, reference-counted by open WebSocket connections.
+ * A session is created when the first connection to a campaign opens and released
+ * when the last one closes; a generation still running then is cancelled, as nobody is left to see it.
+ */
+@Singleton
+public class CampaignSessions {
+
+    /** How many recent client request ids each campaign remembers for duplicate detection. */
+    @ConfigProperty(name = "ironsworn.play.request-window", defaultValue = "128")
+    int requestWindow;
+
+    /** Character changes are written once none has arrived for this long (0: write every change). */
+    @ConfigProperty(name = "ironsworn.character.flush-quiet-ms", defaultValue = "250")
+    long characterQuietMillis;
+
+    /** Longest a character change waits to be written (the most lost if the process dies). */
+    @ConfigProperty(name = "ironsworn.character.flush-max-delay-ms", defaultValue = "2000")
+    long characterMaxDelayMillis;
+
+    @Inject
+    GameJournal journal;
+
+    @Inject
+    MarkdownAugmenter prettify;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    CampaignRegistry campaigns;
+
+    private final ConcurrentHashMap<String, CampaignSession> sessions = new ConcurrentHashMap<>();
+
+    private ExecutorService generationExecutor;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    void init() {
+        this.generationExecutor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("generation-", 0).factory());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofVirtual().name("campaign-sessions-", 0).factory());
+        campaigns.track("sessions", sessions);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sessions.values().forEach(CampaignSession::flushCharacter);
+        if (generationExecutor != null) {
+            generationExecutor.shutdownNow();
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Get (or create) the session for a campaign and register a connection on it.
+     * Waits for a dropped session's character write, so a new session reads the written sheet.
+     */
+    public CampaignSession acquire(String campaignId) {
+        try (var held = campaigns.lock(campaignId, "session").write()) {
+            return sessions.compute(campaignId, (id, existing) -> {
+                CampaignSession session = existing;
+                if (session == null) {
+                    session = new CampaignSession(id, journal, prettify, generationExecutor, registry,
+                            requestWindow, new CharacterWriteBehind(id, journal, scheduler,
+                                    characterQuietMillis, characterMaxDelayMillis, registry));
+                    campaigns.retain(id);
+                }
+                session.retain();
+                return session;
+            });
+        }
+    }
+
+    /**
+     * Unregister a connection; the session is dropped (and its generation cancelled) once no connections remain.
+     */
+    public void release(CampaignSession released) {
+        try (var held = campaigns.lock(released.campaignId(), "session").write()) {
+            CampaignSession[] dropped = { null };
+            sessions.computeIfPresent(released.campaignId(), (id, session) -> {
+                if (session != released) {
+                    // Already closed (the campaign was deleted)
+                    return session;
+                }
+                if (session.release() > 0) {
+                    return session;
+                }
+                dropped[0] = session;
+                return drop(id, session);
+            });
+            flush(dropped[0]);
+        }
+    }
+
+    private CampaignSession drop(String campaignId, CampaignSession session) {
+        Log.debugf("Released campaign session: %s", campaignId);
+        session.cancelGeneration("disconnected");
+        campaigns.release(campaignId);
+        return null;
+    }
+
+    /**
+     * Write a dropped session's pending character change: outside the map's compute, which must not block,
+     * but under the campaign's session lock, so it lands before the next session reads the sheet.
+     */
+    private void flush(CampaignSession dropped) {
+        if (dropped != null) {
+            dropped.flushCharacter();
+        }
+    }
+
+    /**
+     * Close a campaign's live session before the campaign is deleted: its generation is
+     * cancelled, its unwritten character changes are dropped (not flushed), and its
+     * connections are closed.
+     */
+    public void close(String campaignId) {
+        CampaignSession session = sessions.remove(campaignId);
+        if (session != null) {
+            Log.debugf("Closing campaign session: %s", campaignId);
+            session.close("deleted");
+            campaigns.release(campaignId);
+        }
+    }
+
+    /**
+     * Find the live session for a campaign, if any connection has it open.
+     */
+    public Optional<CampaignSession> find(String campaignId) {
+        return Optional.ofNullable(sessions.get(campaignId));
+    }
+}
@@ -0,0 +1,227 @@
+package dev.ebullient.ironsworn;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import dev.ebullient.ironsworn.model.CharacterSheet;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+
+/**
+ * Write-behind for one campaign's character sheet.
+ * <p>
+ * Sidebar controls send a burst of <code>character_update</code> messages, and each
+ * journal write is a read-modify-write of the whole file. The session applies changes in
+ * memory and submits the new sheet here; only the latest sheet is written, once no change
+ * has arrived for the quiet period, and never later than the max delay after the first
+ * unwritten change (the most that is lost if the process dies). {@link #flush()} writes
+ * immediately (the session is closing); {@link #discard()} drops unwritten changes for good
+ * (the campaign was deleted).
+ * <p>
+ * A failed write is retried with backoff (counted as <code>ironsworn.character.write.failures</code>),
+ * unless a newer sheet has been submitted meanwhile: that one is written instead. After
+ * {@value #MAX_RETRIES} retries in a row fail, the sheet is dropped.
+ * <p>
+ * A quiet period of zero writes every change through.
+ */
+public class CharacterWriteBehind {
+
+    /** First retry delay after a failed write; doubled for each further failure. */
+    static final long RETRY_DELAY_MILLIS = 250;
+    static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+    static final int MAX_RETRIES = 8;
+
+    private final String campaignId;
+    private final GameJournal journal;
+    private final ScheduledExecutorService scheduler;
+    private final long quietMillis;
+    private final long maxDelayMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Held while writing, so flushes reach the journal in order. */
+    private final ReentrantLock writing = new ReentrantLock();
+
+    private CharacterSheet pending;
+    private long pendingSince;
+    private ScheduledFuture<?> scheduled;
+    /** Writes that have failed in a row. */
+    private int failedWrites;
+    private volatile boolean discarded;
+
+    private final Counter writes;
+    private final Counter coalesced;
+    private final Counter failures;
+
+    public CharacterWriteBehind(String campaignId, GameJournal journal, ScheduledExecutorService scheduler,
+            long quietMillis, long maxDelayMillis, MeterRegistry registry) {
+        this.campaignId = campaignId;
+        this.journal = journal;
+        this.scheduler = scheduler;
+        this.quietMillis = quietMillis;
+        this.maxDelayMillis = Math.max(quietMillis, maxDelayMillis);
+        this.writes = registry.counter("ironsworn.character.writes");
+        this.coalesced = registry.counter("ironsworn.character.coalesced");
+        this.failures = registry.counter("ironsworn.character.write.failures");
+    }
+
+    /**
+     * Record the latest sheet and (re)schedule its write.
+     */
+    public void submit(CharacterSheet character) {
+        if (quietMillis <= 0) {
+            writing.lock();
+            try {
+                if (!write(character)) {
+                    retry(character);
+                }
+            } finally {
+                writing.unlock();
+            }
+            return;
+        }
+        lock.lock();
+        try {
+            if (discarded) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (pending == null) {
+                pendingSince = now;
+            } else {
+                coalesced.increment();
+            }
+            pending = character;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            long waited = TimeUnit.NANOSECONDS.toMillis(now - pendingSince);
+            long delay = Math.max(0, Math.min(quietMillis, maxDelayMillis - waited));
+            try {
+                scheduled = scheduler.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+                return;
+            } catch (RejectedExecutionException e) {
+                // Shutting down: write it now
+                scheduled = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        flush();
+    }
+
+    /**
+     * Write the latest unwritten sheet, if any, now.
+     */
+    public void flush() {
+        writing.lock();
+        try {
+            CharacterSheet character;
+            lock.lock();
+            try {
+                character = pending;
+                pending = null;
+                if (scheduled != null) {
+                    scheduled.cancel(false);
+                    scheduled = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (character != null && !write(character)) {
+                retry(character);
+            }
+        } finally {
+            writing.unlock();
+        }
+    }
+
+    /**
+     * Drop the unwritten sheet and ignore later changes. Waits for a write in progress,
+     * so nothing is written once this returns.
+     */
+    public void discard() {
+        writing.lock();
+        try {
+            lock.lock();
+            try {
+                discarded = true;
+                pending = null;
+                if (scheduled != null) {
+                    scheduled.cancel(false);
+                    scheduled = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            writing.unlock();
+        }
+    }
+
+    public boolean isDirty() {
+        lock.lock();
+        try {
+            return pending != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return false if the write failed (a discarded sheet is not written, and does not fail)
+     */
+    private boolean write(CharacterSheet character) {
+        if (discarded) {
+            return true;
+        }
+        try {
+            journal.updateCharacter(campaignId, character);
+            writes.increment();
+        } catch (RuntimeException e) {
+            failures.increment();
+            Log.warnf(e, "%s: unable to write character sheet", campaignId);
+            return false;
+        }
+        lock.lock();
+        try {
+            failedWrites = 0;
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Requeue a sheet whose write failed, to be tried again after a backoff. A newer sheet
+     * submitted since supersedes it: that one's write is already scheduled.
+     */
+    private void retry(CharacterSheet character) {
+        lock.lock();
+        try {
+            if (discarded || pending != null) {
+                return;
+            }
+            failedWrites++;
+            if (failedWrites > MAX_RETRIES) {
+                Log.errorf("%s: dropping character sheet after %d failed writes", campaignId, failedWrites);
+                failedWrites = 0;
+                return;
+            }
+            long delay = Math.min(MAX_RETRY_DELAY_MILLIS, RETRY_DELAY_MILLIS << (failedWrites - 1));
+            pending = character;
+            pendingSince = System.nanoTime();
+            try {
+                scheduled = scheduler.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shutting down: it stays pending (isDirty) but is not retried
+                scheduled = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
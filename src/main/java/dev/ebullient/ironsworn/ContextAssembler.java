@@ -0,0 +1,301 @@
+package dev.ebullient.ironsworn;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import dev.ebullient.ironsworn.ContextBudgeter.Allocation;
+import dev.ebullient.ironsworn.ContextBudgeter.Prompt;
+import dev.ebullient.ironsworn.memory.StoryMemoryService;
+import dev.ebullient.ironsworn.memory.StorySummarizer;
+import dev.ebullient.ironsworn.model.CharacterSheet;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+
+/**
+ * Gathers the inputs for a narration request concurrently: the character sheet,
+ * the recent journal, and retrieved story memory. The journal and memory are then
+ * trimmed to the prompt's token budget (see {@link ContextBudgeter}). The story summary
+ * (see {@link StorySummarizer}) is bounded in size and always sent, like the character.
+ * <p>
+ * Memory retrieval (an embedding call plus a vector search) has its own time budget.
+ * If it does not finish in time, it is dropped and narration proceeds without it.
+ * <p>
+ * Prompts are laid out from most to least stable (system prompt, story summary, recent journal,
+ * character, retrieved memory, then the turn's input), so the model server can reuse its prompt cache
+ * for the shared prefix of consecutive calls. With the {@link PromptLayout#STABLE} layout the
+ * recent journal window is aligned (see {@link GameJournal#getRecentJournal(String, int, int)}):
+ * it grows as entries are appended instead of sliding by one line each turn.
+ */
+@Singleton
+public class ContextAssembler {
+
+    /** Inputs for a single narration request. */
+    public record NarrationContext(CharacterSheet character, String storySummary, String journalContext,
+            String memoryContext) {
+        public String characterContext() {
+            return ContextAssembler.characterContext(character);
+        }
+    }
+
+    /** Inputs for a narration request whose story memory may still be being retrieved. */
+    public record DeferredContext(CharacterSheet character, String storySummary, String journalContext,
+            CompletableFuture<String> memoryContext) {
+        public String characterContext() {
+            return ContextAssembler.characterContext(character);
+        }
+    }
+
+    /** How the recent journal window is chosen. */
+    public enum PromptLayout {
+        /** The window starts on an aligned line, so consecutive prompts share a prefix. */
+        STABLE,
+        /** Exactly the last lines of the journal. */
+        RECENT
+    }
+
+    /** Journal lines read for a scene query: enough for {@link #sceneQuery(String)}'s ten non-blank lines. */
+    private static final int SCENE_LINES = 40;
+
+    @ConfigProperty(name = "ironsworn.memory.retrieve.timeout-ms", defaultValue = "2000")
+    long memoryTimeoutMillis;
+
+    @ConfigProperty(name = "ironsworn.prompt.layout", defaultValue = "stable")
+    PromptLayout layout;
+
+    /** With the stable layout, the journal window moves in steps of this many lines. */
+    @ConfigProperty(name = "ironsworn.prompt.journal-align", defaultValue = "20")
+    int journalAlign;
+
+    /** Most journal lines read for a prompt, before trimming to the token budget. */
+    @ConfigProperty(name = "ironsworn.context.journal-read-lines", defaultValue = "400")
+    int journalReadLines;
+
+    /** With the stable layout, journal blocks are dropped this many at a time. */
+    @ConfigProperty(name = "ironsworn.context.journal-block-align", defaultValue = "4")
+    int journalBlockAlign;
+
+    @Inject
+    GameJournal journal;
+
+    @Inject
+    ContextBudgeter budgeter;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    StoryMemoryService storyMemory;
+
+    @Inject
+    StorySummarizer storySummarizer;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void init() {
+        this.executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("context-assembly-", 0).factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Assemble context using a fixed memory query (e.g. the player's input).
+     *
+     * @param memoryQuery the memory retrieval query; null for no memory (its share of the budget goes to the journal)
+     * @param fixed the prompt's other arguments (turn input, instructions), counted against the budget
+     */
+    public NarrationContext assemble(CampaignSession session, Prompt prompt, String memoryQuery, String... fixed) {
+        return assemble(session, prompt, memoryQuery == null ? null : () -> memoryQuery, fixed);
+    }
+
+    /**
+     * Assemble context, deriving the memory query from the end of the journal.
+     *
+     * @param memoryQuery function from the journal's last lines to the memory retrieval query
+     * @param fixed the prompt's other arguments (turn input, instructions), counted against the budget
+     */
+    public NarrationContext assemble(CampaignSession session, Prompt prompt, UnaryOperator<String> memoryQuery,
+            String... fixed) {
+        return assemble(session, prompt, sceneQuery(session.campaignId(), memoryQuery), fixed);
+    }
+
+    /** @param memoryQuery null to skip retrieval */
+    private NarrationContext assemble(CampaignSession session, Prompt prompt, Supplier<String> memoryQuery,
+            String... fixed) {
+        String campaignId = session.campaignId();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(memoryTimeoutMillis);
+
+        CompletableFuture<CharacterSheet> character = CompletableFuture.supplyAsync(
+                session::character, executor);
+        CompletableFuture<String> journalCtx = CompletableFuture.supplyAsync(
+                () -> recentJournal(campaignId), executor);
+        Future<String> memoryCtx = memoryQuery == null
+                ? CompletableFuture.completedFuture("")
+                : retrieve(campaignId, memoryQuery);
+
+        CharacterSheet sheet = character.join();
+        String summary = storySummarizer.contextBlock(campaignId);
+        Allocation allocation = allocate(prompt, sheet, summary, fixed);
+        if (memoryQuery == null) {
+            allocation = allocation.withoutMemory();
+        }
+
+        String memory = budgeter.trimMemory(awaitMemory(campaignId, memoryCtx, deadline), allocation.memory());
+        int memoryTokens = budgeter.count(memory);
+        // Memory's whole share is reserved, so the journal window does not move with what retrieval found
+        String recent = budgeter.trimJournal(journalCtx.join(), allocation.available() - allocation.memory(),
+                layout == PromptLayout.STABLE ? journalBlockAlign : 1);
+        int journalTokens = budgeter.count(recent);
+
+        record(prompt, "memory", memoryTokens);
+        record(prompt, "journal", journalTokens);
+        record(prompt, "summary", budgeter.count(summary));
+        Log.debugf("%s: %s context: %d tokens available, journal %d, memory %d",
+                campaignId, prompt, allocation.available(), journalTokens, memoryTokens);
+        return new NarrationContext(sheet, summary, recent, memory);
+    }
+
+    /**
+     * Assemble context without waiting for story memory, so retrieval can overlap other work
+     * (e.g. choosing an oracle). The journal is trimmed as if memory used its whole share of
+     * the budget. The memory future completes, trimmed, within the retrieval time budget
+     * (empty if retrieval is late or fails).
+     *
+     * @param memoryQuery function from the recent journal text to the memory retrieval query
+     * @param fixed the prompt's other arguments (turn input, instructions), counted against the budget
+     */
+    public DeferredContext assembleDeferred(CampaignSession session, Prompt prompt, UnaryOperator<String> memoryQuery,
+            String... fixed) {
+        String campaignId = session.campaignId();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(memoryTimeoutMillis);
+
+        CompletableFuture<String> journalCtx = CompletableFuture.supplyAsync(
+                () -> recentJournal(campaignId), executor);
+        Future<String> memoryCtx = retrieve(campaignId, sceneQuery(campaignId, memoryQuery));
+
+        CharacterSheet sheet = session.character();
+        String summary = storySummarizer.contextBlock(campaignId);
+        Allocation allocation = allocate(prompt, sheet, summary, fixed);
+        String recent = budgeter.trimJournal(journalCtx.join(), allocation.available() - allocation.memory(),
+                layout == PromptLayout.STABLE ? journalBlockAlign : 1);
+        int journalTokens = budgeter.count(recent);
+        record(prompt, "journal", journalTokens);
+        record(prompt, "summary", budgeter.count(summary));
+
+        CompletableFuture<String> memory = CompletableFuture.supplyAsync(() -> {
+            String trimmed = budgeter.trimMemory(awaitMemory(campaignId, memoryCtx, deadline), allocation.memory());
+            record(prompt, "memory", budgeter.count(trimmed));
+            return trimmed;
+        }, executor);
+        Log.debugf("%s: %s context: %d tokens available, journal %d, memory pending",
+                campaignId, prompt, allocation.available(), journalTokens);
+        return new DeferredContext(sheet, summary, recent, memory);
+    }
+
+    /**
+     * Start memory retrieval, independently of the journal read. Retrieval runs as a plain
+     * executor task (not a CompletableFuture stage) so cancelling it interrupts the thread
+     * waiting for the query embedding.
+     */
+    private Future<String> retrieve(String campaignId, Supplier<String> memoryQuery) {
+        return executor.submit(() -> storyMemory.relevantMemory(campaignId, memoryQuery.get()));
+    }
+
+    /** A query derived from the end of the journal, which is read on its own (not the full prompt window). */
+    private Supplier<String> sceneQuery(String campaignId, UnaryOperator<String> memoryQuery) {
+        return () -> memoryQuery.apply(journal.getRecentJournal(campaignId, SCENE_LINES));
+    }
+
+    private Allocation allocate(Prompt prompt, CharacterSheet sheet, String summary, String... fixed) {
+        String[] counted = Arrays.copyOf(fixed, fixed.length + 2);
+        counted[fixed.length] = prompt.includesCharacter() ? characterContext(sheet) : "";
+        counted[fixed.length + 1] = summary;
+        return budgeter.allocate(prompt, counted);
+    }
+
+    /**
+     * The recent journal for a prompt (up to <code>ironsworn.context.journal-read-lines</code>),
+     * windowed according to the configured layout but not yet trimmed to a budget.
+     */
+    public String recentJournal(String campaignId) {
+        return journal.getRecentJournal(campaignId, journalReadLines,
+                layout == PromptLayout.STABLE ? journalAlign : 1);
+    }
+
+    /**
+     * The current scene, as a retrieval query: the last ten non-blank lines of the journal.
+     * Blank lines are skipped so the query is the same for the raw journal and for the
+     * budgeted (re-joined) journal context.
+     */
+    public static String sceneQuery(String journal) {
+        if (journal == null) {
+            return "";
+        }
+        String[] lines = Arrays.stream(journal.split("\n"))
+                .filter(line -> !line.isBlank())
+                .toArray(String[]::new);
+        return String.join("\n", Arrays.copyOfRange(lines, Math.max(0, lines.length - 10), lines.length));
+    }
+
+    /**
+     * Character context for prompts: the name and current location.
+     */
+    public static String characterContext(CharacterSheet character) {
+        String ctx = character.name();
+        if (character.location() != null && !character.location().isBlank()) {
+            ctx += "\nCurrent location: " + character.location();
+        }
+        return ctx;
+    }
+
+    private void record(Prompt prompt, String part, int tokens) {
+        DistributionSummary.builder("ironsworn.context.tokens")
+                .description("Prompt context tokens after budgeting")
+                .tag("prompt", prompt.name().toLowerCase(Locale.ROOT))
+                .tag("part", part)
+                .register(registry)
+                .record(tokens);
+    }
+
+    private String awaitMemory(String campaignId, Future<String> memoryCtx, long deadline) {
+        try {
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            return memoryCtx.get(remaining, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Interrupts the retrieval task: it stops waiting for its query embedding
+            memoryCtx.cancel(true);
+            Log.debugf("%s: story memory retrieval exceeded %dms; narrating without it",
+                    campaignId, memoryTimeoutMillis);
+            return "";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "";
+        } catch (ExecutionException e) {
+            Log.debugf(e.getCause(), "%s: story memory retrieval failed", campaignId);
+            return "";
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package dev.ebullient.ironsworn;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import dev.ebullient.ironsworn.chat.TokenCounter;
+
+/**
+ * Fits prompt context into the model's context window, measured in tokens.
+ * <p>
+ * Parts are given budget in priority order:
+ * <ol>
+ * <li>the prompt's fixed text (system prompt, template, the turn's input and instructions)
+ * and the character are always sent;</li>
+ * <li>retrieved memory may use up to <code>ironsworn.context.memory-share</code> of what remains;
+ * excerpts are dropped from the least relevant;</li>
+ * <li>the recent journal gets the rest (memory's share is reserved even when less is retrieved,
+ * and goes to the journal when the prompt asks for no memory); blocks are dropped from the oldest.</li>
+ * </ol>
+ * <code>ironsworn.context.response-tokens</code> of the window are kept free for the reply.
+ */
+@Singleton
+public class ContextBudgeter {
+
+    /** Prompts whose context is budgeted: the resource name of their templates. */
+    public enum Prompt {
+        NARRATE("play-narrate", true),
+        MOVE_RESULT("play-narrateMoveResult", false),
+        INSPIRE("play-inspire", true);
+
+        private final String resource;
+        private final boolean character;
+
+        Prompt(String resource, boolean character) {
+            this.resource = resource;
+            this.character = character;
+        }
+
+        /** Whether the prompt includes the character context. */
+        public boolean includesCharacter() {
+            return character;
+        }
+    }
+
+    /** Token budget for the variable parts of one prompt. */
+    public record Allocation(int available, int memory) {
+        /** The same budget for a prompt sent without memory: the journal may use all of it. */
+        public Allocation withoutMemory() {
+            return new Allocation(available, 0);
+        }
+    }
+
+    /** The model's context window. */
+    @ConfigProperty(name = "ironsworn.context.max-tokens", defaultValue = "4096")
+    int maxTokens;
+
+    /** Kept free for the model's reply. */
+    @ConfigProperty(name = "ironsworn.context.response-tokens", defaultValue = "768")
+    int responseTokens;
+
+    /** Largest share of the variable budget retrieved memory may use. */
+    @ConfigProperty(name = "ironsworn.context.memory-share", defaultValue = "0.25")
+    double memoryShare;
+
+    @Inject
+    TokenCounter tokens;
+
+    /** A template expression or section tag, e.g. <code>{journalContext}</code> or <code>{#if x}</code>. */
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{[#/!]?[A-Za-z_][^{}\n]*}");
+
+    private final Map<Prompt, Integer> templateTokens = new ConcurrentHashMap<>();
+
+    /**
+     * Budget left for memory and journal once the fixed parts of the prompt are counted.
+     *
+     * @param fixed text always sent with the prompt (turn input, instructions, character)
+     */
+    public Allocation allocate(Prompt prompt, String... fixed) {
+        int used = templateTokens.computeIfAbsent(prompt, this::countTemplates);
+        for (String text : fixed) {
+            used += tokens.count(text);
+        }
+        int available = Math.max(0, maxTokens - responseTokens - used);
+        return new Allocation(available, (int) (available * memoryShare));
+    }
+
+    public int count(String text) {
+        return tokens.count(text);
+    }
+
+    /**
+     * Keep the most relevant memory excerpts (one per <code>- </code> line, in relevance order)
+     * that fit the budget.
+     */
+    public String trimMemory(String memory, int budget) {
+        if (memory == null || memory.isBlank() || tokens.count(memory) <= budget) {
+            return memory == null ? "" : memory;
+        }
+        StringBuilder sb = new StringBuilder();
+        int used = 0;
+        for (String excerpt : memory.split("\n(?=- )")) {
+            int cost = tokens.count(excerpt) + 1;
+            if (used + cost > budget) {
+                break;
+            }
+            if (!sb.isEmpty()) {
+                sb.append('\n');
+            }
+            sb.append(excerpt);
+            used += cost;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Drop the oldest journal blocks (paragraphs) until the rest fits the budget. Blocks are
+     * dropped {@code align} at a time, so the retained text keeps the same start while new
+     * entries are appended (a stable prompt prefix). The newest block is always kept.
+     */
+    public String trimJournal(String journal, int budget, int align) {
+        if (journal == null || journal.isBlank() || tokens.count(journal) <= budget) {
+            return journal == null ? "" : journal;
+        }
+        List<String> blocks = blocks(journal);
+        int step = Math.max(1, align);
+
+        // Tokens from each block to the end
+        int[] suffix = new int[blocks.size() + 1];
+        for (int i = blocks.size() - 1; i >= 0; i--) {
+            suffix[i] = suffix[i + 1] + tokens.count(blocks.get(i)) + 1;
+        }
+        int start = 0;
+        while (start < blocks.size() - 1 && suffix[start] > budget) {
+            start = Math.min(start + step, blocks.size() - 1);
+        }
+        return String.join("\n\n", blocks.subList(start, blocks.size()));
+    }
+
+    /**
+     * Split raw journal markdown into blocks at blank lines, keeping a
+     * <code>&lt;player&gt;</code> entry (which may contain blank lines) in one block.
+     */
+    static List<String> blocks(String journal) {
+        List<String> blocks = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        boolean inPlayerBlock = false;
+        for (String line : journal.split("\n")) {
+            String trimmed = line.trim();
+            if (inPlayerBlock) {
+                inPlayerBlock = !JournalParser.isPlayerEntryEnd(trimmed);
+            } else if (JournalParser.isPlayerEntry(trimmed)) {
+                inPlayerBlock = true;
+            } else if (trimmed.isEmpty()) {
+                if (!current.isEmpty()) {
+                    blocks.add(String.join("\n", current));
+                    current.clear();
+                }
+                continue;
+            }
+            current.add(line);
+        }
+        if (!current.isEmpty()) {
+            blocks.add(String.join("\n", current));
+        }
+        return blocks;
+    }
+
+    /** The templates' own text: their placeholders are replaced by the parts counted separately. */
+    private int countTemplates(Prompt prompt) {
+        return tokens.count(withoutPlaceholders(resource("prompts/" + prompt.resource + "-system.txt")))
+                + tokens.count(withoutPlaceholders(resource("prompts/" + prompt.resource + "-user.txt")));
+    }
+
+    static String withoutPlaceholders(String template) {
+        return PLACEHOLDER.matcher(template).replaceAll("");
+    }
+
+    private static String resource(String name) {
+        try (InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(name)) {
+            return in == null ? "" : new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+}
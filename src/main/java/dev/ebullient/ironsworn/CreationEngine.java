@@ -1,17 +1,17 @@
 package dev.ebullient.ironsworn;
 
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import dev.ebullient.ironsworn.chat.CreationAssistant;
+import dev.ebullient.ironsworn.chat.CreationGuide;
 import dev.ebullient.ironsworn.chat.CreationResponse;
 import dev.ebullient.ironsworn.chat.MarkdownAugmenter;
+import dev.ebullient.ironsworn.chat.ModelRoute;
+import dev.ebullient.ironsworn.chat.ModelRouter;
 import dev.ebullient.ironsworn.chat.PlayMemoryProvider;
 import dev.ebullient.ironsworn.model.CharacterSheet;
-import io.quarkus.websockets.next.WebSocketConnection;
 
 /**
  * Handles the character creation flow, extracted from PlayWebSocket.
@@ -19,68 +19,91 @@ import io.quarkus.websockets.next.WebSocketConnection;
  */
 public class CreationEngine {
 
-    private final WebSocketConnection connection;
+    private final CampaignSession.Subscriber subscriber;
+    private final OutboundChannel outbound;
     private final GameJournal journal;
-    private final CreationAssistant creationAssistant;
+    private final CreationGuide creationGuide;
     private final PlayMemoryProvider memoryProvider;
     private final MarkdownAugmenter prettify;
     private final ObjectMapper objectMapper;
+    private final CampaignSession session;
+    private final ModelRouter router;
+    private final PlayProtocol protocol;
     private final String campaignId;
-    private final AtomicBoolean generationLock;
 
-    public CreationEngine(WebSocketConnection connection, GameJournal journal,
-            CreationAssistant creationAssistant, PlayMemoryProvider memoryProvider,
+    public CreationEngine(CampaignSession.Subscriber subscriber, GameJournal journal,
+            CreationGuide creationGuide, PlayMemoryProvider memoryProvider,
             MarkdownAugmenter prettify, ObjectMapper objectMapper,
-            String campaignId, AtomicBoolean generationLock) {
-        this.connection = connection;
+            CampaignSession session, ModelRouter router) {
+        this.subscriber = subscriber;
+        this.outbound = subscriber.outbound();
         this.journal = journal;
-        this.creationAssistant = creationAssistant;
+        this.creationGuide = creationGuide;
         this.memoryProvider = memoryProvider;
         this.prettify = prettify;
         this.objectMapper = objectMapper;
-        this.campaignId = campaignId;
-        this.generationLock = generationLock;
+        this.session = session;
+        this.router = router;
+        this.protocol = subscriber.protocol();
+        this.campaignId = session.campaignId();
     }
 
     /**
-     * Handle the creation phase opening — either fresh creation or resume.
+     * Handle the creation phase opening — either fresh creation or resume. Does not call the model:
+     * see {@link #reengage()}.
+     *
+     * @return the creation phase for a fresh creation; null on resume (the conversation has been replayed)
      */
     public String handleOpen() throws Exception {
-        String existingJournal = journal.getRecentJournal(campaignId, 100);
+        var history = session.history();
+        String existingJournal = history.markdown();
         if (existingJournal.isBlank()) {
             // Fresh creation — client handles the welcome greeting
-            String name = journal.readCharacter(campaignId).name();
+            String name = session.character().name();
             return objectMapper.writeValueAsString(Map.of(
-                    "type", "creation_phase",
+                    "type", MessageType.CREATION_PHASE,
                     "phase", "creation",
                     "characterName", name));
         }
 
         // Send creation phase indicator (resume path)
-        connection.sendTextAndAwait(objectMapper.writeValueAsString(Map.of(
-                "type", "creation_phase",
+        outbound.send(objectMapper.writeValueAsString(Map.of(
+                "type", MessageType.CREATION_PHASE,
                 "phase", "creation")));
 
         // Replay existing conversation to the client as pre-rendered blocks
-        var blocks = JournalParser.parseToBlocks(existingJournal, prettify);
-        connection.sendTextAndAwait(objectMapper.writeValueAsString(Map.of(
-                "type", "creation_resume",
-                "blocks", blocks)));
-        CharacterSheet character = journal.readCharacter(campaignId);
-        connection.sendTextAndAwait(objectMapper.writeValueAsString(Map.of(
-                "type", "creation_ready",
+        outbound.send(session.shared("creation_resume:" + protocol.version(),
+                () -> objectMapper.writeValueAsString(Map.of(
+                        "type", MessageType.CREATION_RESUME,
+                        "blocks", protocol.blocks(session.render(history.blocks()))))));
+        CharacterSheet character = session.character();
+        outbound.send(objectMapper.writeValueAsString(Map.of(
+                "type", MessageType.CREATION_READY,
                 "character", character)));
+        return null;
+    }
+
+    /**
+     * Whether the conversation ends with content the guide has not answered
+     * (player input or a mechanical result like an oracle roll).
+     */
+    public boolean needsReengage() {
+        return JournalParser.needsNarration(session.history().markdown());
+    }
 
-        // Re-engage the guide if the journal ends with unnarrated content
-        // (player input or mechanical result like an oracle roll)
+    /**
+     * Re-engage the guide on the unanswered end of the conversation. Calls the model:
+     * run it as generation work, not while opening.
+     */
+    public String reengage() throws Exception {
+        String existingJournal = session.history().markdown();
         if (!JournalParser.needsNarration(existingJournal)) {
-            return objectMapper.writeValueAsString(Map.of("type", "ready"));
+            return objectMapper.writeValueAsString(Map.of("type", MessageType.READY));
         }
-
         String lastPlayerInput = JournalParser.endsWithPlayerEntry(existingJournal)
                 ? JournalParser.extractLastPlayerInput(existingJournal)
                 : "Continue the conversation based on what just happened.";
-        return reengageGuide(character, lastPlayerInput);
+        return reengageGuide(session.character(), lastPlayerInput);
     }
 
     /**
@@ -92,7 +115,7 @@ public class CreationEngine {
             return errorJson("Empty text");
         }
 
-        if (!acquireLock()) {
+        if (!session.beginGeneration("creation", subscriber)) {
             return errorJson("Generation already in progress");
         }
 
@@ -101,7 +124,7 @@ public class CreationEngine {
             journal.appendNarrative(campaignId, formatPlayerInput(text));
             return callGuide(text);
         } finally {
-            releaseLock();
+            session.endGeneration();
         }
     }
 
@@ -109,66 +132,84 @@ public class CreationEngine {
      * Handle the creation inspire button — synthesize oracle results already in the journal.
      */
     public String handleInspire() throws Exception {
-        if (!acquireLock()) {
+        if (!session.beginGeneration("creation", subscriber)) {
             return errorJson("Generation already in progress");
         }
 
         try {
-            CharacterSheet character = journal.readCharacter(campaignId);
-            String name = character.name();
+            String name = session.character().name();
             return callGuide(
                     "Use the oracle results in the journal to suggest truths about %s's world and what drives them."
                             .formatted(name));
         } finally {
-            releaseLock();
+            session.endGeneration();
         }
     }
 
     // --- Private helpers ---
 
     private String callGuide(String playerInput) throws Exception {
-        CharacterSheet character = journal.readCharacter(campaignId);
+        CharacterSheet character = session.character();
         String journalContext = journal.getRecentJournal(campaignId, 30);
         int exchangeCount = JournalParser.countExchanges(journalContext);
 
         memoryProvider.clear(campaignId);
-
-        CreationResponse response = creationAssistant.guide(
-                campaignId,
-                character.name(),
-                character.edge(), character.heart(), character.iron(),
-                character.shadow(), character.wits(),
-                journalContext,
-                exchangeCount,
-                playerInput,
-                vowInstruction(exchangeCount));
-
-        String guideMessage = response.message() != null ? response.message() : "";
-        if (!guideMessage.isBlank()) {
-            journal.appendNarrative(campaignId, guideMessage);
-        }
-
-        return creationResponseJson(guideMessage, response.suggestedVow());
+        session.publishJournal(subscriber);
+
+        CreationResponse response = session.generate(() -> router.call(ModelRoute.CREATION, campaignId,
+                () -> creationGuide.guide(
+                        campaignId,
+                        character.name(),
+                        character.edge(), character.heart(), character.iron(),
+                        character.shadow(), character.wits(),
+                        journalContext,
+                        exchangeCount,
+                        playerInput,
+                        vowInstruction(exchangeCount))));
+
+        return completeGuide(response);
     }
 
     private String reengageGuide(CharacterSheet character, String lastPlayerInput) throws Exception {
-        String journalContext = journal.getRecentJournal(campaignId, 30);
-        int exchangeCount = JournalParser.countExchanges(journalContext);
+        if (!session.beginGeneration("creation", subscriber)) {
+            return objectMapper.writeValueAsString(Map.of("type", MessageType.READY));
+        }
 
-        memoryProvider.clear(campaignId);
-        CreationResponse response = creationAssistant.guide(
-                campaignId, character.name(),
-                character.edge(), character.heart(), character.iron(),
-                character.shadow(), character.wits(),
-                journalContext, exchangeCount, lastPlayerInput,
-                vowInstruction(exchangeCount));
+        try {
+            String journalContext = journal.getRecentJournal(campaignId, 30);
+            int exchangeCount = JournalParser.countExchanges(journalContext);
+
+            memoryProvider.clear(campaignId);
+            CreationResponse response = session.generate(() -> router.call(ModelRoute.CREATION, campaignId,
+                    () -> creationGuide.guide(
+                            campaignId, character.name(),
+                            character.edge(), character.heart(), character.iron(),
+                            character.shadow(), character.wits(),
+                            journalContext, exchangeCount, lastPlayerInput,
+                            vowInstruction(exchangeCount))));
+
+            return completeGuide(response);
+        } finally {
+            session.endGeneration();
+        }
+    }
 
+    /**
+     * Journal the guide's message and publish the reply; other subscribers receive it as a journal block.
+     * A client that reconnects after completion sees the message in the replayed blocks.
+     */
+    private String completeGuide(CreationResponse response) throws Exception {
         String guideMessage = response.message() != null ? response.message() : "";
         if (!guideMessage.isBlank()) {
             journal.appendNarrative(campaignId, guideMessage);
         }
 
-        return creationResponseJson(guideMessage, response.suggestedVow());
+        String reply = creationResponseJson(guideMessage, response.suggestedVow());
+        Generation generation = session.completeGeneration((p, includeBlocks) -> includeBlocks ? reply : null);
+        if (outbound.isOpen()) {
+            session.markDelivered(generation);
+        }
+        return reply;
     }
 
     private String vowInstruction(int exchangeCount) {
@@ -183,16 +224,6 @@ public class CreationEngine {
         return "<player>\n" + text.strip() + "\n</player>";
     }
 
-    private boolean acquireLock() {
-        return generationLock == null || generationLock.compareAndSet(false, true);
-    }
-
-    private void releaseLock() {
-        if (generationLock != null) {
-            generationLock.set(false);
-        }
-    }
-
     private String creationResponseJson(String message, String suggestedVow) throws Exception {
         // Guard against LLM returning literal "null" or whitespace-only vow text
         String vow = suggestedVow != null ? suggestedVow.strip() : "";
@@ -200,7 +231,7 @@ public class CreationEngine {
             vow = "";
         }
         var map = Map.of(
-                "type", "creation_response",
+                "type", MessageType.CREATION_RESPONSE,
                 "message", message,
                 "messageHtml", prettify.markdownToHtml(message),
                 "suggestedVow", vow);
@@ -209,7 +240,7 @@ public class CreationEngine {
 
     private String errorJson(String message) {
         try {
-            return objectMapper.writeValueAsString(Map.of("type", "error", "message", message));
+            return objectMapper.writeValueAsString(Map.of("type", MessageType.ERROR, "message", message));
         } catch (Exception e) {
             return "{\"type\":\"error\",\"message\":\"Internal error\"}";
         }
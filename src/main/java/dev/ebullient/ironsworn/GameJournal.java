@@ -5,6 +5,10 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
@@ -12,6 +16,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 
@@ -19,6 +24,7 @@ import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
 import dev.ebullient.ironsworn.memory.StoryMemoryIndexer;
+import dev.ebullient.ironsworn.memory.StorySummarizer;
 import dev.ebullient.ironsworn.model.Campaign;
 import dev.ebullient.ironsworn.model.CharacterSheet;
 import dev.ebullient.ironsworn.model.Rank;
@@ -28,7 +34,11 @@ import dev.ebullient.ironsworn.model.Vow;
 public class GameJournal {
     private static final Logger log = Logger.getLogger(GameJournal.class);
 
-    private static final ConcurrentHashMap<String, Object> CAMPAIGN_LOCKS = new ConcurrentHashMap<>();
+    /** The journal file as last seen (modification time and size) and the revision of its journal section. */
+    private record Revision(FileTime modified, long size, long revision) {
+    }
+
+    private final ConcurrentHashMap<String, Revision> revisions = new ConcurrentHashMap<>();
 
     private static final Pattern STATS_LINE = Pattern.compile(
             "\\*\\*Edge\\*\\*:\\s*(\\d+)\\s*\\|\\s*\\*\\*Heart\\*\\*:\\s*(\\d+)\\s*\\|\\s*\\*\\*Iron\\*\\*:\\s*(\\d+)\\s*\\|\\s*\\*\\*Shadow\\*\\*:\\s*(\\d+)\\s*\\|\\s*\\*\\*Wits\\*\\*:\\s*(\\d+)");
@@ -47,6 +57,30 @@ public class GameJournal {
     @Inject
     StoryMemoryIndexer storyMemoryIndexer;
 
+    @Inject
+    StorySummarizer storySummarizer;
+
+    @Inject
+    CampaignRegistry campaigns;
+
+    @PostConstruct
+    void init() {
+        campaigns.onEvict(revisions::remove);
+        campaigns.track("journal-revisions", revisions);
+    }
+
+    /** Used when not managed by CDI (unit tests): one lock for all campaigns. */
+    private final CampaignLock unmanagedLock = new CampaignLock();
+
+    /**
+     * The campaign's journal file lock. Writes (appends, in-place edits, header updates)
+     * hold it exclusively so they do not interleave; reads share it so they never see
+     * a file that is being rewritten.
+     */
+    private CampaignLock journalLock(String campaignId) {
+        return campaigns != null ? campaigns.lock(campaignId, "journal") : unmanagedLock;
+    }
+
     private Path resolveJournalDir() {
         Path dir = Path.of(journalDir);
         if (!Files.exists(dir)) {
@@ -145,7 +179,7 @@ public class GameJournal {
 
     public CharacterSheet readCharacter(String campaignId) {
         Path path = journalPath(campaignId);
-        try {
+        try (var held = journalLock(campaignId).read()) {
             List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
             return parseCharacter(lines);
         } catch (IOException e) {
@@ -155,8 +189,7 @@ public class GameJournal {
 
     public void updateCharacter(String campaignId, CharacterSheet character) {
         // Use per-campaign lock to prevent concurrent writes
-        Object lock = CAMPAIGN_LOCKS.computeIfAbsent(campaignId, k -> new Object());
-        synchronized (lock) {
+        try (var held = journalLock(campaignId).write()) {
             Path path = journalPath(campaignId);
             try {
                 List<String> lines = new ArrayList<>(Files.readAllLines(path, StandardCharsets.UTF_8));
@@ -213,8 +246,7 @@ public class GameJournal {
     }
 
     public void updateLocation(String campaignId, String location) {
-        Object lock = CAMPAIGN_LOCKS.computeIfAbsent(campaignId, k -> new Object());
-        synchronized (lock) {
+        try (var held = journalLock(campaignId).write()) {
             Path path = journalPath(campaignId);
             try {
                 List<String> lines = new ArrayList<>(Files.readAllLines(path, StandardCharsets.UTF_8));
@@ -233,28 +265,41 @@ public class GameJournal {
 
     public String getFullJournal(String campaignId) {
         Path path = journalPath(campaignId);
-        try {
-            List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
-            int journalStart = -1;
-            for (int i = 0; i < lines.size(); i++) {
-                if (lines.get(i).trim().equals("## Journal")) {
-                    journalStart = i + 1;
-                    break;
-                }
-            }
-            if (journalStart < 0 || journalStart >= lines.size()) {
-                return "";
-            }
-            return String.join("\n", lines.subList(journalStart, lines.size())).trim();
+        try (var held = journalLock(campaignId).read()) {
+            return journalSection(Files.readAllLines(path, StandardCharsets.UTF_8));
         } catch (IOException e) {
             log.errorf(e, "Failed to read full journal for campaign: %s", campaignId);
             return "";
         }
     }
 
+    private static String journalSection(List<String> lines) {
+        int journalStart = -1;
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).trim().equals("## Journal")) {
+                journalStart = i + 1;
+                break;
+            }
+        }
+        if (journalStart < 0 || journalStart >= lines.size()) {
+            return "";
+        }
+        return String.join("\n", lines.subList(journalStart, lines.size())).trim();
+    }
+
     public String getRecentJournal(String campaignId, int maxLines) {
+        return getRecentJournal(campaignId, maxLines, 1);
+    }
+
+    /**
+     * The last lines of the journal section, with the window's first line aligned to a
+     * multiple of {@code align} lines. The window then only moves once every {@code align}
+     * appended lines (it holds up to {@code maxLines + align - 1} lines), so consecutive
+     * calls return text with the same prefix.
+     */
+    public String getRecentJournal(String campaignId, int maxLines, int align) {
         Path path = journalPath(campaignId);
-        try {
+        try (var held = journalLock(campaignId).read()) {
             List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
             int journalStart = -1;
             for (int i = 0; i < lines.size(); i++) {
@@ -270,7 +315,11 @@ public class GameJournal {
             if (journalLines.size() <= maxLines) {
                 return String.join("\n", journalLines).trim();
             }
-            return String.join("\n", journalLines.subList(journalLines.size() - maxLines, journalLines.size())).trim();
+            int start = journalLines.size() - maxLines;
+            if (align > 1) {
+                start -= start % align;
+            }
+            return String.join("\n", journalLines.subList(start, journalLines.size())).trim();
         } catch (IOException e) {
             log.errorf(e, "Failed to read journal for campaign: %s", campaignId);
             return "";
@@ -285,15 +334,73 @@ public class GameJournal {
         appendToJournal(campaignId, "\n> " + text.trim() + "\n");
     }
 
-    private void appendToJournal(String campaignId, String content) {
+    /**
+     * Revision of the journal section for a campaign: a hash of its content. Changes whenever journal
+     * content is appended, edited, or deleted, including by edits to the file made outside the
+     * application; callers can use it to invalidate derived state (e.g. rendered blocks).
+     * The section is only read again when the file's modification time or size has changed.
+     */
+    public long journalRevision(String campaignId) {
         Path path = journalPath(campaignId);
-        try {
-            Files.writeString(path, content, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
-            if (storyMemoryIndexer != null) {
-                storyMemoryIndexer.requestIndex(campaignId);
+        try (var held = journalLock(campaignId).read()) {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            Revision seen = revisions.get(campaignId);
+            if (seen != null && seen.modified().equals(attributes.lastModifiedTime())
+                    && seen.size() == attributes.size()) {
+                return seen.revision();
             }
+            long revision = contentRevision(journalSection(Files.readAllLines(path, StandardCharsets.UTF_8)));
+            revisions.put(campaignId, new Revision(attributes.lastModifiedTime(), attributes.size(), revision));
+            return revision;
         } catch (IOException e) {
-            log.errorf(e, "Failed to append to journal: %s", campaignId);
+            return 0;
+        }
+    }
+
+    /**
+     * Forget the file's last-seen stamp after writing the journal section: a write of the
+     * same size within the file system's timestamp resolution would otherwise go unnoticed.
+     */
+    private void journalWritten(String campaignId) {
+        revisions.remove(campaignId);
+    }
+
+    private static long contentRevision(String section) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(section.getBytes(StandardCharsets.UTF_8));
+            long revision = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                revision = (revision << 8) | (digest[i] & 0xff);
+            }
+            return revision;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private void appendToJournal(String campaignId, String content) {
+        Path path = journalPath(campaignId);
+        // Appends from concurrent handlers (e.g. an oracle roll during narration) must not
+        // interleave with each other or with in-place edits of the same file
+        try (var held = journalLock(campaignId).write()) {
+            try {
+                Files.writeString(path, content, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+                journalWritten(campaignId);
+            } catch (IOException e) {
+                log.errorf(e, "Failed to append to journal: %s", campaignId);
+                return;
+            }
+        }
+        journalChanged(campaignId);
+    }
+
+    /** Bring story memory and the story summary up to date (both debounced). */
+    private void journalChanged(String campaignId) {
+        if (storyMemoryIndexer != null) {
+            storyMemoryIndexer.requestIndex(campaignId);
+        }
+        if (storySummarizer != null) {
+            storySummarizer.requestSummary(campaignId);
         }
     }
 
@@ -303,8 +410,7 @@ public class GameJournal {
      * delimiters like {@code <player>} tags).
      */
     public boolean replaceBlockText(String campaignId, String originalText, String newText) {
-        Object lock = CAMPAIGN_LOCKS.computeIfAbsent(campaignId, k -> new Object());
-        synchronized (lock) {
+        try (var held = journalLock(campaignId).write()) {
             Path path = journalPath(campaignId);
             try {
                 String content = Files.readString(path, StandardCharsets.UTF_8);
@@ -314,9 +420,8 @@ public class GameJournal {
                     return false;
                 }
                 Files.writeString(path, updated, StandardCharsets.UTF_8);
-                if (storyMemoryIndexer != null) {
-                    storyMemoryIndexer.requestIndex(campaignId);
-                }
+                journalWritten(campaignId);
+                journalChanged(campaignId);
                 return true;
             } catch (IOException e) {
                 throw new RuntimeException("Failed to replace block text in campaign: " + campaignId, e);
@@ -331,8 +436,7 @@ public class GameJournal {
      * For assistant blocks, removes the plain text.
      */
     public boolean deleteBlockText(String campaignId, String blockText, String blockType) {
-        Object lock = CAMPAIGN_LOCKS.computeIfAbsent(campaignId, k -> new Object());
-        synchronized (lock) {
+        try (var held = journalLock(campaignId).write()) {
             Path path = journalPath(campaignId);
             try {
                 String content = Files.readString(path, StandardCharsets.UTF_8);
@@ -365,9 +469,8 @@ public class GameJournal {
                 updated = updated.replaceAll("\n{3,}", "\n\n");
 
                 Files.writeString(path, updated, StandardCharsets.UTF_8);
-                if (storyMemoryIndexer != null) {
-                    storyMemoryIndexer.requestIndex(campaignId);
-                }
+                journalWritten(campaignId);
+                journalChanged(campaignId);
                 return true;
             } catch (IOException e) {
                 throw new RuntimeException("Failed to delete block text in campaign: " + campaignId, e);
@@ -376,8 +479,7 @@ public class GameJournal {
     }
 
     public boolean deleteCampaign(String campaignId) {
-        Object lock = CAMPAIGN_LOCKS.computeIfAbsent(campaignId, k -> new Object());
-        synchronized (lock) {
+        try (var held = journalLock(campaignId).write()) {
             Path path = journalPath(campaignId);
             if (!Files.exists(path)) {
                 return false;
@@ -391,8 +493,14 @@ public class GameJournal {
             if (storyMemoryIndexer != null) {
                 storyMemoryIndexer.deleteCampaignIndex(campaignId);
             }
+            if (storySummarizer != null) {
+                storySummarizer.deleteCampaignSummary(campaignId);
+            }
+        }
+        if (campaigns != null) {
+            campaigns.remove(campaignId);
         }
-        CAMPAIGN_LOCKS.remove(campaignId);
+        revisions.remove(campaignId);
         return true;
     }
 
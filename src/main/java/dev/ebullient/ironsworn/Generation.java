@@ -0,0 +1,108 @@
+package dev.ebullient.ironsworn;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One model generation for a campaign, tracked by its {@link CampaignSession} so that
+ * a client reconnecting mid-generation can pick up the result instead of starting another.
+ * <p>
+ * Lifecycle: {@link State#QUEUED} when the campaign's generation slot is taken,
+ * {@link State#RUNNING} while the model call is in flight, {@link State#COMPLETED} once the
+ * result is journaled and its reply is available, and {@link State#DELIVERED} once a connected
+ * client has been sent the reply. A generation that is cancelled or fails completes
+ * {@link #reply()} exceptionally.
+ * <p>
+ * The connection that started the generation (its origin) is sent the reply directly;
+ * the session broadcasts it to the campaign's other subscribers.
+ */
+public class Generation {
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        DELIVERED
+    }
+
+    /**
+     * Encodes a finished generation's reply for one connection.
+     */
+    @FunctionalInterface
+    public interface Reply {
+        /**
+         * @param protocol the receiving connection's protocol
+         * @param includeBlocks false if the client already received the generated journal blocks
+         *        (through resume or sync) and only needs the rest of the reply
+         * @return the message to send, or null if there is nothing to add
+         */
+        String encode(PlayProtocol protocol, boolean includeBlocks) throws Exception;
+    }
+
+    private final long id;
+    private final String kind;
+    private final CampaignSession.Subscriber origin;
+    private final CompletableFuture<Reply> reply = new CompletableFuture<>();
+    private volatile State state = State.QUEUED;
+
+    Generation(long id, String kind, CampaignSession.Subscriber origin) {
+        this.id = id;
+        this.kind = kind;
+        this.origin = origin;
+    }
+
+    public long id() {
+        return id;
+    }
+
+    /** What is being generated, e.g. "narrate" or "creation". */
+    public String kind() {
+        return kind;
+    }
+
+    /** The connection that started this generation (null if unknown). */
+    public CampaignSession.Subscriber origin() {
+        return origin;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    /** Completes with the reply once the generation is journaled. */
+    public CompletableFuture<Reply> reply() {
+        return reply;
+    }
+
+    public boolean isPending() {
+        return state == State.QUEUED || state == State.RUNNING;
+    }
+
+    void running() {
+        state = State.RUNNING;
+    }
+
+    void complete(Reply value) {
+        state = State.COMPLETED;
+        reply.complete(value);
+    }
+
+    /**
+     * @return true if this call moved the generation to DELIVERED (it was not delivered before)
+     */
+    synchronized boolean delivered() {
+        if (state != State.COMPLETED) {
+            return false;
+        }
+        state = State.DELIVERED;
+        return true;
+    }
+
+    void fail(Throwable cause) {
+        reply.completeExceptionally(cause);
+    }
+
+    @Override
+    public String toString() {
+        return "Generation[" + id + " " + kind + " " + state + "]";
+    }
+}
@@ -1,7 +1,13 @@
 package dev.ebullient.ironsworn;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import dev.ebullient.ironsworn.chat.MarkdownAugmenter;
@@ -15,8 +21,16 @@ public class JournalParser {
     public record JournalExchange(int index, String content) {
     }
 
-    /** A typed block of journal content with pre-rendered HTML. */
-    public record JournalBlock(String type, String html, String markdown, int index) {
+    /**
+     * A typed block of journal content with pre-rendered HTML.
+     * The id is derived from the block's type and content (plus an occurrence
+     * counter for repeated content), so it stays stable as the journal grows.
+     * HTML is null for blocks parsed without rendering.
+     */
+    public record JournalBlock(String id, String type, String html, String markdown, int index) {
+        public JournalBlock withHtml(String html) {
+            return new JournalBlock(id, type, html, markdown, index);
+        }
     }
 
     private static final String PLAYER_OPEN = "<player>";
@@ -301,6 +315,7 @@ public class JournalParser {
      * Parse journal content into typed blocks with pre-rendered HTML.
      * Each block has a type ("user", "assistant", or "mechanical") and
      * HTML content ready for display.
+     * Pass a null augmenter to split blocks without rendering HTML.
      */
     public static List<JournalBlock> parseToBlocks(String journalContent, MarkdownAugmenter augmenter) {
         if (journalContent == null || journalContent.isBlank()) {
@@ -308,6 +323,7 @@ public class JournalParser {
         }
 
         List<JournalBlock> blocks = new ArrayList<>();
+        Map<String, Integer> occurrences = new HashMap<>();
         List<String> currentLines = new ArrayList<>();
         String currentType = null; // "user", "assistant", "mechanical"
         boolean inPlayerBlock = false;
@@ -321,7 +337,7 @@ public class JournalParser {
                 if (isPlayerEntryEnd(trimmed)) {
                     inPlayerBlock = false;
                     // Flush the player block
-                    blocks.add(flushBlock("user", currentLines, blockIndex++, augmenter));
+                    blocks.add(flushBlock(occurrences, "user", currentLines, blockIndex++, augmenter));
                     currentLines.clear();
                     currentType = null;
                 } else {
@@ -332,7 +348,7 @@ public class JournalParser {
 
             if (trimmed.isEmpty()) {
                 if (!currentLines.isEmpty()) {
-                    blocks.add(flushBlock(currentType, currentLines, blockIndex++, augmenter));
+                    blocks.add(flushBlock(occurrences, currentType, currentLines, blockIndex++, augmenter));
                     currentLines.clear();
                     currentType = null;
                 }
@@ -341,14 +357,14 @@ public class JournalParser {
 
             if (isPlayerEntry(trimmed)) {
                 if (!currentLines.isEmpty()) {
-                    blocks.add(flushBlock(currentType, currentLines, blockIndex++, augmenter));
+                    blocks.add(flushBlock(occurrences, currentType, currentLines, blockIndex++, augmenter));
                     currentLines.clear();
                 }
                 currentType = "user";
                 inPlayerBlock = true;
             } else if (isMechanicalEntry(trimmed)) {
                 if (!currentLines.isEmpty() && !"mechanical".equals(currentType)) {
-                    blocks.add(flushBlock(currentType, currentLines, blockIndex++, augmenter));
+                    blocks.add(flushBlock(occurrences, currentType, currentLines, blockIndex++, augmenter));
                     currentLines.clear();
                 }
                 currentType = "mechanical";
@@ -357,7 +373,7 @@ public class JournalParser {
                 currentLines.add(display);
             } else {
                 if (!currentLines.isEmpty() && !"assistant".equals(currentType)) {
-                    blocks.add(flushBlock(currentType, currentLines, blockIndex++, augmenter));
+                    blocks.add(flushBlock(occurrences, currentType, currentLines, blockIndex++, augmenter));
                     currentLines.clear();
                 }
                 currentType = "assistant";
@@ -366,7 +382,7 @@ public class JournalParser {
         }
 
         if (!currentLines.isEmpty()) {
-            blocks.add(flushBlock(currentType, currentLines, blockIndex, augmenter));
+            blocks.add(flushBlock(occurrences, currentType, currentLines, blockIndex, augmenter));
         }
 
         return blocks;
@@ -430,12 +446,26 @@ public class JournalParser {
         return blockCount;
     }
 
-    private static JournalBlock flushBlock(String type, List<String> lines, int index, MarkdownAugmenter augmenter) {
+    private static JournalBlock flushBlock(Map<String, Integer> occurrences,
+            String type, List<String> lines, int index, MarkdownAugmenter augmenter) {
         String text = String.join("\n", lines).trim();
         if (type == null) {
             type = "assistant";
         }
-        String html = augmenter.markdownToHtml(text);
-        return new JournalBlock(type, html, text, index);
+        String hash = blockHash(type, text);
+        int occurrence = occurrences.merge(hash, 1, Integer::sum);
+        String id = occurrence == 1 ? hash : hash + "-" + occurrence;
+        String html = augmenter == null ? null : augmenter.markdownToHtml(text);
+        return new JournalBlock(id, type, html, text, index);
+    }
+
+    private static String blockHash(String type, String text) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] digest = md.digest((type + "\n" + text).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 }
@@ -0,0 +1,106 @@
+package dev.ebullient.ironsworn;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * Message types exchanged over the play WebSocket.
+ * <p>
+ * The wire name is the lower-case constant name. The play page hands the full
+ * set to the client (see {@link #clientConstants()}), so both sides share one list.
+ * <p>
+ * Client messages are classified by {@link Cost}: those that may call the model (other than
+ * <code>start</code>) are handled off the connection's message loop, so cheap ones are not
+ * queued behind them.
+ */
+public enum MessageType {
+    // Client → server (some are also sent back)
+    START(Cost.GENERATION), // may re-engage narration
+    CREATION_CHAT(Cost.GENERATION),
+    CREATION_INSPIRE(Cost.GENERATION),
+    NARRATIVE(Cost.GENERATION),
+    MOVE_RESULT(Cost.GENERATION),
+    INSPIRE(Cost.GENERATION),
+    ORACLE,
+    ORACLE_MANUAL,
+    PROGRESS_MARK,
+    CHARACTER_UPDATE,
+    EDIT_BLOCK,
+    DELETE_BLOCK,
+    HISTORY_PAGE,
+    BLOCK_SOURCE,
+    CANCEL,
+
+    // Server → client
+    CONNECTED,
+    CREATION_PHASE,
+    CREATION_RESPONSE,
+    CREATION_RESUME,
+    CREATION_READY,
+    PLAY_RESUME,
+    PLAY_SYNC,
+    BLOCK_DELTA,
+    MOVE_OUTCOME,
+    ORACLE_RESULT,
+    CHARACTER_DELTA,
+    LOADING,
+    CANCELLED,
+    READY,
+    EDIT_DONE,
+    DELETE_DONE,
+    ERROR,
+    BATCH;
+
+    /** How expensive a client message is to handle. */
+    public enum Cost {
+        /** Mechanics and journal edits: milliseconds. */
+        CHEAP,
+        /** May wait on a model call: seconds. */
+        GENERATION
+    }
+
+    private final String wireName = name().toLowerCase(Locale.ROOT);
+    private final Cost cost;
+
+    MessageType() {
+        this(Cost.CHEAP);
+    }
+
+    MessageType(Cost cost) {
+        this.cost = cost;
+    }
+
+    @JsonValue
+    public String wireName() {
+        return wireName;
+    }
+
+    public Cost cost() {
+        return cost;
+    }
+
+    /**
+     * @return the message type with the given wire name, or null if unknown
+     */
+    public static MessageType fromWire(String wireName) {
+        for (MessageType type : values()) {
+            if (type.wireName.equals(wireName)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A JavaScript object literal mapping constant names to wire names,
+     * e.g. <code>{"NARRATIVE":"narrative",...}</code>.
+     */
+    public static String clientConstants() {
+        return Arrays.stream(values())
+                .map(t -> "\"" + t.name() + "\":\"" + t.wireName + "\"")
+                .collect(Collectors.joining(",", "{", "}"));
+    }
+}
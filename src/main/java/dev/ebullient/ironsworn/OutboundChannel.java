@@ -0,0 +1,351 @@
+package dev.ebullient.ironsworn;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import dev.ebullient.ironsworn.model.CharacterSheet;
+import io.quarkus.logging.Log;
+import io.quarkus.websockets.next.WebSocketConnection;
+
+/**
+ * Outbound message queue for one play WebSocket connection.
+ * <p>
+ * Handlers enqueue messages and return immediately; messages are written one at a time,
+ * in order, with non-blocking sends. A slow client therefore never stalls the handler
+ * (or the campaign's generation lock). When the client falls behind:
+ * <ul>
+ * <li>queued character updates are coalesced: only the latest sheet is sent, encoded
+ * when it reaches the front of the queue;</li>
+ * <li>a queued <code>loading</code> ping that has not been sent yet is dropped once its
+ * generation has ended (its reply or <code>cancelled</code> is queued behind it);</li>
+ * <li>past <code>max-pending</code> queued messages the connection is closed. The client reconnects
+ * and resynchronizes its blocks.</li>
+ * </ul>
+ * Clients that speak protocol version 3 or later receive several queued messages as a single
+ * <code>batch</code> frame (<code>{"type":"batch","messages":[...]}</code>). Messages produced by one
+ * handler step are held on the handler's thread until it finishes ({@link #hold()} / {@link #flush()}),
+ * so they are queued together; messages sent from other threads are not held.
+ * {@link #sendNow(String)} pushes latency-sensitive messages out immediately.
+ * <p>
+ * Meters are shared by all connections (see {@link OutboundMetrics}).
+ */
+public class OutboundChannel {
+
+    /** Most messages combined into one batch frame. */
+    static final int MAX_BATCH = 32;
+
+    private enum Kind {
+        MESSAGE,
+        LOADING,
+        CHARACTER
+    }
+
+    private static final class Outbound {
+        final Kind kind;
+        final String payload;
+        CharacterSheet character;
+        /** The generation a loading ping is for. */
+        Generation generation;
+
+        Outbound(Kind kind, String payload, CharacterSheet character) {
+            this.kind = kind;
+            this.payload = payload;
+            this.character = character;
+        }
+    }
+
+    private final WebSocketConnection connection;
+    private final PlayProtocol protocol;
+    private final String campaignId;
+    private final int maxPending;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<Outbound> queue = new ArrayDeque<>();
+    private boolean inFlight;
+    private boolean closed;
+    /** This channel's share of the total pending. */
+    private int counted;
+
+    /** Messages held by the handler step running on the current thread. */
+    private final ThreadLocal<List<Outbound>> held = new ThreadLocal<>();
+
+    private final OutboundMetrics metrics;
+
+    public OutboundChannel(WebSocketConnection connection, PlayProtocol protocol, String campaignId,
+            int maxPending, OutboundMetrics metrics) {
+        this.connection = connection;
+        this.protocol = protocol;
+        this.campaignId = campaignId;
+        this.maxPending = maxPending;
+        this.metrics = metrics;
+        metrics.opened(this);
+    }
+
+    /**
+     * Queue an encoded message. Null messages are ignored.
+     */
+    public void send(String payload) {
+        if (payload != null) {
+            submit(new Outbound(Kind.MESSAGE, payload, null));
+        }
+    }
+
+    /**
+     * Queue a message and send it, with anything this handler step has queued ahead of it,
+     * without waiting for the step to finish.
+     */
+    public void sendNow(String payload) {
+        send(payload);
+        release();
+    }
+
+    /**
+     * Send a <code>loading</code> indicator for a generation now (it precedes a slow call).
+     * It is skipped if the generation has ended by the time a later message is queued behind it.
+     */
+    public void sendLoading(Generation generation) {
+        try {
+            Outbound loading = new Outbound(Kind.LOADING, protocol.json(MessageType.LOADING), null);
+            loading.generation = generation;
+            submit(loading);
+        } catch (Exception e) {
+            Log.debugf(e, "%s: unable to encode loading message", campaignId);
+        }
+        release();
+    }
+
+    /**
+     * Queue the character sheet. If an earlier sheet is still waiting, it is replaced.
+     */
+    public void sendCharacter(CharacterSheet character) {
+        submit(new Outbound(Kind.CHARACTER, null, character));
+    }
+
+    /**
+     * Hold messages sent from this thread until {@link #flush()}, so they can be sent together.
+     */
+    public void hold() {
+        if (held.get() == null) {
+            held.set(new ArrayList<>());
+        }
+    }
+
+    /**
+     * End this thread's {@link #hold()} and send what it has queued.
+     */
+    public void flush() {
+        release();
+        held.remove();
+    }
+
+    public boolean isOpen() {
+        lock.lock();
+        try {
+            return !closed && connection.isOpen();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int pending() {
+        lock.lock();
+        try {
+            return queue.size() + (inFlight ? 1 : 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Discard queued messages. Called when the connection closes.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            queue.clear();
+            inFlight = false;
+            countPending();
+        } finally {
+            lock.unlock();
+        }
+        metrics.closed(this);
+    }
+
+    private void submit(Outbound message) {
+        List<Outbound> buffer = held.get();
+        if (buffer != null) {
+            add(buffer, message);
+        } else {
+            enqueue(List.of(message));
+        }
+    }
+
+    /**
+     * Queue what this thread has held so far (later messages are still held).
+     */
+    private void release() {
+        List<Outbound> buffer = held.get();
+        if (buffer != null && !buffer.isEmpty()) {
+            List<Outbound> messages = List.copyOf(buffer);
+            buffer.clear();
+            enqueue(messages);
+        }
+    }
+
+    /**
+     * Append with the slow-consumer rules: a waiting loading ping is stale once its generation
+     * has ended (its reply or cancellation is being queued), and a waiting character sheet is
+     * replaced by a newer one.
+     */
+    private void add(Collection<Outbound> target, Outbound message) {
+        if (message.kind != Kind.LOADING
+                && target.removeIf(m -> m.kind == Kind.LOADING && m.generation.reply().isDone())) {
+            metrics.droppedLoading.increment();
+        }
+        if (message.kind == Kind.CHARACTER) {
+            for (Outbound pending : target) {
+                if (pending.kind == Kind.CHARACTER) {
+                    pending.character = message.character;
+                    metrics.coalesced.increment();
+                    return;
+                }
+            }
+        }
+        target.add(message);
+    }
+
+    private void enqueue(List<Outbound> messages) {
+        boolean overflowed = false;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            messages.forEach(m -> add(queue, m));
+            metrics.queueDepth.record(queue.size() + (inFlight ? 1 : 0));
+            if (queue.size() > maxPending) {
+                overflowed = true;
+                closed = true;
+                queue.clear();
+            }
+            countPending();
+        } finally {
+            lock.unlock();
+        }
+
+        if (overflowed) {
+            metrics.overflow.increment();
+            Log.warnf("%s: client on connection %s is more than %d messages behind; closing",
+                    campaignId, connection.id(), maxPending);
+            metrics.closed(this);
+            closeConnection();
+            return;
+        }
+        drain();
+    }
+
+    /**
+     * Discard queued messages and close the connection (its campaign is gone).
+     */
+    public void disconnect() {
+        lock.lock();
+        try {
+            closed = true;
+            queue.clear();
+            countPending();
+        } finally {
+            lock.unlock();
+        }
+        metrics.closed(this);
+        closeConnection();
+    }
+
+    /** Bring this channel's share of the pending gauge up to date. Called holding the lock. */
+    private void countPending() {
+        int now = queue.size() + (inFlight ? 1 : 0);
+        metrics.pending(now - counted);
+        counted = now;
+    }
+
+    private void closeConnection() {
+        connection.close().subscribe().with(
+                v -> {
+                },
+                e -> Log.debugf(e, "%s: error closing connection %s", campaignId, connection.id()));
+    }
+
+    /**
+     * Send the next frame unless one is already in flight.
+     */
+    private void drain() {
+        String payload;
+        lock.lock();
+        try {
+            if (inFlight || closed) {
+                return;
+            }
+            int limit = protocol.supportsBatch() ? MAX_BATCH : 1;
+            List<String> frame = new ArrayList<>();
+            while (frame.size() < limit && !queue.isEmpty()) {
+                String encoded = encode(queue.pollFirst());
+                if (encoded != null) {
+                    frame.add(encoded);
+                }
+            }
+            if (frame.isEmpty()) {
+                countPending();
+                return;
+            }
+            payload = frame.size() == 1 ? frame.getFirst() : batch(frame);
+            metrics.batchSize.record(frame.size());
+            inFlight = true;
+            countPending();
+        } finally {
+            lock.unlock();
+        }
+
+        connection.sendText(payload).subscribe().with(
+                v -> sent(),
+                e -> {
+                    Log.debugf(e, "%s: send failed on connection %s", campaignId, connection.id());
+                    sent();
+                });
+    }
+
+    private void sent() {
+        lock.lock();
+        try {
+            inFlight = false;
+            countPending();
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    /**
+     * Wrap already-encoded messages in a batch envelope without re-serializing them.
+     */
+    static String batch(List<String> messages) {
+        return "{\"type\":\"" + MessageType.BATCH.wireName() + "\",\"messages\":["
+                + String.join(",", messages) + "]}";
+    }
+
+    private String encode(Outbound message) {
+        if (message.kind != Kind.CHARACTER) {
+            return message.payload;
+        }
+        try {
+            // Encoded at send time so deltas are computed against what the client last received
+            return protocol.character(message.character);
+        } catch (Exception e) {
+            Log.errorf(e, "%s: unable to encode character update", campaignId);
+            return null;
+        }
+    }
+}
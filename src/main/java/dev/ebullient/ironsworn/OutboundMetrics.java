@@ -0,0 +1,80 @@
+package dev.ebullient.ironsworn;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Meters shared by every {@link OutboundChannel}, registered once. None is tagged per
+ * connection, so their number does not grow with the number of clients:
+ * <ul>
+ * <li><code>ironsworn.ws.outbound.pending</code>: messages queued across all connections;</li>
+ * <li><code>ironsworn.ws.outbound.pending.max</code>: the most queued for any one connection
+ * (a single slow client);</li>
+ * <li><code>ironsworn.ws.outbound.queue.depth</code>: a connection's queue depth each time
+ * messages are queued;</li>
+ * <li><code>ironsworn.ws.outbound.coalesced</code>, <code>.dropped{reason=stale_loading}</code>,
+ * <code>.overflow</code> and <code>.batch.size</code>.</li>
+ * </ul>
+ */
+@Singleton
+public class OutboundMetrics {
+
+    @Inject
+    MeterRegistry registry;
+
+    /** Messages queued or in flight across all connections. */
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Set<OutboundChannel> channels = ConcurrentHashMap.newKeySet();
+
+    Counter coalesced;
+    Counter droppedLoading;
+    Counter overflow;
+    DistributionSummary batchSize;
+    DistributionSummary queueDepth;
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("ironsworn.ws.outbound.pending", pending, AtomicInteger::get)
+                .description("Messages queued for play connections")
+                .register(registry);
+        Gauge.builder("ironsworn.ws.outbound.pending.max", this, OutboundMetrics::maxPending)
+                .description("Most messages queued for a single play connection")
+                .register(registry);
+        this.coalesced = registry.counter("ironsworn.ws.outbound.coalesced");
+        this.droppedLoading = registry.counter("ironsworn.ws.outbound.dropped", "reason", "stale_loading");
+        this.overflow = registry.counter("ironsworn.ws.outbound.overflow");
+        this.batchSize = DistributionSummary.builder("ironsworn.ws.outbound.batch.size")
+                .description("Messages per outbound WebSocket frame")
+                .register(registry);
+        this.queueDepth = DistributionSummary.builder("ironsworn.ws.outbound.queue.depth")
+                .description("A play connection's queued messages, sampled as messages are queued")
+                .register(registry);
+    }
+
+    void opened(OutboundChannel channel) {
+        channels.add(channel);
+    }
+
+    void closed(OutboundChannel channel) {
+        channels.remove(channel);
+    }
+
+    /** Change the total queued by a channel's change in depth. */
+    void pending(int delta) {
+        pending.addAndGet(delta);
+    }
+
+    private double maxPending() {
+        return channels.stream().mapToInt(OutboundChannel::pending).max().orElse(0);
+    }
+}
@@ -0,0 +1,160 @@
+package dev.ebullient.ironsworn;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import dev.ebullient.ironsworn.CampaignSession.BlockDelta;
+import dev.ebullient.ironsworn.CampaignSession.HistoryPage;
+import dev.ebullient.ironsworn.JournalParser.JournalBlock;
+import dev.ebullient.ironsworn.model.CharacterSheet;
+
+/**
+ * Encodes outbound messages for one play WebSocket connection.
+ * <p>
+ * Version 1 is the original format: blocks carry their markdown and index alongside
+ * rendered HTML, narrative messages repeat the text as raw markdown and HTML, and every
+ * character change resends the whole sheet. Version 2 sends each block once (id, type, html;
+ * markdown is fetched with <code>block_source</code> when the player edits), and after the
+ * first full sheet sends <code>character_delta</code> messages with only the fields that changed.
+ * Version 3 is version 2 plus <code>batch</code> frames (see {@link OutboundChannel}).
+ * <p>
+ * The server lists its versions in <code>connected</code>; the client picks one in <code>start</code>.
+ * Clients that do not ask for a version get version 1.
+ */
+public class PlayProtocol {
+
+    public static final int V1 = 1;
+    public static final int V2 = 2;
+    public static final int V3 = 3;
+    public static final List<Integer> SUPPORTED = List.of(V1, V2, V3);
+
+    /** The single block representation sent by version 2. */
+    public record CompactBlock(String id, String type, String html) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private int version = V1;
+
+    /** The character sheet as the client last saw it (version 2 only). */
+    private ObjectNode lastCharacter;
+
+    public PlayProtocol(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Select the protocol version requested by the client. Unknown versions fall back to 1.
+     * Resets delta state: the next character message is sent in full.
+     */
+    public synchronized void negotiate(int requested) {
+        version = SUPPORTED.contains(requested) ? requested : V1;
+        lastCharacter = null;
+    }
+
+    public synchronized int version() {
+        return version;
+    }
+
+    public boolean isCompact() {
+        return version() >= V2;
+    }
+
+    public boolean supportsBatch() {
+        return version() >= V3;
+    }
+
+    public String json(Map<String, Object> message) throws Exception {
+        return objectMapper.writeValueAsString(message);
+    }
+
+    public String json(MessageType type) throws Exception {
+        return json(Map.of("type", type));
+    }
+
+    public String connected() throws Exception {
+        return json(Map.of(
+                "type", MessageType.CONNECTED,
+                "protocols", SUPPORTED));
+    }
+
+    /**
+     * Blocks in the representation for this connection's version.
+     */
+    public List<?> blocks(List<JournalBlock> blocks) {
+        if (!isCompact()) {
+            return blocks;
+        }
+        return blocks.stream()
+                .map(b -> new CompactBlock(b.id(), b.type(), b.html()))
+                .toList();
+    }
+
+    public HashMap<String, Object> page(MessageType type, HistoryPage page) {
+        var map = new HashMap<String, Object>();
+        map.put("type", type);
+        map.put("blocks", blocks(page.blocks()));
+        map.put("hasMore", page.hasMore());
+        if (page.cursor() != null) {
+            map.put("cursor", page.cursor());
+        }
+        return map;
+    }
+
+    public HashMap<String, Object> delta(MessageType type, BlockDelta delta) {
+        var map = new HashMap<String, Object>();
+        map.put("type", type);
+        map.put("inserts", !isCompact()
+                ? delta.inserts()
+                : delta.inserts().stream()
+                        .map(i -> {
+                            var insert = new HashMap<String, Object>();
+                            insert.put("after", i.after());
+                            insert.put("block", blocks(List.of(i.block())).getFirst());
+                            return insert;
+                        })
+                        .toList());
+        map.put("tombstones", delta.tombstones());
+        return map;
+    }
+
+    /**
+     * The character sheet for this client: a full <code>character_update</code>,
+     * or (version 2, after the first) a <code>character_delta</code> of changed fields
+     * (possibly none).
+     */
+    public synchronized String character(CharacterSheet character) throws Exception {
+        if (version < V2) {
+            return json(Map.of(
+                    "type", MessageType.CHARACTER_UPDATE,
+                    "character", character));
+        }
+
+        ObjectNode current = objectMapper.valueToTree(character);
+        ObjectNode previous = lastCharacter;
+        lastCharacter = current;
+        if (previous == null) {
+            return json(Map.of(
+                    "type", MessageType.CHARACTER_UPDATE,
+                    "character", current));
+        }
+
+        ObjectNode changes = objectMapper.createObjectNode();
+        current.properties().forEach(e -> {
+            if (!e.getValue().equals(previous.get(e.getKey()))) {
+                changes.set(e.getKey(), e.getValue());
+            }
+        });
+        previous.fieldNames().forEachRemaining(name -> {
+            if (!current.has(name)) {
+                changes.putNull(name);
+            }
+        });
+        return json(Map.of(
+                "type", MessageType.CHARACTER_DELTA,
+                "changes", changes));
+    }
+}
@@ -1,10 +1,22 @@
 package dev.ebullient.ironsworn;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 import jakarta.inject.Inject;
 
@@ -13,20 +25,26 @@ import org.eclipse.microprofile.config.inject.ConfigProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import dev.ebullient.ironsworn.chat.CreationAssistant;
+import dev.ebullient.ironsworn.ContextBudgeter.Prompt;
+import dev.ebullient.ironsworn.chat.CreationGuide;
 import dev.ebullient.ironsworn.chat.InspireResult;
+import dev.ebullient.ironsworn.chat.LlmBusyException;
 import dev.ebullient.ironsworn.chat.MarkdownAugmenter;
+import dev.ebullient.ironsworn.chat.ModelRoute;
+import dev.ebullient.ironsworn.chat.ModelRouter;
 import dev.ebullient.ironsworn.chat.OracleService;
-import dev.ebullient.ironsworn.chat.PlayAssistant;
 import dev.ebullient.ironsworn.chat.PlayMemoryProvider;
+import dev.ebullient.ironsworn.chat.PlayNarrator;
 import dev.ebullient.ironsworn.chat.PlayResponse;
 import dev.ebullient.ironsworn.memory.StoryMemoryIndexer;
-import dev.ebullient.ironsworn.memory.StoryMemoryService;
+import dev.ebullient.ironsworn.memory.StorySummarizer;
 import dev.ebullient.ironsworn.model.CharacterSheet;
 import dev.ebullient.ironsworn.model.OracleResult;
 import dev.ebullient.ironsworn.model.Outcome;
 import dev.ebullient.ironsworn.model.Rank;
 import dev.ebullient.ironsworn.model.Vow;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.quarkus.logging.Log;
 import io.quarkus.websockets.next.OnClose;
 import io.quarkus.websockets.next.OnError;
@@ -40,19 +58,27 @@ import io.smallrye.common.annotation.RunOnVirtualThread;
 @WebSocket(path = "/ws/play/{campaignId}")
 public class PlayWebSocket {
 
-    private static final Map<String, AtomicBoolean> GENERATION_LOCKS = new ConcurrentHashMap<>();
+    /** Messages a spectator may send: everything else changes the campaign. */
+    static final Set<MessageType> SPECTATOR_MESSAGES = EnumSet.of(
+            MessageType.START, MessageType.HISTORY_PAGE, MessageType.BLOCK_SOURCE);
 
-    @Inject
+    /** Threads for messages that may call the model (see {@link MessageType.Cost}). */
+    static final ThreadFactory GENERATION_HANDLERS = Thread.ofVirtual().name("play-generation-", 0).factory();
+
+    /** This connection (not the session-scoped proxy: it is also used from other connections' threads). */
     WebSocketConnection connection;
 
     @Inject
-    PlayAssistant assistant;
+    PlayNarrator assistant;
 
     @Inject
     OracleService oracleService;
 
     @Inject
-    CreationAssistant creationAssistant;
+    ModelRouter router;
+
+    @Inject
+    CreationGuide creationGuide;
 
     @Inject
     PlayMemoryProvider memoryProvider;
@@ -67,141 +93,479 @@ public class PlayWebSocket {
     MarkdownAugmenter prettify;
 
     @Inject
-    StoryMemoryService storyMemory;
+    ContextAssembler contextAssembler;
+
+    @Inject
+    CampaignSessions sessions;
 
     @Inject
     StoryMemoryIndexer storyMemoryIndexer;
 
+    @Inject
+    StorySummarizer storySummarizer;
+
     @Inject
     ObjectMapper objectMapper;
 
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @Inject
+    OutboundMetrics outboundMetrics;
+
     @ConfigProperty(name = "ironsworn.narrate.choice-prompt", defaultValue = "false")
     boolean choicePrompt;
 
+    @ConfigProperty(name = "ironsworn.play.history.page-size", defaultValue = "20")
+    int historyPageSize;
+
+    /** Queued outbound messages beyond which a lagging client is disconnected. */
+    @ConfigProperty(name = "ironsworn.play.outbound.max-pending", defaultValue = "256")
+    int maxPending;
+
+    /** How long a duplicate request waits for the first execution's reply. */
+    @ConfigProperty(name = "ironsworn.play.request.replay-timeout-ms", defaultValue = "10000")
+    long replayTimeoutMillis;
+
     String campaignId;
 
-    CreationEngine creationEngine;
+    CampaignSession session;
+
+    PlayProtocol protocol;
+
+    OutboundChannel outbound;
+
+    /** Handles this connection's generation messages one at a time, in arrival order. */
+    ExecutorService generationQueue;
+
+    /** Set once the client has sent <code>start</code>. */
+    volatile CampaignSession.Subscriber subscriber;
+
+    volatile CreationEngine creationEngine;
+
+    /**
+     * A message the current request sent to this connection: as encoded for it, and as a reply
+     * that can be encoded again for the connection sending a duplicate of the request.
+     */
+    private record Sent(String encoded, RequestWindow.Reply reply) {
+    }
+
+    /** What the request being handled on this thread has sent (null: not recorded). */
+    private final ThreadLocal<List<Sent>> sent = new ThreadLocal<>();
 
     @OnOpen
-    public String onOpen(@PathParam String campaignId) {
+    public void onOpen(@PathParam String campaignId, WebSocketConnection connection) {
+        this.connection = connection;
         this.campaignId = campaignId;
-        GENERATION_LOCKS.computeIfAbsent(campaignId, k -> new AtomicBoolean(false));
+        this.session = sessions.acquire(campaignId);
+        this.protocol = new PlayProtocol(objectMapper);
+        this.outbound = new OutboundChannel(connection, protocol, campaignId, maxPending, outboundMetrics);
+        this.generationQueue = Executors.newSingleThreadExecutor(GENERATION_HANDLERS);
         Log.infof("Play WebSocket opened: %s (connection: %s)", campaignId, connection.id());
 
         // Clear stale LLM chat history so reconnects start fresh.
         memoryProvider.clear(campaignId);
 
-        // Warm long-term story memory in the background for this campaign.
+        // Warm long-term story memory and catch up the story summary in the background for this campaign.
         storyMemoryIndexer.warmIndex(campaignId);
+        storySummarizer.requestSummary(campaignId);
 
         // Send lightweight handshake — heavy work deferred until client sends "start"
-        return connectedJson();
+        outbound.send(connectedJson());
     }
 
-    private String handleActivePlayOpen() throws Exception {
-        CharacterSheet character = journal.readCharacter(campaignId);
-
-        // Replay recent journal for active play as pre-rendered blocks
-        String existingJournal = journal.getRecentJournal(campaignId, 100);
-        if (!existingJournal.isBlank()) {
-            var blocks = JournalParser.parseToBlocks(existingJournal, prettify);
-            connection.sendTextAndAwait(objectMapper.writeValueAsString(Map.of(
-                    "type", "play_resume",
-                    "blocks", blocks)));
+    private String handleActivePlayOpen(List<String> knownBlockIds) throws Exception {
+        CharacterSheet character = session.character();
+        // Checked before replaying blocks: a generation completed by now is in the replay
+        var active = session.activeGeneration();
+
+        // A reconnecting client only needs the blocks it is missing; otherwise replay
+        // only the most recent blocks (older history is paged in on request)
+        String existingJournal = session.history().markdown();
+        var sync = knownBlockIds.isEmpty() ? null : session.sync(knownBlockIds);
+        if (sync != null && sync.delta() != null) {
+            var map = protocol.delta(MessageType.PLAY_SYNC, sync.delta());
+            map.put("hasMore", sync.hasMore());
+            map.put("cursor", sync.cursor());
+            outbound.send(protocol.json(map));
+        } else if (!existingJournal.isBlank()) {
+            // Shared by every connection opening at this journal revision (e.g. a room of spectators)
+            outbound.send(session.shared("play_resume:" + protocol.version() + ":" + historyPageSize,
+                    () -> protocol.json(protocol.page(MessageType.PLAY_RESUME, session.latest(historyPageSize)))));
         }
 
-        connection.sendTextAndAwait(objectMapper.writeValueAsString(Map.of(
-                "type", "character_update",
-                "character", character)));
+        outbound.sendCharacter(character);
+
+        // A generation started before this client (re)connected: wait for it, or collect its reply
+        if (active.isPresent()) {
+            return attach(active.get());
+        }
 
         // If the last journal entry needs narration (player input or move result), re-engage
-        if (needsNarration(existingJournal)) {
-            return reengageNarration(character, existingJournal);
-        }
-
-        return objectMapper.writeValueAsString(Map.of("type", "ready"));
-    }
-
-    private String reengageNarration(CharacterSheet character, String existingJournal) throws Exception {
-        String charCtx = characterContext(character);
-        String journalCtx = journal.getRecentJournal(campaignId, 30);
-        String resumePrompt = endsWithPlayerEntry(existingJournal)
-                ? extractLastPlayerInput(existingJournal)
-                : "Continue the story based on what just happened.";
-        String memoryCtx = storyMemory.relevantMemory(campaignId, resumePrompt);
-
-        AtomicBoolean lock = GENERATION_LOCKS.get(campaignId);
-        if (lock != null && lock.compareAndSet(false, true)) {
-            try {
-                connection.sendTextAndAwait(objectMapper.writeValueAsString(Map.of(
-                        "type", "loading")));
-                PlayResponse response = assistant.narrate(campaignId, charCtx, journalCtx, memoryCtx, resumePrompt,
-                        choiceInstruction());
-                String narrative = OracleService.stripOracleLines(
-                        JournalParser.sanitizeNarrative(response.narrative()));
-                journal.appendNarrative(campaignId, narrative);
-                return narrativeJson(narrative, response);
-            } finally {
-                lock.set(false);
-            }
+        if (!subscriber.isSpectator() && needsNarration(existingJournal)) {
+            queueReengage(MessageType.NARRATIVE, this::reengageNarration);
+            return null;
+        }
+
+        return protocol.json(MessageType.READY);
+    }
+
+    private String reengageNarration() throws Exception {
+        // Queued behind start: read the journal again
+        String existingJournal = session.history().markdown();
+        if (!needsNarration(existingJournal)) {
+            var active = session.activeGeneration();
+            return active.isPresent() ? attach(active.get()) : protocol.json(MessageType.READY);
+        }
+        CharacterSheet character = session.character();
+        if (!session.beginGeneration("narrate", subscriber)) {
+            // Another connection just started one: wait for it instead
+            var active = session.activeGeneration();
+            return active.isPresent() ? attach(active.get()) : protocol.json(MessageType.READY);
+        }
+
+        try {
+            // We hold the generation slot: the active generation is ours
+            outbound.sendLoading(session.activeGeneration().orElseThrow());
+            String charCtx = ContextAssembler.characterContext(character);
+            String resumePrompt = endsWithPlayerEntry(existingJournal)
+                    ? extractLastPlayerInput(existingJournal)
+                    : "Continue the story based on what just happened.";
+            var context = contextAssembler.assemble(session, Prompt.NARRATE, resumePrompt,
+                    resumePrompt, choiceInstruction());
+            String summaryCtx = context.storySummary();
+            String journalCtx = context.journalContext();
+            String memoryCtx = context.memoryContext();
+
+            PlayResponse response = session.generate(() -> router.call(ModelRoute.NARRATOR, campaignId,
+                    () -> assistant.narrate(campaignId, summaryCtx, charCtx, journalCtx, memoryCtx, resumePrompt,
+                            choiceInstruction())));
+            String narrative = OracleService.stripOracleLines(
+                    JournalParser.sanitizeNarrative(response.narrative()));
+            journal.appendNarrative(campaignId, narrative);
+            return completeNarration(narrative, response);
+        } finally {
+            session.endGeneration();
+        }
+    }
+
+    /**
+     * Follow a generation this connection did not start. For a pending one, show loading:
+     * the session broadcasts its blocks and reply (or <code>cancelled</code>) to subscribers
+     * when it ends. A completed one only needs the parts of its reply that are not journal
+     * blocks, since the client has just been sent those.
+     */
+    private String attach(Generation generation) throws Exception {
+        Log.debugf("%s: connection %s attached to %s", campaignId, connection.id(), generation);
+        if (!generation.isPending()) {
+            return deliver(generation, generation.reply().getNow(null), false);
         }
+        outbound.sendLoading(generation);
+        return null;
+    }
 
-        return objectMapper.writeValueAsString(Map.of("type", "ready"));
+    private String deliver(Generation generation, Generation.Reply reply, boolean includeBlocks)
+            throws Exception {
+        String message = reply == null ? null : reply.encode(protocol, includeBlocks);
+        if (outbound.isOpen()) {
+            session.markDelivered(generation);
+        }
+        return message != null ? message : protocol.json(MessageType.READY);
     }
 
     @OnClose
     public void onClose() {
         Log.infof("Play WebSocket closed: %s", campaignId);
+        if (subscriber != null) {
+            session.unsubscribe(subscriber);
+        }
+        outbound.close();
+        // Queued messages are skipped; the session cancels a running generation if this was its last connection
+        generationQueue.shutdown();
+        sessions.release(session);
     }
 
     @OnError
-    public String onError(Throwable error) {
+    public void onError(Throwable error) {
         Log.errorf(error, "Play WebSocket error: %s", campaignId);
-        return errorJson(error.getMessage());
+        if (outbound != null) {
+            outbound.send(errorJson(error.getMessage()));
+        }
     }
 
+    /**
+     * Receive a client message. The connection's messages are delivered one at a time, so
+     * messages that may wait on the model ({@link MessageType.Cost#GENERATION}) are handed to the
+     * connection's generation queue (one at a time, in arrival order): oracle rolls, progress marks,
+     * and edits sent during a narration are handled right away. <code>start</code> is handled
+     * inline, so no other message is handled before the connection has subscribed; it queues
+     * any re-engagement of an unanswered journal (see {@link #queueReengage}).
+     * Journal writes are ordered per campaign by {@link GameJournal}.
+     */
     @OnTextMessage
     @RunOnVirtualThread
-    public String onMessage(String rawMessage) {
+    public void onMessage(String rawMessage) {
+        JsonNode msg;
         try {
-            JsonNode msg = objectMapper.readTree(rawMessage);
-            String type = msg.path("type").asText();
-
-            return switch (type) {
-                // Handshake
-                case "start" -> handleStart();
-                // Creation flow (delegated to CreationEngine)
-                case "creation_chat" -> creationEngine.handleChat(msg);
-                case "creation_inspire" -> creationEngine.handleInspire();
-                // Gameplay flow
-                case "narrative" -> handleNarrative(msg);
-                case "move_result" -> handleMoveResult(msg);
-                case "inspire" -> handleInspireMe();
-                case "oracle" -> handleOracle(msg);
-                case "oracle_manual" -> handleOracleManual(msg);
-                case "progress_mark" -> handleProgressMark(msg);
-                case "character_update" -> handleCharacterUpdate(msg);
-                case "edit_block" -> handleEditBlock(msg);
-                case "delete_block" -> handleDeleteBlock(msg);
-                default -> errorJson("Unknown message type: " + type);
-            };
+            msg = objectMapper.readTree(rawMessage);
         } catch (Exception e) {
+            outbound.send(errorJson("Invalid message"));
+            return;
+        }
+        MessageType type = MessageType.fromWire(msg.path("type").asText());
+        if (type == null || type == MessageType.START || type.cost() != MessageType.Cost.GENERATION) {
+            process(type, () -> handle(msg));
+            return;
+        }
+        try {
+            generationQueue.execute(() -> {
+                if (outbound.isOpen()) {
+                    process(type, () -> handle(msg));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.debugf("%s: connection %s closed; dropping %s", campaignId, connection.id(), type.wireName());
+        }
+    }
+
+    /**
+     * Handle a client message. Replies, including the handler's return value,
+     * go through the connection's {@link OutboundChannel}, so handlers never wait on the client.
+     * Replies are held until the handler finishes and sent together (one frame for batch-capable clients).
+     * Journal changes the handler made are then published to the campaign's other subscribers.
+     */
+    private void process(MessageType type, Supplier<String> handler) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        outbound.hold();
+        try {
+            outbound.send(handler.get());
+            if (subscriber != null) {
+                session.publishJournal(subscriber);
+            }
+        } finally {
+            outbound.flush();
+            sample.stop(meterRegistry.timer("ironsworn.play.message",
+                    "type", type != null ? type.wireName() : "unknown",
+                    "cost", type != null ? type.cost().name().toLowerCase() : "cheap"));
+        }
+    }
+
+    /**
+     * Queue the model call that re-engages an unanswered journal on the connection's generation queue,
+     * so <code>start</code> returns without waiting on the model. It is timed as a message of the given type.
+     */
+    private void queueReengage(MessageType type, Callable<String> reengage) {
+        try {
+            generationQueue.execute(() -> {
+                if (outbound.isOpen()) {
+                    process(type, () -> reengage(reengage));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.debugf("%s: connection %s closed; not re-engaging", campaignId, connection.id());
+        }
+    }
+
+    private String reengage(Callable<String> reengage) {
+        try {
+            return reengage.call();
+        } catch (CancellationException e) {
+            return cancelledJson();
+        } catch (LlmBusyException e) {
+            Log.debugf("Model call shed for campaign %s: %s", campaignId, e.getMessage());
+            return errorJson(e.getMessage());
+        } catch (Exception e) {
+            Log.errorf(e, "Failed to re-engage campaign: %s", campaignId);
+            return errorJson(e.getMessage());
+        }
+    }
+
+    /**
+     * Handle a client message, at most once per client request id (<code>requestId</code>, optional):
+     * a retried or double-sent request is answered with the first execution's reply.
+     * Requests that fail are forgotten, so they can be retried.
+     */
+    private String handle(JsonNode msg) {
+        String requestId = null;
+        try {
+            String id = msg.path("requestId").asText("");
+            // start sets up this connection: it is never answered from another one
+            if (MessageType.START.wireName().equals(msg.path("type").asText())) {
+                return dispatch(msg);
+            }
+            // Not remembered in the request window, so the client can retry after start
+            if (subscriber == null) {
+                return errorJson("Send start before " + msg.path("type").asText());
+            }
+            if (id.isBlank()) {
+                return dispatch(msg);
+            }
+            requestId = id;
+            var claim = session.requests().claim(requestId, connection.id());
+            if (claim.duplicate()) {
+                return replay(requestId, claim);
+            }
+            List<Sent> parts = new CopyOnWriteArrayList<>();
+            sent.set(parts);
+            String reply = dispatch(msg);
+            if (reply != null && (parts.isEmpty() || !reply.equals(parts.getLast().encoded()))) {
+                // Replies not built with reply(...) do not depend on the protocol version
+                parts.add(new Sent(reply, (p, out) -> out.send(reply)));
+            }
+            List<Sent> recorded = List.copyOf(parts);
+            session.requests().complete(requestId, (p, out) -> {
+                for (Sent part : recorded) {
+                    part.reply().sendTo(p, out);
+                }
+            });
+            return reply;
+        } catch (CancellationException e) {
+            forget(requestId);
+            return cancelledJson();
+        } catch (LlmBusyException e) {
+            // Shed by the scheduler: the message is for the player
+            forget(requestId);
+            Log.debugf("Model call shed for campaign %s: %s", campaignId, e.getMessage());
+            return errorJson(e.getMessage());
+        } catch (Exception e) {
+            forget(requestId);
             Log.errorf(e, "Error processing message for campaign: %s", campaignId);
             return errorJson(e.getMessage());
+        } finally {
+            sent.remove();
+        }
+    }
+
+    /**
+     * Answer a duplicate request with what the first execution sent, encoded for this connection.
+     * A request still running on this connection will reply on its own; one from another connection
+     * (the client retried after reconnecting) is waited for, up to
+     * <code>ironsworn.play.request.replay-timeout-ms</code>.
+     */
+    private String replay(String requestId, RequestWindow.Claim claim) throws Exception {
+        boolean pending = !claim.reply().isDone();
+        meterRegistry.counter("ironsworn.play.request.duplicate",
+                "state", pending ? "pending" : "completed").increment();
+        Log.debugf("%s: duplicate request %s (%s)", campaignId, requestId, pending ? "pending" : "completed");
+        if (pending && claim.connectionId().equals(connection.id())) {
+            return null;
+        }
+        RequestWindow.Reply reply;
+        try {
+            reply = claim.reply().get(replayTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | CancellationException e) {
+            return cancelledJson();
+        } catch (TimeoutException e) {
+            Log.debugf("%s: duplicate request %s is still running", campaignId, requestId);
+            if (subscriber != null && session.isGenerating()) {
+                // The generation's reply is broadcast to this subscriber when it completes
+                return protocol.json(MessageType.LOADING);
+            }
+            return errorJson("That request is still being processed");
+        }
+        reply.sendTo(protocol, outbound);
+        return null;
+    }
+
+    /**
+     * The handler's reply, encoded for this connection. Replies that depend on the protocol
+     * version must be built this way, so a duplicate request can be answered in its own version.
+     */
+    private String reply(CampaignSession.Broadcast message) throws Exception {
+        return record(sent.get(), message);
+    }
+
+    /** Queue a message for this connection, recorded like {@link #reply}. */
+    private void send(CampaignSession.Broadcast message) throws Exception {
+        outbound.send(record(sent.get(), message));
+    }
+
+    /**
+     * Send a message to this connection now, recorded like {@link #reply}. Work running on another
+     * thread passes the request's record (taken with {@code sent.get()} on the handler thread).
+     */
+    private void sendNow(List<Sent> parts, CampaignSession.Broadcast message) throws Exception {
+        outbound.sendNow(record(parts, message));
+    }
+
+    private String record(List<Sent> parts, CampaignSession.Broadcast message) throws Exception {
+        String encoded = message.encode(protocol);
+        if (parts != null && encoded != null) {
+            parts.add(new Sent(encoded, (p, out) -> out.send(message.encode(p))));
         }
+        return encoded;
+    }
+
+    private void forget(String requestId) {
+        if (requestId != null) {
+            session.requests().forget(requestId);
+        }
+    }
+
+    private String dispatch(JsonNode msg) throws Exception {
+        String type = msg.path("type").asText();
+        MessageType messageType = MessageType.fromWire(type);
+        if (messageType == null) {
+            return errorJson("Unknown message type: " + type);
+        }
+        if (messageType != MessageType.START && subscriber.isSpectator()
+                && !SPECTATOR_MESSAGES.contains(messageType)) {
+            return errorJson("Spectators cannot send " + type);
+        }
+
+        return switch (messageType) {
+            // Handshake
+            case START -> handleStart(msg);
+            // Creation flow (delegated to CreationEngine)
+            case CREATION_CHAT -> creationEngine.handleChat(msg);
+            case CREATION_INSPIRE -> creationEngine.handleInspire();
+            // Gameplay flow
+            case NARRATIVE -> handleNarrative(msg);
+            case MOVE_RESULT -> handleMoveResult(msg);
+            case INSPIRE -> handleInspireMe();
+            case ORACLE -> handleOracle(msg);
+            case ORACLE_MANUAL -> handleOracleManual(msg);
+            case PROGRESS_MARK -> handleProgressMark(msg);
+            case CHARACTER_UPDATE -> handleCharacterUpdate(msg);
+            case EDIT_BLOCK -> handleEditBlock(msg);
+            case DELETE_BLOCK -> handleDeleteBlock(msg);
+            case HISTORY_PAGE -> handleHistoryPage(msg);
+            case BLOCK_SOURCE -> handleBlockSource(msg);
+            case CANCEL -> handleCancel();
+            default -> errorJson("Unexpected message type: " + type);
+        };
     }
 
     // --- Handshake ---
 
-    private String handleStart() throws Exception {
+    private String handleStart(JsonNode msg) throws Exception {
+        protocol.negotiate(msg.path("protocol").asInt(PlayProtocol.V1));
+        // Subscribe before looking for an active generation, so its completion is not missed
+        if (subscriber != null) {
+            session.unsubscribe(subscriber);
+        }
+        subscriber = new CampaignSession.Subscriber(connection.id(), protocol, outbound,
+                CampaignSession.Role.fromWire(msg.path("role").asText("")));
+        session.subscribe(subscriber);
         try {
-            if (journal.isCreationPhase(campaignId)) {
-                creationEngine = new CreationEngine(connection, journal, creationAssistant,
-                        memoryProvider, prettify, objectMapper, campaignId,
-                        GENERATION_LOCKS.get(campaignId));
-                return creationEngine.handleOpen();
+            if (session.character().vows().isEmpty()) {
+                var active = session.activeGeneration();
+                creationEngine = new CreationEngine(subscriber, journal, creationGuide,
+                        memoryProvider, prettify, objectMapper, session, router);
+                String opened = creationEngine.handleOpen();
+                if (active.isPresent()) {
+                    outbound.send(opened);
+                    return attach(active.get());
+                }
+                if (!subscriber.isSpectator() && creationEngine.needsReengage()) {
+                    queueReengage(MessageType.CREATION_CHAT, creationEngine::reengage);
+                    return opened;
+                }
+                return opened != null ? opened : protocol.json(MessageType.READY);
             }
-            return handleActivePlayOpen();
+            List<String> known = new ArrayList<>();
+            msg.path("known").forEach(id -> known.add(id.asText()));
+            return handleActivePlayOpen(known);
         } catch (Exception e) {
             Log.errorf(e, "Failed to open campaign: %s", campaignId);
             return errorJson("Campaign not found: " + campaignId);
@@ -216,67 +580,67 @@ public class PlayWebSocket {
             return errorJson("Empty narrative text");
         }
 
-        AtomicBoolean lock = GENERATION_LOCKS.get(campaignId);
-        if (lock != null && !lock.compareAndSet(false, true)) {
+        if (!session.beginGeneration("narrate", subscriber)) {
             return errorJson("Generation already in progress");
         }
 
         try {
             journal.appendNarrative(campaignId, formatPlayerInput(text));
+            session.publishJournal(subscriber);
 
-            CharacterSheet character = journal.readCharacter(campaignId);
-            String charCtx = characterContext(character);
-            String journalCtx = journal.getRecentJournal(campaignId, 60);
-            String memoryCtx = storyMemory.relevantMemory(campaignId, text);
+            var context = contextAssembler.assemble(session, Prompt.NARRATE, text, text, choiceInstruction());
+            String summaryCtx = context.storySummary();
+            String charCtx = context.characterContext();
+            String journalCtx = context.journalContext();
+            String memoryCtx = context.memoryContext();
 
             memoryProvider.clear(campaignId);
-            PlayResponse response = assistant.narrate(campaignId, charCtx, journalCtx, memoryCtx, text,
-                    choiceInstruction());
+            PlayResponse response = session.generate(() -> router.call(ModelRoute.NARRATOR, campaignId,
+                    () -> assistant.narrate(campaignId, summaryCtx, charCtx, journalCtx, memoryCtx, text,
+                            choiceInstruction())));
             String narrative = OracleService.stripOracleLines(
                     JournalParser.sanitizeNarrative(response.narrative()));
 
             journal.appendNarrative(campaignId, narrative);
 
-            return narrativeJson(narrative, response);
+            return completeNarration(narrative, response);
         } finally {
-            if (lock != null) {
-                lock.set(false);
-            }
+            session.endGeneration();
         }
     }
 
     private String handleInspireMe() throws Exception {
-        AtomicBoolean lock = GENERATION_LOCKS.get(campaignId);
-        if (lock != null && !lock.compareAndSet(false, true)) {
+        if (!session.beginGeneration("inspire", subscriber)) {
             return errorJson("Generation already in progress");
         }
 
         try {
-            CharacterSheet character = journal.readCharacter(campaignId);
-            String charCtx = characterContext(character);
-            String journalCtx = journal.getRecentJournal(campaignId, 60);
-            // Use recent journal text as the query so memory retrieval finds relevant past context
-            String[] lines = journalCtx.split("\n");
-            String memoryQuery = String.join("\n",
-                    java.util.Arrays.copyOfRange(lines, Math.max(0, lines.length - 10), lines.length));
-            String memoryCtx = storyMemory.relevantMemory(campaignId, memoryQuery);
-
-            InspireResult result = oracleService.inspireMe(campaignId, charCtx, journalCtx, memoryCtx,
+            // Use recent journal text as the query so memory retrieval finds relevant past context.
+            // Retrieval continues while the oracle is chosen; only narration waits for it.
+            var context = contextAssembler.assembleDeferred(session, Prompt.INSPIRE, ContextAssembler::sceneQuery,
                     choiceInstruction());
-
-            // Send oracle result to client if one was rolled server-side (non-tool-calling path)
-            if (result.oracleResult() != null) {
-                connection.sendTextAndAwait(objectMapper.writeValueAsString(Map.of(
-                        "type", "oracle_result",
-                        "result", result.oracleResult())));
-            }
+            String charCtx = context.characterContext();
+            String journalCtx = context.journalContext();
+
+            // Send the oracle result as soon as it is rolled server-side (non-tool-calling path),
+            // before the narration call
+            List<Sent> parts = sent.get();
+            InspireResult result = session.generate(() -> oracleService.inspireMe(campaignId,
+                    context.storySummary(), charCtx, journalCtx, context.memoryContext(), choiceInstruction(),
+                    oracle -> {
+                        try {
+                            sendNow(parts, p -> p.json(Map.of(
+                                    "type", MessageType.ORACLE_RESULT,
+                                    "result", oracle)));
+                        } catch (Exception e) {
+                            Log.errorf(e, "%s: unable to send oracle result", campaignId);
+                        }
+                    }));
 
             PlayResponse response = result.response();
-            return narrativeJson(result.narrative(), response);
+            return completeNarration(result.narrative(), response);
         } finally {
-            if (lock != null) {
-                lock.set(false);
-            }
+            session.endGeneration();
         }
     }
 
@@ -295,19 +659,14 @@ public class PlayWebSocket {
         String vowDescription = msg.path("vowDescription").asText("").trim();
         String vowRank = msg.path("vowRank").asText("").trim();
         if (!vowDescription.isEmpty() && !vowRank.isEmpty()) {
-            CharacterSheet character = journal.readCharacter(campaignId);
-            var updatedVows = new ArrayList<>(character.vows());
-            updatedVows.add(new Vow(vowDescription, Rank.valueOf(vowRank), 0));
-            CharacterSheet updated = new CharacterSheet(
-                    character.name(), character.edge(), character.heart(), character.iron(),
-                    character.shadow(), character.wits(), character.health(), character.spirit(),
-                    character.supply(), character.momentum(), character.location(), updatedVows);
-            journal.updateCharacter(campaignId, updated);
-
-            // Notify client so sidebar vows list updates
-            connection.sendTextAndAwait(objectMapper.writeValueAsString(Map.of(
-                    "type", "character_update",
-                    "character", updated)));
+            CharacterSheet updated = session.updateCharacter(character -> {
+                var updatedVows = new ArrayList<>(character.vows());
+                updatedVows.add(new Vow(vowDescription, Rank.valueOf(vowRank), 0));
+                return character.withVows(updatedVows);
+            });
+
+            // Notify clients so sidebar vows list updates
+            publishCharacter(updated);
         }
 
         // Journal the player's action description (if provided) before the roll
@@ -317,8 +676,8 @@ public class PlayWebSocket {
         }
 
         // Journal the roll (include vow description if this is a Swear an Iron Vow)
-        String moveName = moveKey.replace("_", " ");
-        moveName = moveName.substring(0, 1).toUpperCase() + moveName.substring(1);
+        String moveWords = moveKey.replace("_", " ");
+        String moveName = moveWords.substring(0, 1).toUpperCase() + moveWords.substring(1);
         String mechanicalEntry = !vowDescription.isEmpty()
                 ? "**%s**: \"%s\" (%s) — +%s: Action %d, Challenge %d|%d → **%s**".formatted(
                         moveName, vowDescription, vowRank.toLowerCase().replace("_", " "),
@@ -336,36 +695,41 @@ public class PlayWebSocket {
             journal.appendMechanical(campaignId, ptpOracle.toJournalEntry());
 
             // Send the Pay the Price result to the client
-            String ptpJson = objectMapper.writeValueAsString(Map.of(
-                    "type", "oracle_result",
-                    "result", ptpOracle));
-            connection.sendTextAndAwait(ptpJson);
+            send(p -> p.json(Map.of(
+                    "type", MessageType.ORACLE_RESULT,
+                    "result", ptpOracle)));
 
             // Append to moveOutcomeText so the LLM narrates with the specific price
             moveOutcomeText += "\n\n**Pay the Price result**: " + ptpOracle.resultText();
         }
 
-        // Send the rules text immediately
-        String moveOutcomeJson = objectMapper.writeValueAsString(Map.of(
-                "type", "move_outcome",
+        // Send the rules text (and anything queued before it) now, ahead of the LLM call
+        String moveOutcomeHtml = StringUtils.mdToHtml(moveOutcomeText).getValue();
+        sendNow(sent.get(), p -> p.json(Map.of(
+                "type", MessageType.MOVE_OUTCOME,
                 "moveName", moveName,
-                "moveOutcomeText", StringUtils.mdToHtml(moveOutcomeText).getValue()));
-        connection.sendTextAndAwait(moveOutcomeJson);
+                "moveOutcomeText", moveOutcomeHtml)));
 
         // Now get LLM narration
-        AtomicBoolean lock = GENERATION_LOCKS.get(campaignId);
-        if (lock != null && !lock.compareAndSet(false, true)) {
+        if (!session.beginGeneration("move", subscriber)) {
             return errorJson("Generation already in progress");
         }
+        session.publishJournal(subscriber);
 
         try {
-            String journalCtx = journal.getRecentJournal(campaignId, 20);
+            String outcomeText = moveOutcomeText;
+            // The move prompt has no story memory: a null query skips retrieval
+            var context = contextAssembler.assemble(session, Prompt.MOVE_RESULT, (String) null,
+                    moveName, outcomeText, choiceInstruction());
+            String summaryCtx = context.storySummary();
+            String journalCtx = context.journalContext();
 
             memoryProvider.clear(campaignId);
-            PlayResponse response = assistant.narrateMoveResult(
-                    campaignId, moveName, outcome.display(),
-                    actionScore, challenge1, challenge2,
-                    moveOutcomeText, journalCtx, "", choiceInstruction());
+            PlayResponse response = session.generate(() -> router.call(ModelRoute.NARRATOR, campaignId,
+                    () -> assistant.narrateMoveResult(
+                            campaignId, moveName, outcome.display(),
+                            actionScore, challenge1, challenge2,
+                            outcomeText, summaryCtx, journalCtx, "", choiceInstruction())));
             String narrative = OracleService.stripOracleLines(
                     JournalParser.sanitizeNarrative(response.narrative()));
 
@@ -373,31 +737,38 @@ public class PlayWebSocket {
 
             // If this vow roll ends the creation phase, send narrative first, then finalize
             if (!vowDescription.isEmpty() && creationEngine != null) {
-                connection.sendTextAndAwait(narrativeJson(narrative, response));
+                outbound.send(completeNarration(narrative, response));
                 creationEngine = null;
-                return objectMapper.writeValueAsString(Map.of(
-                        "type", "creation_phase",
+                CampaignSession.Broadcast active = p -> p.json(Map.of(
+                        "type", MessageType.CREATION_PHASE,
                         "phase", "active"));
+                session.broadcast(subscriber, active);
+                return reply(active);
             }
 
-            return narrativeJson(narrative, response);
+            return completeNarration(narrative, response);
         } finally {
-            if (lock != null) {
-                lock.set(false);
-            }
+            session.endGeneration();
         }
     }
 
+    /**
+     * Stop the campaign's in-flight generation. The handler waiting on it replies with
+     * <code>cancelled</code>; nothing is journaled for it.
+     */
+    private String handleCancel() {
+        if (!session.cancelGeneration("player")) {
+            return cancelledJson();
+        }
+        return null;
+    }
+
     private String handleOracle(JsonNode msg) throws Exception {
         String collectionKey = msg.path("collectionKey").asText();
         String tableKey = msg.path("tableKey").asText();
         OracleResult result = oracleService.rollOracle(collectionKey, tableKey);
         journal.appendMechanical(campaignId, result.toJournalEntry());
-        int blockIndex = JournalParser.countBlocks(journal.getRecentJournal(campaignId, 100)) - 1;
-        return objectMapper.writeValueAsString(Map.of(
-                "type", "oracle_result",
-                "result", result,
-                "blockIndex", blockIndex));
+        return oracleResultJson(result);
     }
 
     private String handleOracleManual(JsonNode msg) throws Exception {
@@ -406,82 +777,130 @@ public class PlayWebSocket {
         int roll = msg.path("roll").asInt();
         OracleResult result = oracleService.rollOracleManual(collectionKey, tableKey, roll);
         journal.appendMechanical(campaignId, result.toJournalEntry());
-        int blockIndex = JournalParser.countBlocks(journal.getRecentJournal(campaignId, 100)) - 1;
-        return objectMapper.writeValueAsString(Map.of(
-                "type", "oracle_result",
-                "result", result,
-                "blockIndex", blockIndex));
+        return oracleResultJson(result);
+    }
+
+    private String oracleResultJson(OracleResult result) throws Exception {
+        // The oracle entry was just appended: it is the last block in the journal
+        var blocks = session.history().blocks();
+        var block = blocks.isEmpty() ? null : blocks.getLast();
+        return reply(p -> {
+            var map = new HashMap<String, Object>();
+            map.put("type", MessageType.ORACLE_RESULT);
+            map.put("result", result);
+            if (block != null) {
+                map.put("blockId", block.id());
+                if (!p.isCompact()) {
+                    map.put("blockIndex", block.index());
+                }
+            }
+            return p.json(map);
+        });
     }
 
     private String handleProgressMark(JsonNode msg) throws Exception {
         int vowIndex = msg.path("vowIndex").asInt();
-        CharacterSheet character = journal.readCharacter(campaignId);
-
-        if (vowIndex < 0 || vowIndex >= character.vows().size()) {
+        if (vowIndex < 0 || vowIndex >= session.character().vows().size()) {
             return errorJson("Invalid vow index: " + vowIndex);
         }
 
-        var vow = character.vows().get(vowIndex);
-        int newProgress = mechanics.markProgress(vow.progress(), vow.rank());
-        var updatedVow = new Vow(vow.description(), vow.rank(), newProgress);
-
-        var updatedVows = new ArrayList<>(character.vows());
-        updatedVows.set(vowIndex, updatedVow);
-        CharacterSheet updated = new CharacterSheet(
-                character.name(), character.edge(), character.heart(), character.iron(),
-                character.shadow(), character.wits(), character.health(), character.spirit(),
-                character.supply(), character.momentum(), character.location(), updatedVows);
-
-        journal.updateCharacter(campaignId, updated);
-        return objectMapper.writeValueAsString(Map.of(
-                "type", "character_update",
-                "character", updated));
+        CharacterSheet updated = session.updateCharacter(character -> {
+            var vow = character.vows().get(vowIndex);
+            int newProgress = mechanics.markProgress(vow.progress(), vow.rank());
+            var updatedVows = new ArrayList<>(character.vows());
+            updatedVows.set(vowIndex, new Vow(vow.description(), vow.rank(), newProgress));
+            return character.withVows(updatedVows);
+        });
+        publishCharacter(updated);
+        return null;
     }
 
     private String handleCharacterUpdate(JsonNode msg) throws Exception {
-        CharacterSheet character = objectMapper.treeToValue(msg.path("character"), CharacterSheet.class);
-        journal.updateCharacter(campaignId, character);
-        return objectMapper.writeValueAsString(Map.of(
-                "type", "character_update",
-                "character", character));
+        CharacterSheet character = session.replaceCharacter(
+                objectMapper.treeToValue(msg.path("character"), CharacterSheet.class));
+        publishCharacter(character);
+        return null;
+    }
+
+    /**
+     * Send a changed character sheet to this client and the campaign's other subscribers.
+     */
+    private void publishCharacter(CharacterSheet character) {
+        outbound.sendCharacter(character);
+        session.broadcastCharacter(subscriber, character);
+        List<Sent> parts = sent.get();
+        if (parts != null) {
+            // A duplicate is sent the sheet as it is then
+            parts.add(new Sent(null, (p, out) -> out.sendCharacter(session.character())));
+        }
     }
 
     private String handleEditBlock(JsonNode msg) throws Exception {
-        int blockIndex = msg.path("blockIndex").asInt(-1);
-        String originalText = msg.path("originalText").asText("");
+        String blockId = msg.path("blockId").asText("");
         String newText = msg.path("newText").asText("");
-        if (blockIndex < 0 || originalText.isEmpty() || newText.isEmpty()) {
+        var before = session.history();
+        var block = before.find(blockId);
+        if (block.isEmpty() || newText.isBlank()) {
             return errorJson("Invalid edit_block request");
         }
-        boolean success = journal.replaceBlockText(campaignId, originalText, newText);
+        boolean success = journal.replaceBlockText(campaignId, block.get().markdown(), newText);
         memoryProvider.clear(campaignId);
-        String html = prettify.markdownToHtml(newText.trim());
-        return objectMapper.writeValueAsString(Map.of(
-                "type", "edit_done",
-                "blockIndex", blockIndex,
-                "success", success,
-                "html", html,
-                "markdown", newText.trim()));
+
+        // The edited block gets a new content-derived id: push the change as a delta
+        sendBlockDelta(before);
+        return protocol.json(Map.of(
+                "type", MessageType.EDIT_DONE,
+                "blockId", blockId,
+                "success", success));
     }
 
     private String handleDeleteBlock(JsonNode msg) throws Exception {
-        String blockText = msg.path("blockText").asText("");
-        String blockType = msg.path("blockType").asText("");
-        if (blockText.isEmpty()) {
+        String blockId = msg.path("blockId").asText("");
+        var before = session.history();
+        var block = before.find(blockId);
+        if (block.isEmpty()) {
             return errorJson("Invalid delete_block request");
         }
-        boolean success = journal.deleteBlockText(campaignId, blockText, blockType);
+        boolean success = journal.deleteBlockText(campaignId, block.get().markdown(), block.get().type());
         memoryProvider.clear(campaignId);
 
-        // Re-parse journal and return full block list for UI refresh
-        String existingJournal = journal.getRecentJournal(campaignId, 100);
-        var blocks = existingJournal.isBlank()
-                ? List.of()
-                : JournalParser.parseToBlocks(existingJournal, prettify);
-        return objectMapper.writeValueAsString(Map.of(
-                "type", "delete_done",
+        sendBlockDelta(before);
+        return protocol.json(Map.of(
+                "type", MessageType.DELETE_DONE,
                 "success", success,
-                "blocks", blocks));
+                "blockId", blockId));
+    }
+
+    private String handleHistoryPage(JsonNode msg) throws Exception {
+        String before = msg.path("before").asText("");
+        int limit = Math.clamp(msg.path("limit").asInt(historyPageSize), 1, 100);
+        if (before.isEmpty()) {
+            return errorJson("Invalid history_page request");
+        }
+        var page = session.before(before, limit);
+        return reply(p -> p.json(p.page(MessageType.HISTORY_PAGE, page)));
+    }
+
+    /**
+     * Compact (v2) clients do not receive block markdown up front; they ask for it when editing.
+     */
+    private String handleBlockSource(JsonNode msg) throws Exception {
+        String blockId = msg.path("blockId").asText("");
+        var block = session.history().find(blockId);
+        if (block.isEmpty()) {
+            return errorJson("Invalid block_source request");
+        }
+        return protocol.json(Map.of(
+                "type", MessageType.BLOCK_SOURCE,
+                "blockId", blockId,
+                "markdown", block.get().markdown()));
+    }
+
+    private void sendBlockDelta(CampaignSession.JournalHistory before) throws Exception {
+        var delta = session.changesSince(before);
+        if (!delta.isEmpty()) {
+            outbound.send(protocol.json(protocol.delta(MessageType.BLOCK_DELTA, delta)));
+        }
     }
 
     private String extractLastPlayerInput(String journalContent) {
@@ -500,34 +919,50 @@ public class PlayWebSocket {
         if (narrative == null || narrative.isBlank()) {
             return List.of();
         }
-        return JournalParser.parseToBlocks(narrative, prettify);
+        // The narrative was just appended: its blocks are the last ones in the journal,
+        // and carry the same ids the client will see on resume or paging.
+        int count = JournalParser.countBlocks(narrative);
+        var blocks = session.history().blocks();
+        return session.render(blocks.subList(Math.max(0, blocks.size() - count), blocks.size()));
     }
 
-    private String narrativeJson(String narrative, PlayResponse response) throws Exception {
+    /**
+     * The narration has been journaled: publish its reply to the session
+     * (broadcast to the campaign's other subscribers) and return it for this connection.
+     */
+    private String completeNarration(String narrative, PlayResponse response) throws Exception {
         // Persist location from LLM response to character sheet
         if (response.location() != null && !response.location().isBlank()) {
-            journal.updateLocation(campaignId, response.location());
+            session.updateLocation(response.location());
         }
 
-        var map = new java.util.HashMap<String, Object>();
-        map.put("type", "narrative");
-        map.put("narrative", narrative);
-        map.put("narrativeHtml", prettify.markdownToHtml(narrative));
-        map.put("blocks", blocksForNarrative(narrative));
-        map.put("npcs", response.npcs() != null ? response.npcs() : java.util.List.of());
-        map.put("location", response.location() != null ? response.location() : "");
-        if (choicePrompt && response.choices() != null && !response.choices().isEmpty()) {
-            map.put("choices", response.choices());
+        // Resolve the blocks now: the journal may move on before a late delivery
+        var blocks = blocksForNarrative(narrative);
+        Generation.Reply narration = (p, includeBlocks) -> narrativeJson(p, narrative, blocks, response, includeBlocks);
+        Generation generation = session.completeGeneration(narration);
+        if (outbound.isOpen()) {
+            session.markDelivered(generation);
         }
-        return objectMapper.writeValueAsString(map);
+        return reply(p -> narration.encode(p, true));
     }
 
-    private String characterContext(CharacterSheet character) {
-        String ctx = character.name();
-        if (character.location() != null && !character.location().isBlank()) {
-            ctx += "\nCurrent location: " + character.location();
+    private String narrativeJson(PlayProtocol protocol, String narrative, List<JournalParser.JournalBlock> blocks,
+            PlayResponse response, boolean includeBlocks) throws Exception {
+        var map = new HashMap<String, Object>();
+        map.put("type", MessageType.NARRATIVE);
+        if (includeBlocks) {
+            if (!protocol.isCompact()) {
+                map.put("narrative", narrative);
+                map.put("narrativeHtml", prettify.markdownToHtml(narrative));
+            }
+            map.put("blocks", protocol.blocks(blocks));
         }
-        return ctx;
+        map.put("npcs", response.npcs() != null ? response.npcs() : List.of());
+        map.put("location", response.location() != null ? response.location() : "");
+        if (choicePrompt && response.choices() != null && !response.choices().isEmpty()) {
+            map.put("choices", response.choices());
+        }
+        return protocol.json(map);
     }
 
     private String choiceInstruction() {
@@ -543,15 +978,23 @@ public class PlayWebSocket {
 
     private String connectedJson() {
         try {
-            return objectMapper.writeValueAsString(Map.of("type", "connected"));
+            return protocol.connected();
         } catch (Exception e) {
             return "{\"type\":\"connected\"}";
         }
     }
 
+    private String cancelledJson() {
+        try {
+            return protocol.json(MessageType.CANCELLED);
+        } catch (Exception e) {
+            return "{\"type\":\"cancelled\"}";
+        }
+    }
+
     private String errorJson(String message) {
         try {
-            return objectMapper.writeValueAsString(Map.of("type", "error", "message", message));
+            return objectMapper.writeValueAsString(Map.of("type", MessageType.ERROR, "message", message));
         } catch (Exception e) {
             return "{\"type\":\"error\",\"message\":\"Internal error\"}";
         }
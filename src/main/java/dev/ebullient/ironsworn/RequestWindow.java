@@ -0,0 +1,86 @@
+package dev.ebullient.ironsworn;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Recent client request ids for one campaign, with their replies, so a retried or
+ * double-sent message is answered from its first execution instead of running again.
+ * <p>
+ * Bounded: once more than <code>capacity</code> ids have been seen, the oldest are forgotten.
+ * A request that fails is forgotten immediately, so the client may retry it.
+ */
+public class RequestWindow {
+
+    /**
+     * What the first execution of a request sent to its connection, kept in a form that can be
+     * sent again to any connection (encoded for that connection's protocol version).
+     */
+    @FunctionalInterface
+    public interface Reply {
+        void sendTo(PlayProtocol protocol, OutboundChannel outbound) throws Exception;
+    }
+
+    /**
+     * The outcome of claiming a request id.
+     *
+     * @param reply completes with the reply of the first execution
+     * @param connectionId the connection that first sent the request
+     * @param duplicate false if the caller claimed the id and must execute the request
+     */
+    public record Claim(CompletableFuture<Reply> reply, String connectionId, boolean duplicate) {
+    }
+
+    private final int capacity;
+    private final Map<String, Claim> requests;
+
+    public RequestWindow(int capacity) {
+        this.capacity = capacity;
+        this.requests = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Claim> eldest) {
+                return size() > RequestWindow.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Claim a request id. The first claim executes the request; later claims of the same
+     * id (while it is remembered) get the first claim's reply.
+     */
+    public synchronized Claim claim(String requestId, String connectionId) {
+        Claim existing = requests.get(requestId);
+        if (existing != null) {
+            return new Claim(existing.reply(), existing.connectionId(), true);
+        }
+        Claim claim = new Claim(new CompletableFuture<>(), connectionId, false);
+        requests.put(requestId, claim);
+        return claim;
+    }
+
+    /**
+     * Record the reply of a claimed request.
+     */
+    public synchronized void complete(String requestId, Reply reply) {
+        Claim claim = requests.get(requestId);
+        if (claim != null) {
+            claim.reply().complete(reply);
+        }
+    }
+
+    /**
+     * Forget a claimed request that did not complete. Duplicates waiting on it are cancelled.
+     */
+    public synchronized void forget(String requestId) {
+        Claim claim = requests.remove(requestId);
+        if (claim != null) {
+            claim.reply().completeExceptionally(new CancellationException("Request " + requestId + " failed"));
+        }
+    }
+
+    public synchronized int size() {
+        return requests.size();
+    }
+}
@@ -9,13 +9,21 @@ import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 
 import org.jboss.resteasy.reactive.RestPath;
+import org.jboss.resteasy.reactive.RestResponse;
+import org.jboss.resteasy.reactive.server.ServerExceptionMapper;
 
+import dev.ebullient.ironsworn.CampaignSession;
+import dev.ebullient.ironsworn.CampaignSessions;
 import dev.ebullient.ironsworn.GameJournal;
 import dev.ebullient.ironsworn.JournalParser;
 import dev.ebullient.ironsworn.chat.CampaignAssistant;
 import dev.ebullient.ironsworn.chat.CampaignResponse;
+import dev.ebullient.ironsworn.chat.LlmBusyException;
 import dev.ebullient.ironsworn.chat.MarkdownAugmenter;
+import dev.ebullient.ironsworn.chat.ModelRoute;
+import dev.ebullient.ironsworn.chat.ModelRouter;
 import dev.ebullient.ironsworn.memory.StoryMemoryService;
+import dev.ebullient.ironsworn.memory.StorySummarizer;
 import dev.ebullient.ironsworn.model.CharacterSheet;
 
 @ApplicationScoped
@@ -25,12 +33,21 @@ public class CampaignResource {
     @Inject
     CampaignAssistant assistant;
 
+    @Inject
+    ModelRouter router;
+
     @Inject
     GameJournal journal;
 
+    @Inject
+    CampaignSessions sessions;
+
     @Inject
     StoryMemoryService storyMemory;
 
+    @Inject
+    StorySummarizer storySummarizer;
+
     @Inject
     MarkdownAugmenter prettify;
 
@@ -39,16 +56,30 @@ public class CampaignResource {
     @Consumes(MediaType.TEXT_PLAIN)
     @Produces(MediaType.TEXT_HTML)
     public String ask(@RestPath String campaignId, String question) {
-        CharacterSheet character = journal.readCharacter(campaignId);
+        // A live session's sheet may be ahead of the journal (character writes are deferred)
+        CharacterSheet character = sessions.find(campaignId)
+                .map(CampaignSession::character)
+                .orElseGet(() -> journal.readCharacter(campaignId));
         String charCtx = formatCharacterContext(character);
         String journalCtx = JournalParser.stripNonNarrative(journal.getRecentJournal(campaignId, 20))
                 .replaceAll("\\n+", "\n");
         String memoryCtx = storyMemory.relevantMemory(campaignId, question);
+        String summaryCtx = storySummarizer.contextBlock(campaignId);
 
-        CampaignResponse response = assistant.answer(campaignId, charCtx, journalCtx, memoryCtx, question);
+        CampaignResponse response = router.call(ModelRoute.QA, campaignId,
+                () -> assistant.answer(campaignId, summaryCtx, charCtx, journalCtx, memoryCtx, question));
         return prettify.markdownToHtml(response.response() != null ? response.response() : "");
     }
 
+    /** A question shed by the model scheduler: tell the player to try again. */
+    @ServerExceptionMapper
+    public RestResponse<String> busy(LlmBusyException e) {
+        return RestResponse.ResponseBuilder.create(RestResponse.Status.SERVICE_UNAVAILABLE,
+                prettify.markdownToHtml(e.getMessage()))
+                .type(MediaType.TEXT_HTML)
+                .build();
+    }
+
     private String formatCharacterContext(CharacterSheet c) {
         StringBuilder sb = new StringBuilder();
         sb.append("**%s** — Edge %d, Heart %d, Iron %d, Shadow %d, Wits %d\n".formatted(
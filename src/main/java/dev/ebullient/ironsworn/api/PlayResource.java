@@ -18,6 +18,8 @@ import org.jboss.resteasy.reactive.RestPath;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
+import dev.ebullient.ironsworn.CampaignSession;
+import dev.ebullient.ironsworn.CampaignSessions;
 import dev.ebullient.ironsworn.GameJournal;
 import dev.ebullient.ironsworn.model.Campaign;
 import dev.ebullient.ironsworn.model.CharacterSheet;
@@ -29,6 +31,9 @@ public class PlayResource {
     @Inject
     GameJournal journal;
 
+    @Inject
+    CampaignSessions sessions;
+
     @GET
     @Path("/campaigns")
     @Produces(MediaType.APPLICATION_JSON)
@@ -54,13 +59,17 @@ public class PlayResource {
     @Path("/{campaignId}/character")
     @Produces(MediaType.APPLICATION_JSON)
     public CharacterSheet getCharacter(@RestPath String campaignId) {
-        return journal.readCharacter(campaignId);
+        return sessions.find(campaignId)
+                .map(CampaignSession::character)
+                .orElseGet(() -> journal.readCharacter(campaignId));
     }
 
     @DELETE
     @Path("/campaigns/{campaignId}")
     @Produces(MediaType.APPLICATION_JSON)
     public Response deleteCampaign(@RestPath String campaignId) {
+        // A live session must not keep generating or writing the character sheet
+        sessions.close(campaignId);
         boolean deleted = journal.deleteCampaign(campaignId);
         if (!deleted) {
             return Response.status(Response.Status.NOT_FOUND)
@@ -74,6 +83,11 @@ public class PlayResource {
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public CharacterSheet updateCharacter(@RestPath String campaignId, CharacterSheet character) {
+        // Keep any live play session in sync with the sheet on disk
+        var session = sessions.find(campaignId);
+        if (session.isPresent()) {
+            return session.get().replaceCharacter(character);
+        }
         journal.updateCharacter(campaignId, character);
         return journal.readCharacter(campaignId);
     }
@@ -6,7 +6,7 @@ import dev.langchain4j.service.UserMessage;
 import dev.langchain4j.service.guardrail.OutputGuardrails;
 import io.quarkiverse.langchain4j.RegisterAiService;
 
-@RegisterAiService(chatMemoryProviderSupplier = RegisterAiService.BeanChatMemoryProviderSupplier.class)
+@RegisterAiService(modelName = "campaign", chatMemoryProviderSupplier = RegisterAiService.BeanChatMemoryProviderSupplier.class)
 @OutputGuardrails(CampaignResponseGuardrail.class)
 public interface CampaignAssistant {
 
@@ -14,6 +14,7 @@ public interface CampaignAssistant {
     @UserMessage(fromResource = "prompts/campaign-answer-user.txt")
     CampaignResponse answer(
             @MemoryId String campaignId,
+            String storySummary,
             String characterContext,
             String journalContext,
             String memoryContext,
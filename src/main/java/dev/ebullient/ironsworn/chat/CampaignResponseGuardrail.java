@@ -22,16 +22,34 @@ public class CampaignResponseGuardrail implements OutputGuardrail {
     @Inject
     ObjectMapper objectMapper;
 
+    @Inject
+    GuardrailMetrics metrics;
+
     @Override
     public OutputGuardrailResult validate(AiMessage responseFromLLM) {
+        OutputGuardrailResult result = check(responseFromLLM);
+        return metrics == null ? result : metrics.record("campaign", result);
+    }
+
+    private OutputGuardrailResult check(AiMessage responseFromLLM) {
+        String text = responseFromLLM.text();
+        CampaignResponse response;
         try {
-            CampaignResponse response = objectMapper.readValue(responseFromLLM.text(), CampaignResponse.class);
-            if (response.response() == null || response.response().isBlank()) {
-                return reprompt(MISSING_RESPONSE_MESSAGE, MISSING_RESPONSE_PROMPT);
-            }
-            return OutputGuardrailResult.successWith(responseFromLLM.text(), response);
+            response = objectMapper.readValue(text, CampaignResponse.class);
         } catch (JsonProcessingException e) {
-            return reprompt(REPROMPT_MESSAGE, e, REPROMPT_PROMPT);
+            var salvaged = JsonSalvage.read(objectMapper, text, CampaignResponse.class, "response");
+            if (salvaged.isEmpty()) {
+                return reprompt(REPROMPT_MESSAGE, e, REPROMPT_PROMPT);
+            }
+            if (metrics != null) {
+                metrics.salvaged("campaign");
+            }
+            text = salvaged.get().json();
+            response = salvaged.get().value();
+        }
+        if (response.response() == null || response.response().isBlank()) {
+            return reprompt(MISSING_RESPONSE_MESSAGE, MISSING_RESPONSE_PROMPT);
         }
+        return OutputGuardrailResult.successWith(text, response);
     }
 }
@@ -6,7 +6,7 @@ import dev.langchain4j.service.UserMessage;
 import dev.langchain4j.service.guardrail.OutputGuardrails;
 import io.quarkiverse.langchain4j.RegisterAiService;
 
-@RegisterAiService(chatMemoryProviderSupplier = RegisterAiService.BeanChatMemoryProviderSupplier.class)
+@RegisterAiService(modelName = "creation", chatMemoryProviderSupplier = RegisterAiService.BeanChatMemoryProviderSupplier.class)
 @OutputGuardrails(CreationResponseGuardrail.class)
 public interface CreationAssistant {
 
@@ -0,0 +1,44 @@
+package dev.ebullient.ironsworn.chat;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.quarkus.logging.Log;
+
+/**
+ * Character creation guidance, streamed from the "creation" model ({@link CreationStreamingAssistant})
+ * so a cancelled generation also stops the model server. Output that fails
+ * {@link CreationResponseGuardrail}'s checks is asked for again through the guarded {@link CreationAssistant}.
+ */
+@Singleton
+public class CreationGuide {
+
+    @Inject
+    CreationStreamingAssistant streaming;
+
+    @Inject
+    CreationAssistant guarded;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    GuardrailMetrics metrics;
+
+    public CreationResponse guide(String sessionId, String name, int edge, int heart, int iron, int shadow,
+            int wits, String journalContext, int exchangeCount, String playerInput, String vowInstruction) {
+        String text = StreamedResponses.collect(streaming.guide(sessionId, name, edge, heart, iron, shadow, wits,
+                journalContext, exchangeCount, playerInput, vowInstruction));
+        var response = StreamedResponses.parse(objectMapper, metrics, "creation", text, CreationResponse.class,
+                "message", "suggestedVow");
+        if (response.isPresent() && CreationResponseGuardrail.isComplete(response.get())) {
+            return response.get();
+        }
+        Log.debugf("%s: streamed creation guidance failed validation; asking again with guardrails", sessionId);
+        metrics.fallback("creation");
+        return guarded.guide(sessionId, name, edge, heart, iron, shadow, wits,
+                journalContext, exchangeCount, playerInput, vowInstruction);
+    }
+}
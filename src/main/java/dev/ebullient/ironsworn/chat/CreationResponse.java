@@ -1,8 +1,10 @@
 package dev.ebullient.ironsworn.chat;
 
+import jakarta.annotation.Nullable;
+
 import dev.langchain4j.model.output.structured.Description;
 
 public record CreationResponse(
         @Description("Your message to the player — questions, scene-setting, or vow suggestion. 1-2 paragraphs (required).") String message,
-        @Description("A suggested background vow for the character, or null if you are still asking questions") String suggestedVow) {
+        @Description("A suggested background vow for the character, or null if you are still asking questions") @Nullable String suggestedVow) {
 }
@@ -16,22 +16,45 @@ public class CreationResponseGuardrail implements OutputGuardrail {
     @Inject
     ObjectMapper objectMapper;
 
+    @Inject
+    GuardrailMetrics metrics;
+
     @Override
     public OutputGuardrailResult validate(AiMessage responseFromLLM) {
+        OutputGuardrailResult result = check(responseFromLLM);
+        return metrics == null ? result : metrics.record("creation", result);
+    }
+
+    private OutputGuardrailResult check(AiMessage responseFromLLM) {
+        String text = responseFromLLM.text();
+        CreationResponse response;
         try {
-            CreationResponse response = objectMapper.readValue(responseFromLLM.text(), CreationResponse.class);
-            if (response.message() == null || response.message().isBlank()) {
-                return reprompt("The 'message' field must be present and non-empty.",
-                        """
-                                Return a valid JSON object with fields: message (string), suggestedVow (string).
-                                The message field MUST be non-empty markdown text (1-2 paragraphs).
-                                """
-                                .trim());
-            }
-            return OutputGuardrailResult.successWith(responseFromLLM.text(), response);
+            response = objectMapper.readValue(text, CreationResponse.class);
         } catch (JsonProcessingException e) {
-            return reprompt("Invalid JSON", e,
-                    "Make sure you return a valid JSON object with fields: message (string), suggestedVow (string or null)");
+            var salvaged = JsonSalvage.read(objectMapper, text, CreationResponse.class, "message", "suggestedVow");
+            if (salvaged.isEmpty()) {
+                return reprompt("Invalid JSON", e,
+                        "Make sure you return a valid JSON object with fields: message (string), suggestedVow (string or null)");
+            }
+            if (metrics != null) {
+                metrics.salvaged("creation");
+            }
+            text = salvaged.get().json();
+            response = salvaged.get().value();
+        }
+        if (!isComplete(response)) {
+            return reprompt("The 'message' field must be present and non-empty.",
+                    """
+                            Return a valid JSON object with fields: message (string), suggestedVow (string).
+                            The message field MUST be non-empty markdown text (1-2 paragraphs).
+                            """
+                            .trim());
         }
+        return OutputGuardrailResult.successWith(text, response);
+    }
+
+    /** Whether a parsed response passes this guardrail's checks (streamed output is held to the same). */
+    static boolean isComplete(CreationResponse response) {
+        return response.message() != null && !response.message().isBlank();
     }
 }
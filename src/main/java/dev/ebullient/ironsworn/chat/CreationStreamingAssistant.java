@@ -0,0 +1,31 @@
+package dev.ebullient.ironsworn.chat;
+
+import dev.langchain4j.service.MemoryId;
+import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.UserMessage;
+import io.quarkiverse.langchain4j.RegisterAiService;
+import io.smallrye.mutiny.Multi;
+
+/**
+ * {@link CreationAssistant}'s prompt, streamed so a cancelled generation can close the request to the model
+ * server (see {@link CreationGuide}). Output guardrails do not apply to streams: {@link CreationGuide}
+ * checks the assembled response itself.
+ */
+@RegisterAiService(modelName = "creation", chatMemoryProviderSupplier = RegisterAiService.BeanChatMemoryProviderSupplier.class)
+public interface CreationStreamingAssistant {
+
+    @SystemMessage(fromResource = "prompts/creation-guide-system.txt")
+    @UserMessage(fromResource = "prompts/creation-guide-user.txt")
+    Multi<String> guide(
+            @MemoryId String sessionId,
+            String name,
+            int edge,
+            int heart,
+            int iron,
+            int shadow,
+            int wits,
+            String journalContext,
+            int exchangeCount,
+            String playerInput,
+            String vowInstruction);
+}
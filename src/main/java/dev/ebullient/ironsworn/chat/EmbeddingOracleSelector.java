@@ -0,0 +1,157 @@
+package dev.ebullient.ironsworn.chat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import dev.ebullient.ironsworn.ContextAssembler;
+import dev.ebullient.ironsworn.memory.EmbeddingGateway;
+import dev.ebullient.ironsworn.memory.StoryMemoryService;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.CosineSimilarity;
+import io.quarkus.logging.Log;
+
+/**
+ * Chooses the Inspire oracle table without a chat model call: each candidate table has a
+ * short description of the scenes it suits, embedded once; the scene (see
+ * {@link ContextAssembler#sceneQuery(String)}) is compared with each, and a table is drawn with
+ * probability weighted by similarity (a softmax with <code>ironsworn.oracle.embedding.temperature</code>;
+ * 0 always takes the closest).
+ * <p>
+ * The scene embedding is usually the one already computed for story memory retrieval
+ * ({@link StoryMemoryService#embedQuery(String, String)}).
+ */
+@Singleton
+public class EmbeddingOracleSelector {
+
+    /** What each {@link InspireOracleSelector#INSPIRE_ORACLE_TABLES} table is for, keyed collection/table. */
+    static final Map<String, String> DESCRIPTIONS = Map.ofEntries(
+            Map.entry("action_and_theme/action",
+                    "The hero must decide what to do next; something should happen or change; an event or deed."),
+            Map.entry("action_and_theme/theme",
+                    "The meaning or mood of the moment is unclear; a motive, mystery or emotional undercurrent."),
+            Map.entry("character/descriptor",
+                    "A stranger appears and we need to know what they look like and how they seem."),
+            Map.entry("character/role",
+                    "Someone new is met; who are they, what is their job or place in the world."),
+            Map.entry("character/goal",
+                    "A person's intentions are unknown; what do they want from the hero or the world."),
+            Map.entry("character/disposition",
+                    "How does the other person react to the hero: friendly, wary, hostile, afraid."),
+            Map.entry("place/location",
+                    "Travel through the wilds; arriving somewhere new; what kind of place lies ahead."),
+            Map.entry("place/descriptor",
+                    "Describe the surroundings: the look, feel and condition of the land, ruin or shelter."),
+            Map.entry("settlement/name",
+                    "Reaching a village, steading or hold whose name is not yet known."),
+            Map.entry("settlement/trouble",
+                    "A community in need: what threatens or troubles the settlement and its people."),
+            Map.entry("turning_point/major_plot_twist",
+                    "The story stalls or a revelation is due; a betrayal, hidden truth or dramatic reversal."),
+            Map.entry("turning_point/combat_action",
+                    "A fight or chase is underway; what does the foe do next in battle."),
+            Map.entry("turning_point/mystic_backlash",
+                    "Ritual, magic, omens or the supernatural; a mystic force answers or strikes back."));
+
+    record Candidate(String collectionKey, String tableKey, Embedding embedding) {
+    }
+
+    @ConfigProperty(name = "ironsworn.oracle.embedding.temperature", defaultValue = "0.05")
+    double temperature;
+
+    @Inject
+    EmbeddingGateway embeddingGateway;
+
+    @Inject
+    StoryMemoryService storyMemory;
+
+    private volatile List<Candidate> candidates;
+
+    /**
+     * @return the chosen table, or empty if there is no scene yet or embeddings are unavailable
+     */
+    public Optional<InspireOracleChoice> choose(String campaignId, String journalCtx) {
+        String scene = ContextAssembler.sceneQuery(journalCtx);
+        if (scene.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            List<Candidate> all = candidates();
+            Embedding sceneEmbedding = storyMemory.embedQuery(campaignId, scene);
+            double[] scores = new double[all.size()];
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] = CosineSimilarity.between(sceneEmbedding, all.get(i).embedding());
+            }
+            int pick = sample(scores, temperature, ThreadLocalRandom.current());
+            Candidate chosen = all.get(pick);
+            return Optional.of(new InspireOracleChoice(chosen.collectionKey(), chosen.tableKey(),
+                    "similarity %.3f".formatted(scores[pick])));
+        } catch (RuntimeException e) {
+            Log.debugf(e, "Embedding oracle selection failed for %s", campaignId);
+            return Optional.empty();
+        }
+    }
+
+    /** Embed the candidate descriptions (once; retried on the next call if it fails). */
+    List<Candidate> candidates() {
+        List<Candidate> result = candidates;
+        if (result == null) {
+            List<String> keys = new ArrayList<>();
+            List<TextSegment> segments = new ArrayList<>();
+            InspireOracleSelector.INSPIRE_ORACLE_TABLES.forEach((collection, tables) -> tables.forEach(table -> {
+                keys.add(collection + "/" + table);
+                segments.add(TextSegment.from(DESCRIPTIONS.get(collection + "/" + table)));
+            }));
+            List<Embedding> embeddings = embeddingGateway.embedAll(segments);
+
+            result = new ArrayList<>();
+            for (int i = 0; i < keys.size(); i++) {
+                String[] key = keys.get(i).split("/");
+                result.add(new Candidate(key[0], key[1], embeddings.get(i)));
+            }
+            result = List.copyOf(result);
+            candidates = result;
+        }
+        return result;
+    }
+
+    /**
+     * Draw an index with probability proportional to <code>exp(score / temperature)</code>.
+     * A temperature of 0 (or less) returns the highest score.
+     */
+    static int sample(double[] scores, double temperature, RandomGenerator random) {
+        int best = 0;
+        for (int i = 1; i < scores.length; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        if (temperature <= 0) {
+            return best;
+        }
+        double[] weights = new double[scores.length];
+        double total = 0;
+        for (int i = 0; i < scores.length; i++) {
+            // Relative to the best score, so exp() cannot overflow
+            weights[i] = Math.exp((scores[i] - scores[best]) / temperature);
+            total += weights[i];
+        }
+        double r = random.nextDouble() * total;
+        for (int i = 0; i < weights.length; i++) {
+            r -= weights[i];
+            if (r < 0) {
+                return i;
+            }
+        }
+        return best;
+    }
+}
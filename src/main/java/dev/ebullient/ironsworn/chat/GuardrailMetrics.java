@@ -0,0 +1,66 @@
+package dev.ebullient.ironsworn.chat;
+
+import java.util.Locale;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import dev.langchain4j.guardrail.OutputGuardrailResult;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Counts output guardrail validations and reprompts. Each reprompt is a full extra generation,
+ * so <code>ironsworn.guardrail.reprompts / ironsworn.guardrail.validations</code> (per guardrail)
+ * is the share of model calls wasted on malformed output.
+ * <code>ironsworn.guardrail.salvaged</code> counts malformed output recovered by
+ * {@link JsonSalvage} instead of reprompting.
+ * <code>ironsworn.guardrail.stream.fallbacks</code> counts streamed output that failed the checks
+ * and was asked for again with a guarded (synchronous) call.
+ */
+@Singleton
+public class GuardrailMetrics {
+
+    @Inject
+    MeterRegistry registry;
+
+    /**
+     * Record a validation result and return it.
+     *
+     * @param guardrail short guardrail name, e.g. "play"
+     */
+    public OutputGuardrailResult record(String guardrail, OutputGuardrailResult result) {
+        registry.counter("ironsworn.guardrail.validations", "guardrail", guardrail).increment();
+        if (result.isReprompt()) {
+            String reason = result.failures().isEmpty() ? "unknown" : reason(result.failures().getFirst().message());
+            registry.counter("ironsworn.guardrail.reprompts", "guardrail", guardrail, "reason", reason).increment();
+        }
+        return result;
+    }
+
+    /**
+     * Record output that did not parse but was recovered without a reprompt.
+     *
+     * @param guardrail short guardrail name, e.g. "play"
+     */
+    public void salvaged(String guardrail) {
+        registry.counter("ironsworn.guardrail.salvaged", "guardrail", guardrail).increment();
+    }
+
+    /**
+     * Record streamed output that failed the checks and was asked for again with guardrails.
+     *
+     * @param guardrail short guardrail name, e.g. "play"
+     */
+    public void fallback(String guardrail) {
+        registry.counter("ironsworn.guardrail.stream.fallbacks", "guardrail", guardrail).increment();
+    }
+
+    /** A failure message as a metric tag, e.g. "Missing narrative" → "missing_narrative". */
+    static String reason(String message) {
+        if (message == null || message.isBlank()) {
+            return "unknown";
+        }
+        String tag = message.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "_").replaceAll("^_|_$", "");
+        return tag.length() > 40 ? tag.substring(0, 40) : tag;
+    }
+}
@@ -16,22 +16,41 @@ public class InspireOracleChoiceGuardrail implements OutputGuardrail {
     @Inject
     ObjectMapper objectMapper;
 
+    @Inject
+    GuardrailMetrics metrics;
+
     @Override
     public OutputGuardrailResult validate(AiMessage responseFromLLM) {
+        OutputGuardrailResult result = check(responseFromLLM);
+        return metrics == null ? result : metrics.record("oracle_choice", result);
+    }
+
+    private OutputGuardrailResult check(AiMessage responseFromLLM) {
+        String text = responseFromLLM.text();
+        InspireOracleChoice response;
         try {
-            InspireOracleChoice response = objectMapper.readValue(responseFromLLM.text(), InspireOracleChoice.class);
-            if (response.collectionKey() == null || response.collectionKey().isBlank()) {
-                return reprompt("Missing collectionKey", new IllegalArgumentException("collectionKey is blank"),
-                        "Return valid JSON with fields: collectionKey (string), tableKey (string), reason (string).");
+            response = objectMapper.readValue(text, InspireOracleChoice.class);
+        } catch (JsonProcessingException e) {
+            // A cut-off key would name the wrong table; a cut-off reason is harmless
+            var salvaged = JsonSalvage.read(objectMapper, text, InspireOracleChoice.class, "collectionKey", "tableKey");
+            if (salvaged.isEmpty()) {
+                return reprompt("Invalid JSON", e,
+                        "Make sure you return a valid JSON object with fields: collectionKey (string), tableKey (string), reason (string)");
             }
-            if (response.tableKey() == null || response.tableKey().isBlank()) {
-                return reprompt("Missing tableKey", new IllegalArgumentException("tableKey is blank"),
-                        "Return valid JSON with fields: collectionKey (string), tableKey (string), reason (string).");
+            if (metrics != null) {
+                metrics.salvaged("oracle_choice");
             }
-            return OutputGuardrailResult.successWith(responseFromLLM.text(), response);
-        } catch (JsonProcessingException e) {
-            return reprompt("Invalid JSON", e,
-                    "Make sure you return a valid JSON object with fields: collectionKey (string), tableKey (string), reason (string)");
+            text = salvaged.get().json();
+            response = salvaged.get().value();
+        }
+        if (response.collectionKey() == null || response.collectionKey().isBlank()) {
+            return reprompt("Missing collectionKey", new IllegalArgumentException("collectionKey is blank"),
+                    "Return valid JSON with fields: collectionKey (string), tableKey (string), reason (string).");
+        }
+        if (response.tableKey() == null || response.tableKey().isBlank()) {
+            return reprompt("Missing tableKey", new IllegalArgumentException("tableKey is blank"),
+                    "Return valid JSON with fields: collectionKey (string), tableKey (string), reason (string).");
         }
+        return OutputGuardrailResult.successWith(text, response);
     }
 }
@@ -9,7 +9,7 @@ import dev.langchain4j.service.UserMessage;
 import dev.langchain4j.service.guardrail.OutputGuardrails;
 import io.quarkiverse.langchain4j.RegisterAiService;
 
-@RegisterAiService(chatMemoryProviderSupplier = RegisterAiService.NoChatMemoryProviderSupplier.class)
+@RegisterAiService(modelName = "oracle-choice", chatMemoryProviderSupplier = RegisterAiService.NoChatMemoryProviderSupplier.class)
 @OutputGuardrails(InspireOracleChoiceGuardrail.class)
 public interface InspireOracleSelector {
 
@@ -0,0 +1,239 @@
+package dev.ebullient.ironsworn.chat;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Recovers a JSON object from model output that does not parse as-is, so a guardrail can
+ * accept it instead of reprompting (a full extra generation).
+ * <p>
+ * Handles the usual damage: a markdown code fence, prose before or after the object,
+ * unescaped quotes and raw newlines inside strings, invalid escapes, trailing commas, and
+ * output cut off before its closing quotes and braces. Anything still unparseable after
+ * repair is left to the reprompt path.
+ */
+public final class JsonSalvage {
+
+    /**
+     * Repaired JSON.
+     *
+     * @param json the repaired object
+     * @param truncatedField the field whose string value was cut off and closed by the repair
+     *        (null if no string value was truncated)
+     */
+    public record Salvaged(String json, String truncatedField) {
+        /** Whether the field's value was complete in the original output. */
+        public boolean isIntact(String field) {
+            return !field.equals(truncatedField);
+        }
+    }
+
+    /**
+     * A response read from salvaged output.
+     *
+     * @param json the repaired JSON (to keep in chat memory instead of the damaged text)
+     * @param value the parsed response
+     */
+    public record Parsed<T>(String json, T value) {
+    }
+
+    private static final Pattern FENCE = Pattern.compile("```(?:json|JSON)?\\s*\\n?(.*?)(?:```|$)", Pattern.DOTALL);
+
+    private JsonSalvage() {
+    }
+
+    /**
+     * @return the repaired object, or empty if the text contains no object
+     */
+    public static Optional<Salvaged> salvage(String text) {
+        if (text == null) {
+            return Optional.empty();
+        }
+        String body = stripFence(text);
+        int start = body.indexOf('{');
+        if (start < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(repair(body.substring(start)));
+    }
+
+    /**
+     * Salvage and parse output that failed to parse as-is.
+     *
+     * @param required fields whose values must not have been cut off
+     * @return the parsed response, or empty if the output could not be recovered
+     */
+    public static <T> Optional<Parsed<T>> read(ObjectMapper mapper, String text, Class<T> type, String... required) {
+        Optional<Salvaged> salvaged = salvage(text);
+        if (salvaged.isEmpty()) {
+            return Optional.empty();
+        }
+        for (String field : required) {
+            if (!salvaged.get().isIntact(field)) {
+                return Optional.empty();
+            }
+        }
+        try {
+            String json = salvaged.get().json();
+            return Optional.of(new Parsed<>(json, mapper.readValue(json, type)));
+        } catch (JsonProcessingException e) {
+            return Optional.empty();
+        }
+    }
+
+    static String stripFence(String text) {
+        Matcher m = FENCE.matcher(text);
+        return m.find() ? m.group(1) : text;
+    }
+
+    /**
+     * Rewrite the text from its first <code>{</code> to the end of the outermost object,
+     * fixing strings and closing what was left open.
+     */
+    static Salvaged repair(String text) {
+        StringBuilder out = new StringBuilder(text.length() + 8);
+        Deque<Character> open = new ArrayDeque<>();
+        boolean inString = false;
+        StringBuilder string = new StringBuilder();
+        String lastKey = null;
+        String valueKey = null;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (inString) {
+                if (c == '\\' && i + 1 < text.length()) {
+                    char next = text.charAt(++i);
+                    if ("\"\\/bfnrtu".indexOf(next) >= 0) {
+                        out.append(c).append(next);
+                    } else {
+                        // Invalid escape (e.g. \'): keep the character
+                        out.append(next);
+                    }
+                    string.append(next);
+                } else if (c == '"') {
+                    if (closesString(text, i + 1)) {
+                        inString = false;
+                        out.append(c);
+                        if (nextNonWhitespace(text, i + 1) == ':') {
+                            lastKey = string.toString();
+                        }
+                    } else {
+                        // A quote inside the text
+                        out.append("\\\"");
+                        string.append(c);
+                    }
+                } else if (c == '\n') {
+                    out.append("\\n");
+                } else if (c == '\r') {
+                    out.append("\\r");
+                } else if (c == '\t') {
+                    out.append("\\t");
+                } else if (c < 0x20) {
+                    out.append(String.format("\\u%04x", (int) c));
+                } else {
+                    out.append(c);
+                    string.append(c);
+                }
+                continue;
+            }
+
+            switch (c) {
+                case '"' -> {
+                    inString = true;
+                    string.setLength(0);
+                    // A value (not a key) follows ':' or starts an array item
+                    char before = lastNonWhitespace(out);
+                    boolean inArray = Character.valueOf(']').equals(open.peek());
+                    valueKey = before == ':' || before == '[' || (before == ',' && inArray) ? lastKey : null;
+                    out.append(c);
+                }
+                case '{', '[' -> {
+                    open.push(c == '{' ? '}' : ']');
+                    out.append(c);
+                }
+                case '}', ']' -> {
+                    if (!open.isEmpty() && open.peek() == c) {
+                        open.pop();
+                        trimTrailingComma(out);
+                        out.append(c);
+                        if (open.isEmpty()) {
+                            // End of the outermost object: ignore whatever follows
+                            return new Salvaged(out.toString(), null);
+                        }
+                    }
+                }
+                default -> out.append(c);
+            }
+        }
+
+        // Cut off: close the open string, then the open arrays and objects
+        String truncated = null;
+        if (inString) {
+            out.append('"');
+            truncated = valueKey != null ? valueKey : "";
+        }
+        trimDangling(out);
+        while (!open.isEmpty()) {
+            out.append(open.pop());
+        }
+        return new Salvaged(out.toString(), truncated);
+    }
+
+    /** A quote ends a string if it is followed by structure, not more text. */
+    private static boolean closesString(String text, int from) {
+        char next = nextNonWhitespace(text, from);
+        return next == 0 || next == ',' || next == '}' || next == ']' || next == ':';
+    }
+
+    private static char nextNonWhitespace(String text, int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return text.charAt(i);
+            }
+        }
+        return 0;
+    }
+
+    private static char lastNonWhitespace(StringBuilder out) {
+        for (int i = out.length() - 1; i >= 0; i--) {
+            if (!Character.isWhitespace(out.charAt(i))) {
+                return out.charAt(i);
+            }
+        }
+        return 0;
+    }
+
+    private static void trimTrailingComma(StringBuilder out) {
+        int i = out.length() - 1;
+        while (i >= 0 && Character.isWhitespace(out.charAt(i))) {
+            i--;
+        }
+        if (i >= 0 && out.charAt(i) == ',') {
+            out.setLength(i);
+        }
+    }
+
+    /** Drop a dangling comma, or a key with no value, left at the cut. */
+    private static void trimDangling(StringBuilder out) {
+        trimTrailingComma(out);
+        int end = out.length() - 1;
+        while (end >= 0 && Character.isWhitespace(out.charAt(end))) {
+            end--;
+        }
+        if (end >= 0 && out.charAt(end) == ':') {
+            // Remove the key ("key":) and the comma before it
+            int keyEnd = out.lastIndexOf("\"", end);
+            int keyStart = keyEnd > 0 ? out.lastIndexOf("\"", keyEnd - 1) : -1;
+            if (keyStart >= 0) {
+                out.setLength(keyStart);
+                trimTrailingComma(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package dev.ebullient.ironsworn.chat;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A model call was shed by the {@link LlmScheduler}: its queue was full, or the call waited
+ * longer than its route allows. The message is meant for the player.
+ */
+public class LlmBusyException extends RejectedExecutionException {
+
+    public LlmBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,315 @@
+package dev.ebullient.ironsworn.chat;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import org.eclipse.microprofile.config.Config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Admission control for model calls, shared by every campaign.
+ * <p>
+ * Each model (as served by Ollama, e.g. <code>llama3.2</code>) runs at most
+ * <code>ironsworn.llm.max-concurrent</code> requests at a time (override per model with
+ * <code>ironsworn.llm.max-concurrent."&lt;model&gt;"</code>). Within that, each caller's route runs at most
+ * its own limit, and background calls at most <code>ironsworn.llm.max-background</code> (by default
+ * one fewer than the model's limit, so a slot stays free for players; with a single slot, background
+ * work shares it). Further calls wait in the scheduler rather than in Ollama's opaque queue.
+ * When a slot frees up it goes to:
+ * <ol>
+ * <li>the highest {@link Priority} with a waiting call that may run (interactive before background);</li>
+ * <li>within it, the next campaign in round-robin order, so one busy campaign cannot starve the others;</li>
+ * <li>within the campaign, its oldest call that may run (a call whose route is at its limit is passed over).</li>
+ * </ol>
+ * A call is shed ({@link LlmBusyException}) when <code>ironsworn.llm.max-queued</code> calls of its
+ * priority are already waiting for the model (so background work cannot fill the queue players need),
+ * or when it has waited as long as its caller allows.
+ * <p>
+ * Exported: <code>ironsworn.llm.queue.time{model,priority}</code>,
+ * <code>ironsworn.llm.queue.depth{model}</code>, <code>ironsworn.llm.active{model}</code> and
+ * <code>ironsworn.llm.shed{model,priority,reason}</code>.
+ */
+@Singleton
+public class LlmScheduler {
+
+    /** Scheduling class of a model call. */
+    public enum Priority {
+        /** A player is waiting for the result. */
+        INTERACTIVE,
+        /** Work no one is waiting for (e.g. summarization). */
+        BACKGROUND
+    }
+
+    /** An admitted call's slot: close it when the call returns. */
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    static final String BUSY_MESSAGE = "The oracle is busy with other players right now. Please try again in a moment.";
+
+    @Inject
+    Config config;
+
+    @Inject
+    MeterRegistry registry;
+
+    private final Map<String, ModelQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * Wait for a slot on the model.
+     *
+     * @param route the kind of call, limited to <code>routeLimit</code> running at once on this model
+     * @param campaignId the campaign making the call (the unit of fairness)
+     * @param maxWait longest the call may wait for a slot
+     * @throws LlmBusyException if the call is shed
+     * @throws CancellationException if the thread is interrupted while waiting
+     */
+    public Permit admit(String model, String route, int routeLimit, String campaignId, Priority priority,
+            Duration maxWait) {
+        ModelQueue queue = queues.computeIfAbsent(model, this::createQueue);
+        long start = System.nanoTime();
+        Ticket ticket = new Ticket(route, Math.max(1, routeLimit), campaignId == null ? "" : campaignId, priority);
+        Permit permit = queue.admit(ticket, maxWait);
+        Timer.builder("ironsworn.llm.queue.time")
+                .description("Time model calls wait for admission")
+                .tag("model", model)
+                .tag("priority", tag(priority))
+                .register(registry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return permit;
+    }
+
+    private ModelQueue createQueue(String model) {
+        int defaultLimit = config.getOptionalValue("ironsworn.llm.max-concurrent", Integer.class).orElse(2);
+        int limit = config.getOptionalValue("ironsworn.llm.max-concurrent.\"" + model + "\"", Integer.class)
+                .orElse(defaultLimit);
+        limit = Math.max(1, limit);
+        int background = config.getOptionalValue("ironsworn.llm.max-background", Integer.class)
+                .orElse(Math.max(1, limit - 1));
+        int maxQueued = config.getOptionalValue("ironsworn.llm.max-queued", Integer.class).orElse(32);
+        ModelQueue queue = new ModelQueue(model, limit, Math.max(1, Math.min(limit, background)),
+                Math.max(0, maxQueued));
+        Gauge.builder("ironsworn.llm.queue.depth", queue, ModelQueue::queued)
+                .description("Model calls waiting for admission")
+                .tag("model", model)
+                .register(registry);
+        Gauge.builder("ironsworn.llm.active", queue, ModelQueue::running)
+                .description("Model calls running")
+                .tag("model", model)
+                .register(registry);
+        return queue;
+    }
+
+    private void shed(String model, Priority priority, String reason) {
+        registry.counter("ironsworn.llm.shed", "model", model, "priority", tag(priority), "reason", reason).increment();
+    }
+
+    private static String tag(Priority priority) {
+        return priority.name().toLowerCase(Locale.ROOT);
+    }
+
+    /** A call waiting for (or holding) a slot. */
+    private static final class Ticket {
+        final CountDownLatch admitted = new CountDownLatch(1);
+        final String route;
+        final int routeLimit;
+        final String campaignId;
+        final Priority priority;
+        boolean granted;
+
+        Ticket(String route, int routeLimit, String campaignId, Priority priority) {
+            this.route = route;
+            this.routeLimit = routeLimit;
+            this.campaignId = campaignId;
+            this.priority = priority;
+        }
+    }
+
+    /** Slots and waiting calls for one model. */
+    private final class ModelQueue {
+        final String model;
+        final int limit;
+        final int backgroundLimit;
+        final int maxQueued;
+        final ReentrantLock lock = new ReentrantLock();
+        /** Per priority: campaign → its waiting calls, in round-robin order. */
+        final Map<Priority, LinkedHashMap<String, ArrayDeque<Ticket>>> waiting = new EnumMap<>(Priority.class);
+        final Map<Priority, Integer> queuedByPriority = new EnumMap<>(Priority.class);
+        final Map<String, Integer> runningByRoute = new HashMap<>();
+        int running;
+        int runningBackground;
+        int queued;
+
+        ModelQueue(String model, int limit, int backgroundLimit, int maxQueued) {
+            this.model = model;
+            this.limit = limit;
+            this.backgroundLimit = backgroundLimit;
+            this.maxQueued = maxQueued;
+            for (Priority priority : Priority.values()) {
+                waiting.put(priority, new LinkedHashMap<>());
+                queuedByPriority.put(priority, 0);
+            }
+        }
+
+        double queued() {
+            return queued;
+        }
+
+        double running() {
+            return running;
+        }
+
+        Permit admit(Ticket ticket, Duration maxWait) {
+            Priority priority = ticket.priority;
+            lock.lock();
+            try {
+                if (queuedByPriority.get(priority) >= maxQueued) {
+                    shed(model, priority, "queue_full");
+                    throw new LlmBusyException(BUSY_MESSAGE);
+                }
+                waiting.get(priority).computeIfAbsent(ticket.campaignId, k -> new ArrayDeque<>()).add(ticket);
+                queued(priority, 1);
+                // Runs now if nothing ahead of it may run
+                dispatchLocked();
+                if (ticket.granted) {
+                    return permit(ticket);
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            boolean interrupted = false;
+            try {
+                ticket.admitted.await(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+
+            lock.lock();
+            try {
+                if (ticket.granted) {
+                    if (!interrupted) {
+                        return permit(ticket);
+                    }
+                    // Admitted just as the wait was interrupted: hand the slot on
+                    releaseLocked(ticket);
+                } else {
+                    remove(ticket);
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted waiting for model " + model);
+            }
+            shed(model, priority, "timeout");
+            throw new LlmBusyException(BUSY_MESSAGE);
+        }
+
+        private Permit permit(Ticket ticket) {
+            AtomicBoolean closed = new AtomicBoolean();
+            return () -> {
+                if (closed.compareAndSet(false, true)) {
+                    lock.lock();
+                    try {
+                        releaseLocked(ticket);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            };
+        }
+
+        /** Free a running call's slot and pass slots on to waiting calls. */
+        private void releaseLocked(Ticket ticket) {
+            running--;
+            if (ticket.priority == Priority.BACKGROUND) {
+                runningBackground--;
+            }
+            runningByRoute.merge(ticket.route, -1, Integer::sum);
+            dispatchLocked();
+        }
+
+        /** Grant slots to waiting calls, in scheduling order, while any may run. */
+        private void dispatchLocked() {
+            Ticket next;
+            while (running < limit && (next = next()) != null) {
+                running++;
+                if (next.priority == Priority.BACKGROUND) {
+                    runningBackground++;
+                }
+                runningByRoute.merge(next.route, 1, Integer::sum);
+                next.granted = true;
+                next.admitted.countDown();
+            }
+        }
+
+        private boolean mayRun(Ticket ticket) {
+            return runningByRoute.getOrDefault(ticket.route, 0) < ticket.routeLimit;
+        }
+
+        /** Take the next waiting call that may run, or null. */
+        private Ticket next() {
+            for (Priority priority : Priority.values()) {
+                if (priority == Priority.BACKGROUND && runningBackground >= backgroundLimit) {
+                    continue;
+                }
+                LinkedHashMap<String, ArrayDeque<Ticket>> campaigns = waiting.get(priority);
+                for (Map.Entry<String, ArrayDeque<Ticket>> entry : campaigns.entrySet()) {
+                    ArrayDeque<Ticket> tickets = entry.getValue();
+                    Iterator<Ticket> it = tickets.iterator();
+                    while (it.hasNext()) {
+                        Ticket ticket = it.next();
+                        if (mayRun(ticket)) {
+                            it.remove();
+                            // The campaign goes to the back of the round
+                            campaigns.remove(entry.getKey());
+                            if (!tickets.isEmpty()) {
+                                campaigns.put(ticket.campaignId, tickets);
+                            }
+                            queued(priority, -1);
+                            return ticket;
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+
+        private void remove(Ticket ticket) {
+            LinkedHashMap<String, ArrayDeque<Ticket>> campaigns = waiting.get(ticket.priority);
+            ArrayDeque<Ticket> tickets = campaigns.get(ticket.campaignId);
+            if (tickets != null && tickets.remove(ticket)) {
+                queued(ticket.priority, -1);
+                if (tickets.isEmpty()) {
+                    campaigns.remove(ticket.campaignId);
+                }
+            }
+        }
+
+        private void queued(Priority priority, int delta) {
+            queuedByPriority.merge(priority, delta, Integer::sum);
+            queued += delta;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package dev.ebullient.ironsworn.chat;
+
+import java.time.Duration;
+
+import dev.ebullient.ironsworn.chat.LlmScheduler.Priority;
+
+/**
+ * Kinds of model call, each with its own named chat model, scheduling priority, concurrency limit
+ * and wait for admission (see {@link ModelRouter}, {@link LlmScheduler}).
+ * <p>
+ * The model, and the request timeout, are set for the named model in
+ * <code>application.properties</code> (<code>quarkus.langchain4j.ollama.&lt;model&gt;.*</code>).
+ * The limits can be overridden with <code>ironsworn.route.&lt;key&gt;.max-concurrent</code> (calls of the
+ * route running at once, within the model's own limit) and <code>ironsworn.route.&lt;key&gt;.max-wait</code>.
+ */
+public enum ModelRoute {
+    /** Story narration: the large model. */
+    NARRATOR("narrator", "play", Priority.INTERACTIVE, 2, Duration.ofMinutes(2)),
+    /** Choosing an oracle table: a small model; falls back to a default table rather than wait. */
+    SELECTOR("selector", "oracle-choice", Priority.INTERACTIVE, 4, Duration.ofSeconds(5)),
+    /** Character creation guide. */
+    CREATION("creation", "creation", Priority.INTERACTIVE, 1, Duration.ofMinutes(1)),
+    /** Questions about the campaign. */
+    QA("qa", "campaign", Priority.INTERACTIVE, 1, Duration.ofSeconds(30)),
+    /** Story summaries: background work, served after every waiting player call. */
+    SUMMARIZER("summarizer", "summary", Priority.BACKGROUND, 1, Duration.ofMinutes(10));
+
+    private final String key;
+    private final String model;
+    private final Priority priority;
+    private final int maxConcurrent;
+    private final Duration maxWait;
+
+    ModelRoute(String key, String model, Priority priority, int maxConcurrent, Duration maxWait) {
+        this.key = key;
+        this.model = model;
+        this.priority = priority;
+        this.maxConcurrent = maxConcurrent;
+        this.maxWait = maxWait;
+    }
+
+    /** Config key and metric tag. */
+    public String key() {
+        return key;
+    }
+
+    /** The named chat model (<code>@RegisterAiService(modelName = ...)</code>) serving the route. */
+    public String model() {
+        return model;
+    }
+
+    public Priority priority() {
+        return priority;
+    }
+
+    int defaultMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    Duration defaultMaxWait() {
+        return maxWait;
+    }
+}
@@ -0,0 +1,118 @@
+package dev.ebullient.ironsworn.chat;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import org.eclipse.microprofile.config.Config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+
+/**
+ * Runs model calls through their {@link ModelRoute}: each call is admitted by the
+ * {@link LlmScheduler} for the model serving its route (fair across campaigns, by the route's
+ * priority, at most the route's <code>max-concurrent</code> at once), waiting at most the route's
+ * <code>max-wait</code>. A cheap call with a fallback uses it rather than wait long.
+ * <p>
+ * Exported: <code>ironsworn.llm.route.calls{route,outcome}</code> (outcome is success, failure,
+ * rejected or fallback).
+ */
+@Singleton
+public class ModelRouter {
+
+    @Inject
+    Config config;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    LlmScheduler scheduler;
+
+    /** The model (as served) behind each route; routes on the same model share its slots. */
+    private final Map<ModelRoute, String> models = new EnumMap<>(ModelRoute.class);
+    private final Map<ModelRoute, Integer> maxConcurrent = new EnumMap<>(ModelRoute.class);
+    private final Map<ModelRoute, Duration> maxWait = new EnumMap<>(ModelRoute.class);
+
+    /** The campaign of the call running on this thread (chat model listeners run on the caller's thread). */
+    private static final ThreadLocal<String> CAMPAIGN = new ThreadLocal<>();
+
+    @PostConstruct
+    void init() {
+        for (ModelRoute route : ModelRoute.values()) {
+            models.put(route, config.getOptionalValue(
+                    "quarkus.langchain4j.ollama." + route.model() + ".chat-model.model-name", String.class)
+                    .orElse(route.model()));
+            maxConcurrent.put(route, config.getOptionalValue("ironsworn.route." + route.key() + ".max-concurrent",
+                    Integer.class).orElse(route.defaultMaxConcurrent()));
+            maxWait.put(route, config.getOptionalValue("ironsworn.route." + route.key() + ".max-wait", Duration.class)
+                    .orElse(route.defaultMaxWait()));
+        }
+    }
+
+    /**
+     * Make a model call on the route.
+     *
+     * @param campaignId the campaign the call is for (scheduling is fair across campaigns)
+     * @throws LlmBusyException if the call was shed: the model's queue is full, or no slot
+     *         freed up within the route's wait
+     * @throws CancellationException if the thread is interrupted while waiting
+     */
+    public <T> T call(ModelRoute route, String campaignId, Supplier<T> call) {
+        LlmScheduler.Permit permit;
+        try {
+            permit = scheduler.admit(models.get(route), route.key(), maxConcurrent.get(route), campaignId,
+                    route.priority(), maxWait.get(route));
+        } catch (LlmBusyException e) {
+            count(route, "rejected");
+            throw e;
+        }
+        String outer = CAMPAIGN.get();
+        CAMPAIGN.set(campaignId);
+        try (permit) {
+            T result = call.get();
+            count(route, "success");
+            return result;
+        } catch (RuntimeException e) {
+            count(route, "failure");
+            throw e;
+        } finally {
+            CAMPAIGN.set(outer);
+        }
+    }
+
+    /**
+     * Make a model call on the route, using the fallback if the call is shed or fails.
+     * Cancellation is not a failure: it is rethrown.
+     */
+    public <T> T call(ModelRoute route, String campaignId, Supplier<T> call, Supplier<T> fallback) {
+        try {
+            return call(route, campaignId, call);
+        } catch (CancellationException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            Log.warnf("%s model call failed (%s); using fallback", route.key(), e.toString());
+            count(route, "fallback");
+            return fallback.get();
+        }
+    }
+
+    /**
+     * The campaign the model call running on this thread is for, if it was made through a router.
+     */
+    public static Optional<String> currentCampaign() {
+        return Optional.ofNullable(CAMPAIGN.get());
+    }
+
+    private void count(ModelRoute route, String outcome) {
+        registry.counter("ironsworn.llm.route.calls", "route", route.key(), "outcome", outcome).increment();
+    }
+}
@@ -1,21 +1,38 @@
 package dev.ebullient.ironsworn.chat;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import dev.ebullient.ironsworn.CampaignSession;
 import dev.ebullient.ironsworn.GameJournal;
 import dev.ebullient.ironsworn.IronswornMechanics;
 import dev.ebullient.ironsworn.JournalParser;
 import dev.ebullient.ironsworn.model.OracleResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.quarkus.logging.Log;
 
 @ApplicationScoped
 public class OracleService {
 
+    /** How the non-tool-calling Inspire path chooses its oracle table. */
+    public enum OracleSelection {
+        /** Ask a chat model ({@link InspireOracleSelector}). */
+        LLM,
+        /** Compare the scene with table descriptions ({@link EmbeddingOracleSelector}). */
+        EMBEDDING,
+        /** Alternate between the two, to compare <code>ironsworn.oracle.selection</code> timings. */
+        AB
+    }
+
     @Inject
     IronswornMechanics mechanics;
 
@@ -26,7 +43,7 @@ public class OracleService {
     InspireToolAssistant inspireToolAssistant;
 
     @Inject
-    PlayAssistant assistant;
+    PlayNarrator assistant;
 
     @Inject
     GameJournal journal;
@@ -34,9 +51,23 @@ public class OracleService {
     @Inject
     PlayMemoryProvider memoryProvider;
 
+    @Inject
+    ModelRouter router;
+
+    @Inject
+    EmbeddingOracleSelector embeddingSelector;
+
+    @Inject
+    MeterRegistry registry;
+
     @ConfigProperty(name = "ironsworn.oracle.use-tool-calling", defaultValue = "false")
     boolean useToolCalling;
 
+    @ConfigProperty(name = "ironsworn.oracle.selector", defaultValue = "llm")
+    OracleSelection selection;
+
+    private final AtomicLong selections = new AtomicLong();
+
     /**
      * Roll on an oracle table (server generates the roll).
      */
@@ -55,22 +86,28 @@ public class OracleService {
      * Orchestrate the full "Inspire Me" flow: oracle selection/rolling + narration.
      * If the journal already ends with an oracle result, skip rolling and just narrate.
      * Otherwise delegates to either the tool-calling or non-tool-calling path based on config.
+     *
+     * @param summaryCtx the story so far: the campaign synopsis and latest chapter summaries
+     * @param memoryCtx story memory, possibly still being retrieved: the selector path chooses
+     *        its oracle meanwhile, and only narration waits for it
+     * @param onRoll called with the oracle result as soon as it is rolled (non-tool-calling path)
      */
-    public InspireResult inspireMe(String campaignId, String charCtx, String journalCtx, String memoryCtx,
-            String choiceInstruction) {
+    public InspireResult inspireMe(String campaignId, String summaryCtx, String charCtx, String journalCtx,
+            CompletableFuture<String> memoryCtx, String choiceInstruction, Consumer<OracleResult> onRoll) {
         if (JournalParser.endsWithOracleEntry(journalCtx)) {
-            return narrateExistingOracle(campaignId, charCtx, journalCtx, memoryCtx, choiceInstruction);
+            return narrateExistingOracle(campaignId, summaryCtx, charCtx, journalCtx, memoryCtx.join(),
+                    choiceInstruction);
         }
         if (useToolCalling) {
-            return inspireMeWithTools(campaignId, charCtx, journalCtx, memoryCtx);
+            return inspireMeWithTools(campaignId, charCtx, journalCtx, memoryCtx.join());
         }
-        return inspireMeWithSelector(campaignId, charCtx, journalCtx, memoryCtx, choiceInstruction);
+        return inspireMeWithSelector(campaignId, summaryCtx, charCtx, journalCtx, memoryCtx, choiceInstruction, onRoll);
     }
 
     /**
      * The journal already ends with an oracle result — just narrate it without rolling again.
      */
-    private InspireResult narrateExistingOracle(String campaignId, String charCtx,
+    private InspireResult narrateExistingOracle(String campaignId, String summaryCtx, String charCtx,
             String journalCtx, String memoryCtx, String choiceInstruction) {
         Log.debugf("%s: Journal already ends with oracle, narrating directly", campaignId);
 
@@ -79,9 +116,10 @@ public class OracleService {
         String inspireJournalCtx = buildInspireJournalContext(journalCtx);
 
         memoryProvider.clear(campaignId);
-        PlayResponse response = assistant.inspire(campaignId, oracleLine, charCtx, inspireJournalCtx, memoryCtx,
-                choiceInstruction);
+        PlayResponse response = router.call(ModelRoute.NARRATOR, campaignId, () -> assistant.inspire(campaignId, oracleLine,
+                summaryCtx, charCtx, inspireJournalCtx, memoryCtx, choiceInstruction));
         String narrative = stripOracleLines(JournalParser.sanitizeNarrative(response.narrative()));
+        CampaignSession.ensureNotCancelled();
         journal.appendNarrative(campaignId, narrative);
 
         return new InspireResult(null, response, narrative);
@@ -100,18 +138,16 @@ public class OracleService {
     }
 
     /**
-     * Non-tool-calling path: InspireOracleSelector picks the table, server rolls,
-     * then PlayAssistant.inspire() narrates with the oracle already in the journal.
+     * Non-tool-calling path: a selector picks the table while story memory is retrieved,
+     * the server rolls (and reports the result right away), then PlayNarrator.inspire()
+     * narrates with the oracle added to the journal context.
      */
-    private InspireResult inspireMeWithSelector(String campaignId, String charCtx,
-            String journalCtx, String memoryCtx, String choiceInstruction) {
-        // Let the model choose WHICH oracle to roll, then roll it server-side.
-        InspireOracleChoice choice = null;
-        try {
-            choice = oracleSelector.chooseForInspiration(campaignId, charCtx, journalCtx, memoryCtx);
-        } catch (Exception e) {
-            Log.warnf(e, "Failed to choose oracle; using turning_point");
-        }
+    private InspireResult inspireMeWithSelector(String campaignId, String summaryCtx, String charCtx,
+            String journalCtx, CompletableFuture<String> memoryCtx, String choiceInstruction,
+            Consumer<OracleResult> onRoll) {
+        // Choose WHICH oracle to roll, then roll it server-side.
+        // The selector uses story memory only if retrieval has already finished.
+        InspireOracleChoice choice = chooseOracle(campaignId, charCtx, journalCtx, memoryCtx.getNow(""));
 
         String collectionKey = InspireOracleSelector.normalizeOracleKey(choice != null ? choice.collectionKey() : null);
         String tableKey = InspireOracleSelector.normalizeOracleTable(collectionKey,
@@ -122,23 +158,59 @@ public class OracleService {
             Log.debugf("%s: Inspire oracle choice %s/%s", campaignId, collectionKey, tableKey);
         }
 
+        CampaignSession.ensureNotCancelled();
         OracleResult oracle = mechanics.rollOracle(collectionKey, tableKey);
         journal.appendMechanical(campaignId, oracle.toJournalEntry());
+        onRoll.accept(oracle);
 
-        // Refresh journal context so the inspire prompt includes the oracle that was just rolled.
-        String refreshedJournalCtx = journal.getRecentJournal(campaignId, 100);
+        // Add the oracle that was just rolled to the (already budgeted) journal context,
+        // as appendMechanical wrote it, so the inspire prompt includes it.
+        String refreshedJournalCtx = journalCtx + "\n\n> " + oracle.toJournalEntry().trim();
         String inspireJournalCtx = buildInspireJournalContext(refreshedJournalCtx);
 
         // Clear chat memory so the LLM relies on the current system+user prompt.
         memoryProvider.clear(campaignId);
-        PlayResponse response = assistant.inspire(campaignId, oracle.toJournalEntry(), charCtx, inspireJournalCtx,
-                memoryCtx, choiceInstruction);
+        String memory = memoryCtx.join();
+        PlayResponse response = router.call(ModelRoute.NARRATOR, campaignId, () -> assistant.inspire(campaignId,
+                oracle.toJournalEntry(), summaryCtx, charCtx, inspireJournalCtx, memory, choiceInstruction));
         String narrative = stripOracleLines(JournalParser.sanitizeNarrative(response.narrative()));
+        CampaignSession.ensureNotCancelled();
         journal.appendNarrative(campaignId, narrative);
 
         return new InspireResult(oracle, response, narrative);
     }
 
+    /**
+     * Choose the Inspire oracle table with the configured selector, timing each choice
+     * (<code>ironsworn.oracle.selection{selector}</code>). A null choice (the selector was busy
+     * or failed) normalizes to turning_point.
+     */
+    private InspireOracleChoice chooseOracle(String campaignId, String charCtx, String journalCtx, String memoryCtx) {
+        boolean embedding = switch (selection) {
+            case LLM -> false;
+            case EMBEDDING -> true;
+            case AB -> selections.getAndIncrement() % 2 == 1;
+        };
+        long start = System.nanoTime();
+        InspireOracleChoice choice = null;
+        if (embedding) {
+            choice = embeddingSelector.choose(campaignId, journalCtx).orElse(null);
+        }
+        String selector = choice != null ? "embedding" : "llm";
+        if (choice == null) {
+            // No scene to compare yet, or embeddings unavailable: ask the model
+            choice = router.call(ModelRoute.SELECTOR, campaignId,
+                    () -> oracleSelector.chooseForInspiration(campaignId, charCtx, journalCtx, memoryCtx),
+                    () -> null);
+        }
+        Timer.builder("ironsworn.oracle.selection")
+                .description("Time to choose the Inspire oracle table")
+                .tag("selector", selector)
+                .register(registry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return choice;
+    }
+
     /**
      * Tool-calling path: InspireToolAssistant uses OracleTool to pick and roll
      * oracle(s) via LLM tool calling, then narrates.
@@ -151,11 +223,13 @@ public class OracleService {
         memoryProvider.clear(campaignId);
         // InspireToolAssistant returns String (not PlayResponse) to avoid JSON format
         // constraint that prevents Ollama from emitting tool calls.
-        String rawResponse = inspireToolAssistant.inspire(campaignId, charCtx, inspireJournalCtx, memoryCtx);
+        String rawResponse = router.call(ModelRoute.NARRATOR, campaignId,
+                () -> inspireToolAssistant.inspire(campaignId, charCtx, inspireJournalCtx, memoryCtx));
         // Preserve tool-produced mechanical lines (e.g. "> **Oracle** ...") so they are:
         // - sent to the client as part of the narrative
         // - journaled in-line with the narrative
         String narrative = JournalParser.sanitizeNarrative(rawResponse);
+        CampaignSession.ensureNotCancelled();
         journal.appendNarrative(campaignId, narrative);
 
         PlayResponse response = new PlayResponse(narrative, List.of(), "", List.of());
@@ -6,7 +6,7 @@ import dev.langchain4j.service.UserMessage;
 import dev.langchain4j.service.guardrail.OutputGuardrails;
 import io.quarkiverse.langchain4j.RegisterAiService;
 
-@RegisterAiService(chatMemoryProviderSupplier = RegisterAiService.BeanChatMemoryProviderSupplier.class)
+@RegisterAiService(modelName = "play", chatMemoryProviderSupplier = RegisterAiService.BeanChatMemoryProviderSupplier.class)
 @OutputGuardrails(PlayResponseGuardrail.class)
 public interface PlayAssistant {
 
@@ -14,6 +14,7 @@ public interface PlayAssistant {
     @UserMessage(fromResource = "prompts/play-narrate-user.txt")
     PlayResponse narrate(
             @MemoryId String campaignId,
+            String storySummary,
             String characterContext,
             String journalContext,
             String memoryContext,
@@ -30,6 +31,7 @@ public interface PlayAssistant {
             int challenge1,
             int challenge2,
             String moveOutcomeText,
+            String storySummary,
             String journalContext,
             String memoryContext,
             String choiceInstruction);
@@ -39,6 +41,7 @@ public interface PlayAssistant {
     PlayResponse inspire(
             @MemoryId String campaignId,
             String oracleResult,
+            String storySummary,
             String characterContext,
             String journalContext,
             String memoryContext,
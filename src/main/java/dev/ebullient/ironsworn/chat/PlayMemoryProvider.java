@@ -2,8 +2,11 @@ package dev.ebullient.ironsworn.chat;
 
 import java.util.concurrent.ConcurrentHashMap;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 
+import dev.ebullient.ironsworn.CampaignRegistry;
 import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.memory.chat.ChatMemoryProvider;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
@@ -11,10 +14,21 @@ import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 @Singleton
 public class PlayMemoryProvider implements ChatMemoryProvider {
 
+    @Inject
+    CampaignRegistry campaigns;
+
     private final ConcurrentHashMap<Object, ChatMemory> memories = new ConcurrentHashMap<>();
 
+    @PostConstruct
+    void init() {
+        // Memory ids are campaign ids: forget a campaign's chat when it is evicted
+        campaigns.onEvict(memories::remove);
+        campaigns.track("chat-memory", memories);
+    }
+
     @Override
     public ChatMemory get(Object memoryId) {
+        campaigns.touch(String.valueOf(memoryId));
         return memories.computeIfAbsent(memoryId,
                 id -> MessageWindowChatMemory.withMaxMessages(6));
     }
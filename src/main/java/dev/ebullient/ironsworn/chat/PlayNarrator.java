@@ -0,0 +1,77 @@
+package dev.ebullient.ironsworn.chat;
+
+import java.util.function.Supplier;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Multi;
+
+/**
+ * Play narration. Each call streams from the "play" model ({@link PlayStreamingAssistant}), so a
+ * cancelled generation also stops the model server. The assembled response gets the same checks as
+ * {@link PlayResponseGuardrail}; output that fails them is asked for again through the guarded
+ * {@link PlayAssistant}, which reprompts (that rare second call runs to completion if cancelled).
+ */
+@Singleton
+public class PlayNarrator {
+
+    @Inject
+    PlayStreamingAssistant streaming;
+
+    @Inject
+    PlayAssistant guarded;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    GuardrailMetrics metrics;
+
+    @ConfigProperty(name = "ironsworn.narrate.choice-prompt", defaultValue = "false")
+    boolean choicePrompt;
+
+    public PlayResponse narrate(String campaignId, String storySummary, String characterContext,
+            String journalContext, String memoryContext, String playerInput, String choiceInstruction) {
+        return read(campaignId,
+                streaming.narrate(campaignId, storySummary, characterContext, journalContext, memoryContext,
+                        playerInput, choiceInstruction),
+                () -> guarded.narrate(campaignId, storySummary, characterContext, journalContext, memoryContext,
+                        playerInput, choiceInstruction));
+    }
+
+    public PlayResponse narrateMoveResult(String campaignId, String moveName, String outcome, int actionScore,
+            int challenge1, int challenge2, String moveOutcomeText, String storySummary, String journalContext,
+            String memoryContext, String choiceInstruction) {
+        return read(campaignId,
+                streaming.narrateMoveResult(campaignId, moveName, outcome, actionScore, challenge1, challenge2,
+                        moveOutcomeText, storySummary, journalContext, memoryContext, choiceInstruction),
+                () -> guarded.narrateMoveResult(campaignId, moveName, outcome, actionScore, challenge1, challenge2,
+                        moveOutcomeText, storySummary, journalContext, memoryContext, choiceInstruction));
+    }
+
+    public PlayResponse inspire(String campaignId, String oracleResult, String storySummary,
+            String characterContext, String journalContext, String memoryContext, String choiceInstruction) {
+        return read(campaignId,
+                streaming.inspire(campaignId, oracleResult, storySummary, characterContext, journalContext,
+                        memoryContext, choiceInstruction),
+                () -> guarded.inspire(campaignId, oracleResult, storySummary, characterContext, journalContext,
+                        memoryContext, choiceInstruction));
+    }
+
+    private PlayResponse read(String campaignId, Multi<String> tokens, Supplier<PlayResponse> retry) {
+        String text = StreamedResponses.collect(tokens);
+        var response = StreamedResponses.parse(objectMapper, metrics, "play", text, PlayResponse.class, "narrative");
+        if (response.isPresent() && PlayResponseGuardrail.isComplete(response.get(), choicePrompt)) {
+            return response.get();
+        }
+        Log.debugf("%s: streamed narration failed validation; asking again with guardrails", campaignId);
+        metrics.fallback("play");
+        return retry.get();
+    }
+}
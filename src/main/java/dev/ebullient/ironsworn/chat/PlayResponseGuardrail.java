@@ -19,39 +19,70 @@ public class PlayResponseGuardrail implements OutputGuardrail {
     @Inject
     ObjectMapper objectMapper;
 
+    @Inject
+    GuardrailMetrics metrics;
+
     @ConfigProperty(name = "ironsworn.narrate.choice-prompt", defaultValue = "false")
     boolean choicePrompt;
 
     @Override
     public OutputGuardrailResult validate(AiMessage responseFromLLM) {
+        OutputGuardrailResult result = check(responseFromLLM);
+        return metrics == null ? result : metrics.record("play", result);
+    }
+
+    private OutputGuardrailResult check(AiMessage responseFromLLM) {
         Log.debugf("Validate play response");
         // Tool call responses have no text — let them pass through for tool execution
         if (responseFromLLM.hasToolExecutionRequests()) {
             return OutputGuardrailResult.successWith(responseFromLLM);
         }
+        String text = responseFromLLM.text();
+        PlayResponse response;
         try {
-            PlayResponse response = objectMapper.readValue(responseFromLLM.text(), PlayResponse.class);
-            if (response.narrative() == null || response.narrative().isBlank()) {
-                return reprompt("Missing narrative", new IllegalArgumentException("narrative is blank"),
-                        """
-                                Return a valid JSON object with fields: narrative (string), npcs (array), location (string), choices (array).
-                                The narrative field MUST be non-empty markdown text (2-4 paragraphs).
-                                """
-                                .trim());
+            response = objectMapper.readValue(text, PlayResponse.class);
+        } catch (JsonProcessingException e) {
+            var salvaged = JsonSalvage.read(objectMapper, text, PlayResponse.class, "narrative");
+            if (salvaged.isEmpty()) {
+                return reprompt("Invalid JSON", e,
+                        "Make sure you return a valid JSON object following the specified format");
             }
-            if (choicePrompt && (response.choices() == null || response.choices().isEmpty())) {
-                return reprompt("Missing choices", new IllegalArgumentException("choices is empty"),
-                        """
-                                Return a valid JSON object with fields: narrative (string), npcs (array), location (string), choices (array).
-                                The choices field MUST contain exactly 3 short suggestions for what the player could do next.
-                                Each should be a brief player action (e.g. "Search the ruins for supplies").
-                                """
-                                .trim());
+            if (metrics != null) {
+                metrics.salvaged("play");
             }
-            return OutputGuardrailResult.successWith(responseFromLLM.text(), response);
-        } catch (JsonProcessingException e) {
-            return reprompt("Invalid JSON", e,
-                    "Make sure you return a valid JSON object following the specified format");
+            text = salvaged.get().json();
+            response = salvaged.get().value();
+        }
+        if (!hasNarrative(response)) {
+            return reprompt("Missing narrative", new IllegalArgumentException("narrative is blank"),
+                    """
+                            Return a valid JSON object with fields: narrative (string), npcs (array), location (string), choices (array).
+                            The narrative field MUST be non-empty markdown text (2-4 paragraphs).
+                            """
+                            .trim());
         }
+        if (choicePrompt && !hasChoices(response)) {
+            return reprompt("Missing choices", new IllegalArgumentException("choices is empty"),
+                    """
+                            Return a valid JSON object with fields: narrative (string), npcs (array), location (string), choices (array).
+                            The choices field MUST contain exactly 3 short suggestions for what the player could do next.
+                            Each should be a brief player action (e.g. "Search the ruins for supplies").
+                            """
+                            .trim());
+        }
+        return OutputGuardrailResult.successWith(text, response);
+    }
+
+    /** Whether a parsed response passes this guardrail's checks (streamed output is held to the same). */
+    static boolean isComplete(PlayResponse response, boolean choicePrompt) {
+        return hasNarrative(response) && (!choicePrompt || hasChoices(response));
+    }
+
+    private static boolean hasNarrative(PlayResponse response) {
+        return response.narrative() != null && !response.narrative().isBlank();
+    }
+
+    private static boolean hasChoices(PlayResponse response) {
+        return response.choices() != null && !response.choices().isEmpty();
     }
 }
@@ -0,0 +1,53 @@
+package dev.ebullient.ironsworn.chat;
+
+import dev.langchain4j.service.MemoryId;
+import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.UserMessage;
+import io.quarkiverse.langchain4j.RegisterAiService;
+import io.smallrye.mutiny.Multi;
+
+/**
+ * {@link PlayAssistant}'s prompts, streamed so a cancelled generation can close the request to the model
+ * server (see {@link PlayNarrator}). Output guardrails do not apply to streams: {@link PlayNarrator}
+ * checks the assembled response itself.
+ */
+@RegisterAiService(modelName = "play", chatMemoryProviderSupplier = RegisterAiService.BeanChatMemoryProviderSupplier.class)
+public interface PlayStreamingAssistant {
+
+    @SystemMessage(fromResource = "prompts/play-narrate-system.txt")
+    @UserMessage(fromResource = "prompts/play-narrate-user.txt")
+    Multi<String> narrate(
+            @MemoryId String campaignId,
+            String storySummary,
+            String characterContext,
+            String journalContext,
+            String memoryContext,
+            String playerInput,
+            String choiceInstruction);
+
+    @SystemMessage(fromResource = "prompts/play-narrateMoveResult-system.txt")
+    @UserMessage(fromResource = "prompts/play-narrateMoveResult-user.txt")
+    Multi<String> narrateMoveResult(
+            @MemoryId String campaignId,
+            String moveName,
+            String outcome,
+            int actionScore,
+            int challenge1,
+            int challenge2,
+            String moveOutcomeText,
+            String storySummary,
+            String journalContext,
+            String memoryContext,
+            String choiceInstruction);
+
+    @SystemMessage(fromResource = "prompts/play-inspire-system.txt")
+    @UserMessage(fromResource = "prompts/play-inspire-user.txt")
+    Multi<String> inspire(
+            @MemoryId String campaignId,
+            String oracleResult,
+            String storySummary,
+            String characterContext,
+            String journalContext,
+            String memoryContext,
+            String choiceInstruction);
+}
@@ -0,0 +1,172 @@
+package dev.ebullient.ironsworn.chat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import dev.ebullient.ironsworn.CampaignRegistry;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.logging.Log;
+
+/**
+ * Reports how much of each chat request's prompt repeats the previous request for the same
+ * campaign to the same model, which is the part a model server such as Ollama can serve from its prompt (KV) cache.
+ * <p>
+ * Exported:
+ * <ul>
+ * <li><code>ironsworn.llm.prompt.prefix.ratio</code>: share of the prompt text identical to the
+ * start of the previous prompt;</li>
+ * <li><code>ironsworn.llm.prompt.tokens{kind=evaluated}</code>: prompt tokens the server reports
+ * it evaluated (Ollama does not count tokens served from its cache);</li>
+ * <li><code>ironsworn.llm.prompt.tokens{kind=reusable}</code>: estimated tokens in the shared prefix
+ * (see {@link TokenCounter});</li>
+ * <li><code>ironsworn.llm.request</code>: request duration. The client does not expose the server's
+ * prompt-evaluation time separately; it dominates this timer on CPU-only hosts.</li>
+ * </ul>
+ * Evaluated token counts also calibrate the {@link TokenCounter} estimate when no tokenizer is loaded.
+ */
+@Singleton
+public class PromptCacheMetrics implements ChatModelListener {
+
+    private static final String PROMPT = PromptCacheMetrics.class.getName() + ".prompt";
+    private static final String REUSED = PromptCacheMetrics.class.getName() + ".reused";
+    private static final String STARTED = PromptCacheMetrics.class.getName() + ".started";
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    TokenCounter tokenCounter;
+
+    @Inject
+    CampaignRegistry campaigns;
+
+    /** The previous prompt sent to each model, per campaign ("" for calls made outside a {@link ModelRouter}). */
+    private final Map<String, Map<String, String>> previous = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        campaigns.track("prompt-cache", previous);
+        campaigns.onEvict(previous::remove);
+    }
+
+    @Override
+    public void onRequest(ChatModelRequestContext context) {
+        String model = modelName(context.chatRequest().parameters().modelName());
+        String prompt = promptText(context.chatRequest().messages());
+        String campaignId = ModelRouter.currentCampaign().orElse("");
+        String last = previous.computeIfAbsent(campaignId, k -> new ConcurrentHashMap<>()).put(model, prompt);
+
+        context.attributes().put(PROMPT, prompt);
+        context.attributes().put(REUSED, last == null ? 0 : commonPrefix(last, prompt));
+        context.attributes().put(STARTED, System.nanoTime());
+    }
+
+    @Override
+    public void onResponse(ChatModelResponseContext context) {
+        String model = modelName(context.chatRequest().parameters().modelName());
+        String prompt = (String) context.attributes().get(PROMPT);
+        Integer reused = (Integer) context.attributes().get(REUSED);
+        Long started = (Long) context.attributes().get(STARTED);
+        if (prompt == null || reused == null || started == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - started;
+        Timer.builder("ironsworn.llm.request")
+                .description("Chat model request duration")
+                .tag("model", model)
+                .tag("outcome", "success")
+                .register(registry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+
+        double ratio = prompt.isEmpty() ? 0 : (double) reused / prompt.length();
+        DistributionSummary.builder("ironsworn.llm.prompt.prefix.ratio")
+                .description("Share of the prompt identical to the previous prompt for the campaign to the same model")
+                .tag("model", model)
+                .register(registry)
+                .record(ratio);
+
+        TokenUsage usage = context.chatResponse().metadata().tokenUsage();
+        Integer evaluated = usage != null ? usage.inputTokenCount() : null;
+        if (evaluated != null) {
+            tokens(model, "evaluated").record(evaluated);
+            tokenCounter.observe(prompt.length(), evaluated);
+        }
+        // Not derived from the evaluated count: the server's cache may hold another campaign's prompt
+        int reusable = tokenCounter.count(prompt.substring(0, reused));
+        tokens(model, "reusable").record(reusable);
+        Log.debugf("%s: prompt %d chars, %d (%.0f%%) shared with the previous prompt; %s tokens evaluated, ~%d reusable; %dms",
+                model, prompt.length(), reused, ratio * 100, evaluated, reusable,
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    @Override
+    public void onError(ChatModelErrorContext context) {
+        String model = modelName(context.chatRequest().parameters().modelName());
+        Long started = (Long) context.attributes().get(STARTED);
+        if (started != null) {
+            Timer.builder("ironsworn.llm.request")
+                    .description("Chat model request duration")
+                    .tag("model", model)
+                    .tag("outcome", "error")
+                    .register(registry)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private DistributionSummary tokens(String model, String kind) {
+        return DistributionSummary.builder("ironsworn.llm.prompt.tokens")
+                .description("Prompt tokens per chat request")
+                .tag("model", model)
+                .tag("kind", kind)
+                .register(registry);
+    }
+
+    private static String modelName(String name) {
+        return name == null || name.isBlank() ? "default" : name;
+    }
+
+    /**
+     * The prompt as one string, in message order (the order the server sees it).
+     */
+    static String promptText(List<ChatMessage> messages) {
+        StringBuilder sb = new StringBuilder();
+        for (ChatMessage message : messages) {
+            String text = switch (message) {
+                case SystemMessage m -> m.text();
+                case UserMessage m -> m.hasSingleText() ? m.singleText() : m.contents().toString();
+                case AiMessage m -> m.text();
+                case ToolExecutionResultMessage m -> m.text();
+                default -> message.toString();
+            };
+            sb.append(message.type()).append('\n').append(text == null ? "" : text).append('\n');
+        }
+        return sb.toString();
+    }
+
+    static int commonPrefix(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,66 @@
+package dev.ebullient.ironsworn.chat;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.microprofile.config.spi.ConfigSource;
+
+/**
+ * Supplies the Ollama <code>format</code> (a JSON schema from {@link ResponseSchemas}) for each
+ * named chat model used by an AI service with a structured response, so the schema always
+ * matches the response record.
+ * <p>
+ * Its ordinal is below <code>application.properties</code>: set
+ * <code>quarkus.langchain4j.ollama.&lt;model&gt;.chat-model.format=json</code> there to fall back
+ * to unconstrained JSON mode for a model that does not support schemas.
+ */
+public class ResponseSchemaConfigSource implements ConfigSource {
+
+    /** Named chat model → the response record of the AI service that uses it. */
+    static final Map<String, Class<? extends Record>> RESPONSES = Map.of(
+            "play", PlayResponse.class,
+            "creation", CreationResponse.class,
+            "campaign", CampaignResponse.class,
+            "oracle-choice", InspireOracleChoice.class,
+            "summary", StorySummary.class);
+
+    private volatile Map<String, String> properties;
+
+    @Override
+    public Map<String, String> getProperties() {
+        Map<String, String> result = properties;
+        if (result == null) {
+            result = new TreeMap<>();
+            for (var entry : RESPONSES.entrySet()) {
+                result.put(formatProperty(entry.getKey()), ResponseSchemas.of(entry.getValue()));
+            }
+            properties = result;
+        }
+        return result;
+    }
+
+    @Override
+    public Set<String> getPropertyNames() {
+        return getProperties().keySet();
+    }
+
+    @Override
+    public String getValue(String propertyName) {
+        return getProperties().get(propertyName);
+    }
+
+    @Override
+    public String getName() {
+        return "ironsworn-response-schemas";
+    }
+
+    @Override
+    public int getOrdinal() {
+        return 200;
+    }
+
+    static String formatProperty(String model) {
+        return "quarkus.langchain4j.ollama." + model + ".chat-model.format";
+    }
+}
@@ -0,0 +1,130 @@
+package dev.ebullient.ironsworn.chat;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import jakarta.annotation.Nullable;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import dev.langchain4j.model.output.structured.Description;
+
+/**
+ * JSON schemas for structured model responses, derived from the response records.
+ * <p>
+ * The schema is passed to Ollama as the request <code>format</code> (see
+ * {@link ResponseSchemaConfigSource}), which constrains decoding: the model cannot produce
+ * output that does not parse or lacks a required field. Rules:
+ * <ul>
+ * <li>every component is required;</li>
+ * <li>strings must be non-empty, unless the component is {@link Nullable} (then it may be null);</li>
+ * <li>lists are arrays of strings; {@link Items} bounds their length;</li>
+ * <li>{@link Description} text becomes the property description.</li>
+ * </ul>
+ */
+public final class ResponseSchemas {
+
+    /** Bounds the number of items in a list component. */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ ElementType.RECORD_COMPONENT, ElementType.FIELD })
+    public @interface Items {
+        int min() default 0;
+
+        int max() default Integer.MAX_VALUE;
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private ResponseSchemas() {
+    }
+
+    /**
+     * @return the JSON schema for the record, as compact JSON
+     */
+    public static String of(Class<? extends Record> type) {
+        ObjectNode schema = MAPPER.createObjectNode();
+        schema.put("type", "object");
+        ObjectNode properties = schema.putObject("properties");
+        ArrayNode required = schema.putArray("required");
+
+        for (RecordComponent component : type.getRecordComponents()) {
+            properties.set(component.getName(), property(component));
+            required.add(component.getName());
+        }
+        schema.put("additionalProperties", false);
+        return schema.toString();
+    }
+
+    private static ObjectNode property(RecordComponent component) {
+        ObjectNode property = MAPPER.createObjectNode();
+        Class<?> type = component.getType();
+        if (type == String.class) {
+            if (annotation(component, Nullable.class) != null) {
+                property.putArray("type").add("string").add("null");
+            } else {
+                property.put("type", "string");
+                property.put("minLength", 1);
+            }
+        } else if (List.class.isAssignableFrom(type)) {
+            property.put("type", "array");
+            property.putObject("items").put("type", itemType(component.getGenericType()));
+            Items items = annotation(component, Items.class);
+            if (items != null) {
+                if (items.min() > 0) {
+                    property.put("minItems", items.min());
+                }
+                if (items.max() < Integer.MAX_VALUE) {
+                    property.put("maxItems", items.max());
+                }
+            }
+        } else if (type == int.class || type == Integer.class || type == long.class || type == Long.class) {
+            property.put("type", "integer");
+        } else if (type == boolean.class || type == Boolean.class) {
+            property.put("type", "boolean");
+        } else {
+            throw new IllegalArgumentException("Unsupported response component type: " + component);
+        }
+
+        Description description = annotation(component, Description.class);
+        if (description != null) {
+            property.put("description", String.join(" ", description.value()));
+        }
+        return property;
+    }
+
+    private static String itemType(Type genericType) {
+        if (genericType instanceof ParameterizedType parameterized
+                && parameterized.getActualTypeArguments()[0] == String.class) {
+            return "string";
+        }
+        throw new IllegalArgumentException("Unsupported list type: " + genericType);
+    }
+
+    /**
+     * Annotations on a record component are propagated to the component, field or accessor
+     * depending on their targets; look in each.
+     */
+    private static <A extends Annotation> A annotation(RecordComponent component, Class<A> type) {
+        A found = component.getAnnotation(type);
+        if (found == null) {
+            found = component.getAccessor().getAnnotation(type);
+        }
+        if (found == null) {
+            try {
+                found = component.getDeclaringRecord().getDeclaredField(component.getName()).getAnnotation(type);
+            } catch (NoSuchFieldException e) {
+                // not possible for a record component
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,8 @@
+package dev.ebullient.ironsworn.chat;
+
+import dev.langchain4j.model.output.structured.Description;
+
+public record StorySummary(
+        @Description("What happened in this chapter: 3-5 sentences naming people, places, vows and turning points") String chapterSummary,
+        @Description("The whole story so far, the previous synopsis updated with this chapter: at most 150 words") String synopsis) {
+}
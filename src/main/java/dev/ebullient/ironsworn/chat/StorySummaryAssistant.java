@@ -0,0 +1,19 @@
+package dev.ebullient.ironsworn.chat;
+
+import dev.langchain4j.service.MemoryId;
+import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.UserMessage;
+import dev.langchain4j.service.guardrail.OutputGuardrails;
+import io.quarkiverse.langchain4j.RegisterAiService;
+
+@RegisterAiService(modelName = "summary", chatMemoryProviderSupplier = RegisterAiService.NoChatMemoryProviderSupplier.class)
+@OutputGuardrails(StorySummaryGuardrail.class)
+public interface StorySummaryAssistant {
+
+    @SystemMessage(fromResource = "prompts/story-summary-system.txt")
+    @UserMessage(fromResource = "prompts/story-summary-user.txt")
+    StorySummary summarize(
+            @MemoryId String campaignId,
+            String synopsis,
+            String chapter);
+}
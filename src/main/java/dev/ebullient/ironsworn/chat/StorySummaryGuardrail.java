@@ -0,0 +1,57 @@
+package dev.ebullient.ironsworn.chat;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.guardrail.OutputGuardrail;
+import dev.langchain4j.guardrail.OutputGuardrailResult;
+
+@ApplicationScoped
+public class StorySummaryGuardrail implements OutputGuardrail {
+
+    public static final String REPROMPT_MESSAGE = "Invalid JSON";
+    public static final String MISSING_SUMMARY_MESSAGE = "Missing summary field";
+
+    public static final String REPROMPT_PROMPT = "Make sure you return a valid JSON object following the specified format";
+    public static final String MISSING_SUMMARY_PROMPT = "Your JSON response must include non-empty 'chapterSummary' and 'synopsis' fields.";
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    GuardrailMetrics metrics;
+
+    @Override
+    public OutputGuardrailResult validate(AiMessage responseFromLLM) {
+        OutputGuardrailResult result = check(responseFromLLM);
+        return metrics == null ? result : metrics.record("summary", result);
+    }
+
+    private OutputGuardrailResult check(AiMessage responseFromLLM) {
+        String text = responseFromLLM.text();
+        StorySummary response;
+        try {
+            response = objectMapper.readValue(text, StorySummary.class);
+        } catch (JsonProcessingException e) {
+            // A truncated synopsis is not salvaged: it would replace the previous one
+            var salvaged = JsonSalvage.read(objectMapper, text, StorySummary.class, "chapterSummary", "synopsis");
+            if (salvaged.isEmpty()) {
+                return reprompt(REPROMPT_MESSAGE, e, REPROMPT_PROMPT);
+            }
+            if (metrics != null) {
+                metrics.salvaged("summary");
+            }
+            text = salvaged.get().json();
+            response = salvaged.get().value();
+        }
+        if (response.chapterSummary() == null || response.chapterSummary().isBlank()
+                || response.synopsis() == null || response.synopsis().isBlank()) {
+            return reprompt(MISSING_SUMMARY_MESSAGE, MISSING_SUMMARY_PROMPT);
+        }
+        return OutputGuardrailResult.successWith(text, response);
+    }
+}
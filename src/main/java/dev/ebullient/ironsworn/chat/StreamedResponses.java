@@ -0,0 +1,70 @@
+package dev.ebullient.ironsworn.chat;
+
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.subscription.Cancellable;
+
+/**
+ * Reads structured responses from streaming model calls. Unlike a synchronous call, a stream
+ * can be abandoned part way: interrupting the thread waiting for it (which is what
+ * {@link dev.ebullient.ironsworn.CampaignSession#cancelGeneration(String)} does) cancels the
+ * subscription, which closes the request to the model server so it stops generating.
+ */
+final class StreamedResponses {
+
+    private StreamedResponses() {
+    }
+
+    /**
+     * Wait for the whole streamed text.
+     *
+     * @throws CancellationException if the waiting thread is interrupted (the stream is cancelled)
+     */
+    static String collect(Multi<String> tokens) {
+        StringBuilder text = new StringBuilder();
+        CompletableFuture<String> done = new CompletableFuture<>();
+        Cancellable subscription = tokens.subscribe().with(
+                text::append,
+                done::completeExceptionally,
+                () -> done.complete(text.toString()));
+        try {
+            return done.get();
+        } catch (InterruptedException e) {
+            subscription.cancel();
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Generation interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Parse streamed output as the guardrails would: as-is, or recovered by {@link JsonSalvage}.
+     *
+     * @param guardrail short guardrail name for {@link GuardrailMetrics#salvaged(String)}
+     * @param required fields whose values must not have been cut off
+     * @return the parsed response, or empty if the output could not be read
+     */
+    static <T> Optional<T> parse(ObjectMapper mapper, GuardrailMetrics metrics, String guardrail,
+            String text, Class<T> type, String... required) {
+        try {
+            return Optional.of(mapper.readValue(text, type));
+        } catch (JsonProcessingException e) {
+            var salvaged = JsonSalvage.read(mapper, text, type, required);
+            if (salvaged.isPresent()) {
+                metrics.salvaged(guardrail);
+            }
+            return salvaged.map(JsonSalvage.Parsed::value);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package dev.ebullient.ironsworn.chat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+
+/**
+ * Counts prompt tokens for the configured chat model.
+ * <p>
+ * With <code>ironsworn.context.tokenizer</code> set (a <code>tokenizer.json</code> file, or a Hugging Face
+ * model id such as the one the Ollama model was built from), text is encoded with the model's own
+ * tokenizer.
+ * <p>
+ * Otherwise (or if the tokenizer cannot be loaded), counts are estimated from a characters-per-token
+ * ratio, starting at <code>ironsworn.context.chars-per-token</code>. The prompt token counts the server
+ * reports calibrate it (see {@link #observe(int, int)}), but only downward: Ollama leaves out tokens
+ * served from its prompt cache, so a report can only overstate the ratio. The smallest ratio seen comes
+ * from the prompt evaluated most completely (a cold one), and calibration never makes counts smaller.
+ */
+@Singleton
+public class TokenCounter {
+
+    /** Prompts shorter than this are too noisy to calibrate from. */
+    static final int MIN_SAMPLE_CHARS = 200;
+
+    @ConfigProperty(name = "ironsworn.context.chars-per-token", defaultValue = "4.0")
+    double charsPerToken;
+
+    @ConfigProperty(name = "ironsworn.context.tokenizer")
+    Optional<String> tokenizerName;
+
+    @Inject
+    MeterRegistry registry;
+
+    private volatile HuggingFaceTokenizer tokenizer;
+    private volatile double calibrated;
+
+    @PostConstruct
+    void init() {
+        this.calibrated = charsPerToken;
+        tokenizerName.ifPresent(this::load);
+        Gauge.builder("ironsworn.context.chars-per-token", this, TokenCounter::charsPerToken)
+                .description("Characters per prompt token used to estimate counts (no tokenizer loaded)")
+                .register(registry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (tokenizer != null) {
+            tokenizer.close();
+        }
+    }
+
+    private void load(String name) {
+        try {
+            var builder = HuggingFaceTokenizer.builder()
+                    .optAddSpecialTokens(false)
+                    .optTruncation(false);
+            Path path = Path.of(name);
+            this.tokenizer = Files.exists(path)
+                    ? builder.optTokenizerPath(path).build()
+                    : builder.optTokenizerName(name).build();
+            Log.infof("Counting prompt tokens with the %s tokenizer", name);
+        } catch (Exception | UnsatisfiedLinkError e) {
+            Log.warnf(e, "Unable to load tokenizer %s; estimating prompt tokens from %.1f characters per token",
+                    name, charsPerToken);
+        }
+    }
+
+    /**
+     * @return the number of tokens in the text (0 for null or empty text)
+     */
+    public int count(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        HuggingFaceTokenizer current = tokenizer;
+        if (current != null) {
+            return current.encode(text).getIds().length;
+        }
+        return (int) Math.ceil(text.length() / calibrated);
+    }
+
+    /**
+     * Calibrate the estimate from a prompt's length and the prompt tokens the server reports it evaluated.
+     * The report leaves out cached tokens, so only a ratio lower than the current one is kept.
+     */
+    public synchronized void observe(int promptChars, int evaluatedTokens) {
+        if (tokenizer != null || promptChars < MIN_SAMPLE_CHARS || evaluatedTokens <= 0) {
+            return;
+        }
+        double sample = (double) promptChars / evaluatedTokens;
+        if (sample < calibrated) {
+            Log.debugf("Prompt token estimate calibrated: %.2f characters per token (was %.2f)", sample, calibrated);
+            calibrated = sample;
+        }
+    }
+
+    public double charsPerToken() {
+        return calibrated;
+    }
+}
@@ -0,0 +1,220 @@
+package dev.ebullient.ironsworn.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.logging.Log;
+
+/**
+ * Sends embedding requests from every campaign to the embedding model in micro-batches.
+ * <p>
+ * Calls that arrive within <code>ironsworn.embedding.batch.max-wait-ms</code> of the first
+ * waiting one are sent together as one <code>embedAll</code> request (up to
+ * <code>ironsworn.embedding.batch.max-size</code> texts; a larger single call is sent alone),
+ * and the results are handed back to each caller. At most
+ * <code>ironsworn.embedding.batch.max-in-flight</code> batches are sent at a time.
+ * <p>
+ * Exported: <code>ironsworn.embedding.batch.size</code> (texts per batch),
+ * <code>ironsworn.embedding.batch.calls</code> (callers per batch),
+ * <code>ironsworn.embedding.batch.latency</code> (model request time) and
+ * <code>ironsworn.embedding.request</code> (caller's wait, including queueing).
+ */
+@Singleton
+public class EmbeddingGateway {
+
+    @ConfigProperty(name = "ironsworn.embedding.batch.max-size", defaultValue = "32")
+    int maxBatchSize;
+
+    @ConfigProperty(name = "ironsworn.embedding.batch.max-wait-ms", defaultValue = "5")
+    long maxWaitMillis;
+
+    @ConfigProperty(name = "ironsworn.embedding.batch.max-in-flight", defaultValue = "2")
+    int maxInFlight;
+
+    @Inject
+    Instance<EmbeddingModel> embeddingModel;
+
+    @Inject
+    MeterRegistry registry;
+
+    /** One caller's texts, and where its embeddings go. */
+    private record Pending(List<TextSegment> segments, CompletableFuture<List<Embedding>> result) {
+    }
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private Semaphore inFlight;
+    private ExecutorService executor;
+    private Thread dispatcher;
+
+    @PostConstruct
+    void init() {
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+        this.executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("embedding-batch-", 0).factory());
+        this.dispatcher = Thread.ofVirtual().name("embedding-dispatcher").start(this::dispatch);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result().cancel(false);
+        }
+    }
+
+    /** Embed one text. */
+    public Embedding embed(String text) {
+        return embedAll(List.of(TextSegment.from(text))).getFirst();
+    }
+
+    /** Embed texts, in order. */
+    public List<Embedding> embedAll(List<TextSegment> segments) {
+        if (segments.isEmpty()) {
+            return List.of();
+        }
+        long start = System.nanoTime();
+        CompletableFuture<List<Embedding>> result = new CompletableFuture<>();
+        queue.add(new Pending(List.copyOf(segments), result));
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted waiting for embeddings");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            Timer.builder("ironsworn.embedding.request")
+                    .description("Time callers wait for embeddings, including batching")
+                    .register(registry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    EmbeddingModel model() {
+        return embeddingModel.get();
+    }
+
+    private void dispatch() {
+        Pending carry = null;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<Pending> batch = new ArrayList<>();
+                Pending first = carry != null ? carry : queue.take();
+                carry = null;
+                batch.add(first);
+                int size = first.segments().size();
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+                while (size < maxBatchSize) {
+                    Pending next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    if (size + next.segments().size() > maxBatchSize) {
+                        // Starts the next batch
+                        carry = next;
+                        break;
+                    }
+                    batch.add(next);
+                    size += next.segments().size();
+                }
+
+                inFlight.acquire();
+                try {
+                    executor.execute(() -> {
+                        try {
+                            send(batch);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    Log.debug("Embedding gateway is shutting down");
+                    batch.forEach(p -> p.result().cancel(false));
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (carry != null) {
+            carry.result().cancel(false);
+        }
+    }
+
+    /** Send one batch and hand each caller its embeddings. */
+    private void send(List<Pending> batch) {
+        List<Pending> live = batch.stream().filter(p -> !p.result().isDone()).toList();
+        if (live.isEmpty()) {
+            return;
+        }
+        List<TextSegment> segments = new ArrayList<>();
+        live.forEach(p -> segments.addAll(p.segments()));
+
+        long start = System.nanoTime();
+        try {
+            List<Embedding> embeddings = model().embedAll(segments).content();
+            if (embeddings.size() != segments.size()) {
+                throw new IllegalStateException("Embedding count mismatch: %d embeddings for %d texts"
+                        .formatted(embeddings.size(), segments.size()));
+            }
+            int offset = 0;
+            for (Pending p : live) {
+                int n = p.segments().size();
+                p.result().complete(embeddings.subList(offset, offset + n));
+                offset += n;
+            }
+        } catch (RuntimeException e) {
+            live.forEach(p -> p.result().completeExceptionally(e));
+        } finally {
+            Timer.builder("ironsworn.embedding.batch.latency")
+                    .description("Embedding model request time per batch")
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            DistributionSummary.builder("ironsworn.embedding.batch.size")
+                    .description("Texts per embedding batch")
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(segments.size());
+            DistributionSummary.builder("ironsworn.embedding.batch.calls")
+                    .description("Callers served per embedding batch")
+                    .register(registry)
+                    .record(live.size());
+        }
+    }
+}
@@ -28,13 +28,13 @@ import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import dev.ebullient.ironsworn.CampaignRegistry;
 import dev.ebullient.ironsworn.JournalParser;
 import dev.ebullient.ironsworn.JournalParser.JournalExchange;
 import dev.langchain4j.community.store.embedding.neo4j.Neo4jEmbeddingStore;
 import dev.langchain4j.data.document.Metadata;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.store.embedding.filter.Filter;
 import io.quarkus.logging.Log;
 
@@ -56,13 +56,15 @@ public class StoryMemoryIndexer {
     ObjectMapper objectMapper;
 
     @Inject
-    EmbeddingModel embeddingModel;
+    EmbeddingGateway embeddingGateway;
 
     @Inject
     Neo4jEmbeddingStore embeddingStore;
 
+    @Inject
+    CampaignRegistry campaigns;
+
     private final ConcurrentHashMap<String, ScheduledFuture<?>> pending = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, Object> campaignLocks = new ConcurrentHashMap<>();
 
     private ScheduledExecutorService scheduler;
 
@@ -70,6 +72,7 @@ public class StoryMemoryIndexer {
     void init() {
         this.scheduler = Executors.newSingleThreadScheduledExecutor(
                 Thread.ofVirtual().name("story-memory-indexer-", 0).factory());
+        campaigns.track("index-pending", pending);
         Log.debugf("StoryMemoryIndexer isAvailable=%s", isAvailable());
     }
 
@@ -97,11 +100,9 @@ public class StoryMemoryIndexer {
         if (existing != null) {
             existing.cancel(false);
         }
-        Object lock = campaignLocks.computeIfAbsent(campaignId, k -> new Object());
-        synchronized (lock) {
+        try (var held = campaigns.lock(campaignId, "memory-index").write()) {
             clearCampaignIndex(campaignId, indexStatePath(campaignId));
         }
-        campaignLocks.remove(campaignId);
     }
 
     public void requestIndex(String campaignId) {
@@ -140,8 +141,7 @@ public class StoryMemoryIndexer {
             return;
         }
 
-        Object lock = campaignLocks.computeIfAbsent(campaignId, k -> new Object());
-        synchronized (lock) {
+        try (var held = campaigns.lock(campaignId, "memory-index").write()) {
             long lastModified = journalLastModifiedMillis(journalPath);
             String journalSection = readJournalSection(journalPath);
 
@@ -212,7 +212,7 @@ public class StoryMemoryIndexer {
                 return;
             }
 
-            List<Embedding> embeddings = embeddingModel.embedAll(segments).content();
+            List<Embedding> embeddings = embeddingGateway.embedAll(segments);
             int n = Math.min(embeddings.size(), segments.size());
             if (n <= 0) {
                 Log.warnf("No embeddings produced for %s", campaignId);
@@ -300,7 +300,7 @@ public class StoryMemoryIndexer {
         }
     }
 
-    private String readJournalSection(Path journalPath) {
+    static String readJournalSection(Path journalPath) {
         try {
             List<String> lines = Files.readAllLines(journalPath, StandardCharsets.UTF_8);
             int journalStart = -1;
@@ -330,7 +330,7 @@ public class StoryMemoryIndexer {
                 .put("exchangeIndex", exchangeIndex);
     }
 
-    private static String sha256(String text) {
+    static String sha256(String text) {
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-256");
             byte[] digest = md.digest(Objects.requireNonNullElse(text, "").getBytes(StandardCharsets.UTF_8));
@@ -4,8 +4,14 @@ import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metad
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
@@ -13,10 +19,10 @@ import jakarta.inject.Singleton;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
+import dev.ebullient.ironsworn.CampaignRegistry;
 import dev.langchain4j.community.store.embedding.neo4j.Neo4jEmbeddingStore;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.store.embedding.EmbeddingMatch;
 import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingSearchResult;
@@ -42,11 +48,26 @@ public class StoryMemoryService {
     StoryMemoryIndexer indexer;
 
     @Inject
-    Instance<EmbeddingModel> embeddingModel;
+    EmbeddingGateway embeddingGateway;
 
     @Inject
     Instance<Neo4jEmbeddingStore> embeddingStore;
 
+    @Inject
+    CampaignRegistry campaigns;
+
+    /** Each campaign's last query and its embedding (completed, or still being computed). */
+    private final Map<String, QueryEmbedding> lastQuery = new ConcurrentHashMap<>();
+
+    private record QueryEmbedding(String query, CompletableFuture<Embedding> embedding) {
+    }
+
+    @PostConstruct
+    void init() {
+        campaigns.onEvict(lastQuery::remove);
+        campaigns.track("query-embeddings", lastQuery);
+    }
+
     public String relevantMemory(String campaignId, String query) {
         if (!enabled || query == null || query.isBlank()) {
             return "";
@@ -56,7 +77,7 @@ public class StoryMemoryService {
         indexer.requestIndex(campaignId);
 
         try {
-            Embedding queryEmbedding = embeddingModel.get().embed(query).content();
+            Embedding queryEmbedding = embedQuery(campaignId, query);
             Filter filter = metadataKey("campaignId").isEqualTo(campaignId);
 
             EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
@@ -74,6 +95,47 @@ public class StoryMemoryService {
         }
     }
 
+    /**
+     * Embed a query about the campaign's story. The campaign's last query embedding is kept,
+     * in flight or done, so embedding the same text again in the same turn (e.g. to choose an
+     * oracle while memory is retrieved for the scene) waits for the first call instead of
+     * calling the embedding model twice.
+     */
+    public Embedding embedQuery(String campaignId, String query) {
+        while (true) {
+            CompletableFuture<Embedding> mine = new CompletableFuture<>();
+            QueryEmbedding entry = lastQuery.compute(campaignId,
+                    (id, last) -> last != null && last.query().equals(query) ? last : new QueryEmbedding(query, mine));
+            if (entry.embedding() == mine) {
+                try {
+                    Embedding embedding = embeddingGateway.embed(query);
+                    mine.complete(embedding);
+                    return embedding;
+                } catch (RuntimeException e) {
+                    // Not kept: the next call tries again
+                    lastQuery.remove(campaignId, entry);
+                    mine.completeExceptionally(e);
+                    throw e;
+                }
+            }
+            try {
+                return entry.embedding().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted waiting for the query embedding");
+            } catch (CancellationException e) {
+                // get() throws a cancelled future's exception as is (not wrapped).
+                // The first caller was cancelled, not this one: embed it here
+                continue;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
     private String format(EmbeddingSearchResult<TextSegment> result) {
         if (result == null || result.matches() == null || result.matches().isEmpty()) {
             return "";
@@ -0,0 +1,364 @@
+package dev.ebullient.ironsworn.memory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.ebullient.ironsworn.CampaignRegistry;
+import dev.ebullient.ironsworn.JournalParser;
+import dev.ebullient.ironsworn.JournalParser.JournalExchange;
+import dev.ebullient.ironsworn.chat.LlmBusyException;
+import dev.ebullient.ironsworn.chat.ModelRoute;
+import dev.ebullient.ironsworn.chat.ModelRouter;
+import dev.ebullient.ironsworn.chat.StorySummary;
+import dev.ebullient.ironsworn.chat.StorySummaryAssistant;
+import io.quarkus.logging.Log;
+
+/**
+ * Keeps a rolling, two-level summary of each campaign's story, so prompts carry long-range
+ * continuity at a fixed cost.
+ * <p>
+ * The journal's exchanges are grouped into chapters of <code>ironsworn.summary.chapter-exchanges</code>.
+ * When a chapter is complete, one background model call ({@link ModelRoute#SUMMARIZER}) summarizes
+ * it and folds it into the campaign synopsis. Each chapter is stored with its content hash and the
+ * synopsis as of that chapter (<code>.story-summary/&lt;campaignId&gt;.json</code> in the journal
+ * directory), so appending only summarizes new chapters, and an edit re-summarizes from the first
+ * changed chapter. A run summarizes at most <code>ironsworn.summary.chapters-per-run</code> chapters
+ * and schedules the next one, so catching up a long journal (on first open) is spread out rather than
+ * queued all at once. Model calls are made without holding the campaign's <code>story-summary</code> lock,
+ * which only guards reading and writing the state file.
+ * <p>
+ * {@link #contextBlock(String)} is the synopsis and the latest chapter summaries, at most
+ * <code>ironsworn.summary.max-chars</code>. It only changes when a chapter is completed, so it
+ * is a stable part of the prompt prefix.
+ */
+@Singleton
+public class StorySummarizer {
+
+    record Chapter(String hash, String summary, String synopsis) {
+    }
+
+    record SummaryState(List<Chapter> chapters) {
+        String synopsis() {
+            return chapters.isEmpty() ? "" : chapters.getLast().synopsis();
+        }
+    }
+
+    @ConfigProperty(name = "ironsworn.summary.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "ironsworn.summary.chapter-exchanges", defaultValue = "10")
+    int chapterExchanges;
+
+    /** Most chapter text sent to the model; each exchange gets an equal share. */
+    @ConfigProperty(name = "ironsworn.summary.chapter-max-chars", defaultValue = "8000")
+    int chapterMaxChars;
+
+    /** Chapters summarized per run; a backlog continues in a later run. */
+    @ConfigProperty(name = "ironsworn.summary.chapters-per-run", defaultValue = "1")
+    int chaptersPerRun;
+
+    @ConfigProperty(name = "ironsworn.summary.context-chapters", defaultValue = "2")
+    int contextChapters;
+
+    @ConfigProperty(name = "ironsworn.summary.max-chars", defaultValue = "2000")
+    int maxChars;
+
+    @ConfigProperty(name = "ironsworn.summary.debounce-ms", defaultValue = "5000")
+    long debounceMillis;
+
+    @ConfigProperty(name = "ironsworn.journal.dir", defaultValue = "${user.home}/.ironsworn")
+    String journalDir;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    StorySummaryAssistant assistant;
+
+    @Inject
+    ModelRouter router;
+
+    @Inject
+    CampaignRegistry campaigns;
+
+    private final ConcurrentHashMap<String, ScheduledFuture<?>> pending = new ConcurrentHashMap<>();
+    /** Rendered context block per campaign. */
+    private final Map<String, String> blocks = new ConcurrentHashMap<>();
+    /** Campaigns with a run in progress (one at a time per campaign). */
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService executor;
+
+    @PostConstruct
+    void init() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofVirtual().name("story-summary-scheduler-", 0).factory());
+        // Summaries take minutes: one campaign's must not hold up another's
+        this.executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("story-summary-", 0).factory());
+        campaigns.track("summary-pending", pending);
+        campaigns.track("summary-context", blocks);
+        campaigns.onEvict(blocks::remove);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The story so far, for prompts: the synopsis and the latest chapter summaries.
+     * Empty until the first chapter has been summarized.
+     */
+    public String contextBlock(String campaignId) {
+        if (!enabled || campaignId == null || campaignId.isBlank()) {
+            return "";
+        }
+        return blocks.computeIfAbsent(campaignId, id -> render(readState(statePath(id))));
+    }
+
+    /** Summarize completed chapters once the journal has been quiet for a while. */
+    public void requestSummary(String campaignId) {
+        if (!enabled || campaignId == null || campaignId.isBlank()) {
+            return;
+        }
+        if (scheduler == null || scheduler.isShutdown()) {
+            Log.debugf("Scheduler is shut down; skipping summary for %s", campaignId);
+            return;
+        }
+        ScheduledFuture<?> existing = pending.remove(campaignId);
+        if (existing != null) {
+            existing.cancel(false);
+        }
+        pending.put(campaignId, scheduler.schedule(() -> {
+            pending.remove(campaignId);
+            executor.execute(() -> {
+                try {
+                    summarizeNow(campaignId);
+                } catch (CancellationException e) {
+                    Log.debugf("Story summary for %s stopped: %s", campaignId, e.getMessage());
+                } catch (LlmBusyException e) {
+                    Log.debugf("Story summary for %s shed (%s); retrying on the next journal change",
+                            campaignId, e.getMessage());
+                } catch (Exception e) {
+                    Log.warnf(e, "Story summary failed for %s", campaignId);
+                }
+            });
+        }, debounceMillis, TimeUnit.MILLISECONDS));
+    }
+
+    public void deleteCampaignSummary(String campaignId) {
+        if (campaignId == null || campaignId.isBlank()) {
+            return;
+        }
+        ScheduledFuture<?> existing = pending.remove(campaignId);
+        if (existing != null) {
+            existing.cancel(false);
+        }
+        try (var held = campaigns.lock(campaignId, "story-summary").write()) {
+            Files.deleteIfExists(statePath(campaignId));
+        } catch (IOException e) {
+            Log.debugf(e, "Failed to delete story summary for %s", campaignId);
+        }
+        blocks.remove(campaignId);
+    }
+
+    void summarizeNow(String campaignId) {
+        Path journalPath = Path.of(journalDir).resolve(campaignId + ".md");
+        if (!Files.exists(journalPath)) {
+            return;
+        }
+        if (!running.add(campaignId)) {
+            // Pick up this change once the current run is done
+            requestSummary(campaignId);
+            return;
+        }
+        boolean more;
+        try {
+            SummaryState state;
+            try (var held = campaigns.lock(campaignId, "story-summary").read()) {
+                state = readState(statePath(campaignId));
+            }
+            List<JournalExchange> exchanges = JournalParser.parseExchanges(
+                    StoryMemoryIndexer.readJournalSection(journalPath));
+            state = update(campaignId, state, exchanges, s -> save(campaignId, journalPath, s));
+            more = state.chapters().size() < chapters(exchanges).size();
+        } finally {
+            running.remove(campaignId);
+        }
+        if (more) {
+            requestSummary(campaignId);
+        }
+    }
+
+    /**
+     * Write a new state under the lock, unless the campaign was deleted while the model was
+     * summarizing (which stops the run).
+     */
+    private void save(String campaignId, Path journalPath, SummaryState state) {
+        try (var held = campaigns.lock(campaignId, "story-summary").write()) {
+            if (!Files.exists(journalPath)) {
+                throw new CancellationException("campaign deleted");
+            }
+            writeState(statePath(campaignId), state);
+            blocks.put(campaignId, render(state));
+        }
+    }
+
+    /**
+     * Bring the summary up to date with the journal's exchanges, summarizing at most
+     * <code>chaptersPerRun</code> new chapters.
+     *
+     * @param saved called with the new state after each change (a chapter summarized, or
+     *        chapters dropped because they changed)
+     */
+    SummaryState update(String campaignId, SummaryState state, List<JournalExchange> exchanges,
+            Consumer<SummaryState> saved) {
+        List<List<JournalExchange>> complete = chapters(exchanges);
+        List<Chapter> chapters = new ArrayList<>(state.chapters());
+
+        // Keep chapters that are unchanged, up to the first edit
+        int keep = 0;
+        while (keep < chapters.size() && keep < complete.size()
+                && chapters.get(keep).hash().equals(hash(complete.get(keep)))) {
+            keep++;
+        }
+        if (keep < chapters.size()) {
+            Log.infof("Story summary for %s: chapters from %d changed", campaignId, keep + 1);
+            chapters.subList(keep, chapters.size()).clear();
+            state = new SummaryState(List.copyOf(chapters));
+            saved.accept(state);
+        }
+
+        int end = Math.min(complete.size(), chapters.size() + Math.max(1, chaptersPerRun));
+        for (int i = chapters.size(); i < end; i++) {
+            List<JournalExchange> chapter = complete.get(i);
+            String synopsis = state.synopsis();
+            String text = chapterText(chapter);
+            Log.debugf("%s: summarizing chapter %d (%d chars)", campaignId, i + 1, text.length());
+
+            StorySummary summary = router.call(ModelRoute.SUMMARIZER, campaignId,
+                    () -> assistant.summarize(campaignId, synopsis, text));
+            chapters.add(new Chapter(hash(chapter), summary.chapterSummary().trim(), summary.synopsis().trim()));
+            state = new SummaryState(List.copyOf(chapters));
+            saved.accept(state);
+        }
+        return state;
+    }
+
+    /** Complete chapters: the newest, still-growing exchanges are left to the recent journal. */
+    List<List<JournalExchange>> chapters(List<JournalExchange> exchanges) {
+        int size = Math.max(1, chapterExchanges);
+        List<List<JournalExchange>> chapters = new ArrayList<>();
+        for (int end = size; end <= exchanges.size(); end += size) {
+            chapters.add(exchanges.subList(end - size, end));
+        }
+        return chapters;
+    }
+
+    String chapterText(List<JournalExchange> chapter) {
+        int share = Math.max(200, chapterMaxChars / Math.max(1, chapter.size()));
+        List<String> parts = new ArrayList<>();
+        for (JournalExchange exchange : chapter) {
+            String narrative = JournalParser.stripNonNarrative(exchange.content()).trim();
+            if (narrative.length() > share) {
+                narrative = narrative.substring(0, share).trim() + " …";
+            }
+            if (!narrative.isEmpty()) {
+                parts.add(narrative);
+            }
+        }
+        return String.join("\n\n", parts);
+    }
+
+    /** The synopsis, then as many of the latest chapter summaries as fit (oldest dropped first). */
+    String render(SummaryState state) {
+        if (state.chapters().isEmpty()) {
+            return "";
+        }
+        String synopsis = state.synopsis();
+        if (synopsis.length() > maxChars) {
+            synopsis = synopsis.substring(0, maxChars).trim() + " …";
+        }
+        List<Chapter> chapters = state.chapters();
+        List<String> recent = new ArrayList<>();
+        int used = synopsis.length();
+        for (int i = chapters.size() - 1; i >= Math.max(0, chapters.size() - contextChapters); i--) {
+            String line = "- Chapter %d: %s".formatted(i + 1, chapters.get(i).summary());
+            if (used + line.length() + 1 > maxChars) {
+                break;
+            }
+            recent.addFirst(line);
+            used += line.length() + 1;
+        }
+        if (recent.isEmpty()) {
+            return synopsis;
+        }
+        return synopsis + "\n\nLatest chapters:\n" + String.join("\n", recent);
+    }
+
+    private static String hash(List<JournalExchange> chapter) {
+        StringBuilder sb = new StringBuilder();
+        chapter.forEach(exchange -> sb.append(exchange.content()).append('\n'));
+        return StoryMemoryIndexer.sha256(sb.toString());
+    }
+
+    private Path statePath(String campaignId) {
+        return Path.of(journalDir).resolve(".story-summary").resolve(campaignId + ".json");
+    }
+
+    private SummaryState readState(Path statePath) {
+        if (!Files.exists(statePath)) {
+            return new SummaryState(List.of());
+        }
+        try {
+            SummaryState state = objectMapper.readValue(Files.readString(statePath, StandardCharsets.UTF_8),
+                    SummaryState.class);
+            return state.chapters() == null ? new SummaryState(List.of()) : state;
+        } catch (Exception e) {
+            Log.debugf(e, "Failed to read story summary %s", statePath);
+            return new SummaryState(List.of());
+        }
+    }
+
+    private void writeState(Path statePath, SummaryState state) {
+        try {
+            String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(state);
+            Files.createDirectories(statePath.getParent());
+            Files.writeString(statePath, json, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } catch (Exception e) {
+            Log.debugf(e, "Failed to write story summary %s", statePath);
+        }
+    }
+}
@@ -20,6 +20,16 @@ public record CharacterSheet(
         return new CharacterSheet(name, 1, 1, 1, 1, 1, 5, 5, 5, 2, "", List.of());
     }
 
+    public CharacterSheet withVows(List<Vow> vows) {
+        return new CharacterSheet(name, edge, heart, iron, shadow, wits,
+                health, spirit, supply, momentum, location, vows);
+    }
+
+    public CharacterSheet withLocation(String location) {
+        return new CharacterSheet(name, edge, heart, iron, shadow, wits,
+                health, spirit, supply, momentum, location, vows);
+    }
+
     public int stat(String statName) {
         return switch (statName.toLowerCase()) {
             case "edge" -> edge;
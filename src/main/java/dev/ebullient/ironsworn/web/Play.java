@@ -8,10 +8,13 @@ import jakarta.inject.Inject;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.Path;
 
+import org.jboss.resteasy.reactive.RestQuery;
+
 import Datasworn.MoveCategory;
 import Datasworn.OracleTablesCollection;
 import dev.ebullient.ironsworn.DataswornService;
 import dev.ebullient.ironsworn.GameJournal;
+import dev.ebullient.ironsworn.MessageType;
 import dev.ebullient.ironsworn.model.Campaign;
 import io.quarkiverse.renarde.Controller;
 import io.quarkus.qute.CheckedTemplate;
@@ -28,7 +31,9 @@ public class Play extends Controller {
         public static native TemplateInstance play(
                 Campaign campaign,
                 Map<String, MoveCategory> moves,
-                Map<String, OracleTablesCollection> oracles);
+                Map<String, OracleTablesCollection> oracles,
+                String messageTypes,
+                boolean spectator);
     }
 
     @Inject
@@ -43,14 +48,18 @@ public class Play extends Controller {
         return Templates.index(journal.listCampaigns());
     }
 
+    /**
+     * The play page. With <code>?spectate=true</code> the page watches the campaign read-only.
+     */
     @GET
     @Path("/{campaignId}")
-    public TemplateInstance play(String campaignId) {
+    public TemplateInstance play(String campaignId, @RestQuery boolean spectate) {
         Campaign campaign = journal.getCampaign(campaignId);
         if (campaign == null) {
             flash("error", "Campaign not found: " + campaignId);
             return Templates.index(journal.listCampaigns());
         }
-        return Templates.play(campaign, data.getMoves(), data.getOracles());
+        return Templates.play(campaign, data.getMoves(), data.getOracles(), MessageType.clientConstants(),
+                spectate);
     }
 }
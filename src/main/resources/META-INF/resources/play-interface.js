@@ -5,15 +5,30 @@
  * are injected directly into the #chat-messages stream. The main textarea is reused for
  * backstory chat input. Once creation finalizes, the UI transitions to gameplay in-place.
  */
+/** Highest play protocol version this client understands (see PlayProtocol). */
+const PLAY_PROTOCOL_VERSION = 3;
+
 class PlayInterface {
     constructor(config) {
         this.campaignId = config.campaignId;
         this.wsUrl = config.wsUrl;
+        // Wire names shared with the server's MessageType enum
+        this.types = config.messageTypes;
+        this.protocol = 1;
+        // Spectators watch the campaign read-only
+        this.spectator = !!config.spectator;
+        // Messages sent while disconnected, with their request ids: sent again after reconnecting
+        this._unsent = [];
+        this._requestSeq = 0;
         this.character = null;
         this.pendingMove = null;
         this.selectedStat = null;
         this.creationMode = false;
         this._pendingEdit = null;
+        // History paging: id of the oldest block shown, and whether older blocks exist
+        this.historyCursor = null;
+        this.historyHasMore = false;
+        this.historyLoading = false;
 
         // DOM elements — gameplay
         this.chatContainer = document.getElementById('chat-messages');
@@ -32,6 +47,11 @@ class PlayInterface {
 
         this.inspireBtn = document.getElementById('inspire-btn');
 
+        if (this.spectator) {
+            document.body.classList.add('spectator');
+            this.inputContainer.classList.add('hidden');
+        }
+
         this.initWebSocket();
         this.initInput();
         this.initMoveButtons();
@@ -40,6 +60,7 @@ class PlayInterface {
         this.initDrawer();
         this.initMeters();
         this.initInspire();
+        this.initHistoryPaging();
         this._messageHandlers = this._buildMessageHandlers();
 
         // Event delegation for player choice buttons
@@ -80,29 +101,41 @@ class PlayInterface {
     }
 
     _buildMessageHandlers() {
+        const T = this.types;
         return {
             // Handshake
-            'connected':         ()    => this.handleConnected(),
+            [T.CONNECTED]:          (msg) => this.handleConnected(msg),
+            [T.BATCH]:              (msg) => (msg.messages || []).forEach(m => this.handleMessage(m)),
             // Creation flow
-            'creation_phase':    (msg) => this.handleCreationPhase(msg),
-            'inspire-create':    (msg) => this.handleInspireCreation(msg),
-            'creation_response': (msg) => this.handleCreationResponse(msg),
-            'creation_resume':   (msg) => this.handleCreationResume(msg),
-            'creation_ready':    (msg) => this.handleCreationReady(msg),
-            'play_resume':       (msg) => this.handlePlayResume(msg),
+            [T.CREATION_PHASE]:     (msg) => this.handleCreationPhase(msg),
+            'inspire-create':       (msg) => this.handleInspireCreation(msg),
+            [T.CREATION_RESPONSE]:  (msg) => this.handleCreationResponse(msg),
+            [T.CREATION_RESUME]:    (msg) => this.handleCreationResume(msg),
+            [T.CREATION_READY]:     (msg) => this.handleCreationReady(msg),
+            [T.PLAY_RESUME]:        (msg) => this.handlePlayResume(msg),
+            [T.HISTORY_PAGE]:       (msg) => this.handleHistoryPage(msg),
+            [T.PLAY_SYNC]:          (msg) => this.handlePlaySync(msg),
+            [T.BLOCK_DELTA]:        (msg) => this.applyBlockDelta(msg),
             // Gameplay flow
-            'narrative':         (msg) => this.handleNarrative(msg),
-            'move_outcome':      (msg) => this.handleMoveOutcome(msg),
-            'oracle_result':     (msg) => this.handleOracleResult(msg),
-            'character_update':  (msg) => this.handleCharacterUpdate(msg),
-            'loading':           ()    => this.addLoadingIndicator(),
-            'ready':             ()    => {
+            [T.NARRATIVE]:          (msg) => this.handleNarrative(msg),
+            [T.MOVE_OUTCOME]:       (msg) => this.handleMoveOutcome(msg),
+            [T.ORACLE_RESULT]:      (msg) => this.handleOracleResult(msg),
+            [T.CHARACTER_UPDATE]:   (msg) => this.handleCharacterUpdate(msg),
+            [T.CHARACTER_DELTA]:    (msg) => this.handleCharacterDelta(msg),
+            [T.LOADING]:            ()    => this.addLoadingIndicator(),
+            [T.CANCELLED]:          ()    => {
+                this.removeLoadingIndicator();
+                this.addSystemMessage('Response cancelled.');
+                this.enableInput();
+            },
+            [T.READY]:              ()    => {
                 this.removeLoadingIndicator();
                 this.enableInput();
             },
-            'edit_done':         (msg) => this.handleEditDone(msg),
-            'delete_done':       (msg) => this.handleDeleteDone(msg),
-            'error':             (msg) => {
+            [T.EDIT_DONE]:          (msg) => this.handleEditDone(msg),
+            [T.DELETE_DONE]:        (msg) => this.handleDeleteDone(msg),
+            [T.BLOCK_SOURCE]:       (msg) => this.handleBlockSource(msg),
+            [T.ERROR]:              (msg) => {
                 this.removeLoadingIndicator();
                 this.addSystemMessage('An error occurred: ' + msg.message);
                 this.enableInput();
@@ -111,11 +144,37 @@ class PlayInterface {
         };
     }
 
-    handleConnected() {
-        // Clear previous chat content — server replays everything on reconnect
-        this.chatContainer.innerHTML = '';
+    handleConnected(msg) {
+        // Use the compact protocol when the server offers it
+        const offered = (msg && msg.protocols) || [1];
+        this.protocol = Math.max(...offered.filter(v => v <= PLAY_PROTOCOL_VERSION));
+
+        // On reconnect during play, tell the server which blocks we already hold
+        // so it only sends what changed. Otherwise start from a clean slate.
+        const known = this.creationMode ? [] : this.knownBlockIds();
+        if (known.length === 0) {
+            this.chatContainer.innerHTML = '';
+            this.historyHasMore = false;
+        }
         this.addLoadingIndicator('Preparing your adventure...');
-        this.send({ type: 'start' });
+        this.send({
+            type: this.types.START,
+            protocol: this.protocol,
+            role: this.role(),
+            known
+        });
+        // Retransmit what could not be sent: same request ids, so the server runs each at most once
+        const unsent = this._unsent.splice(0);
+        unsent.forEach(obj => this.send(obj));
+    }
+
+    role() {
+        return this.spectator ? 'spectator' : 'player';
+    }
+
+    knownBlockIds() {
+        return Array.from(this.chatContainer.querySelectorAll('.message[data-block-id]'))
+            .map(div => div.dataset.blockId);
     }
 
     handleCreationReady(msg) {
@@ -141,11 +200,29 @@ class PlayInterface {
     }
 
     send(obj) {
+        // The server rejects changes from spectators; do not ask
+        if (this.spectator && ![this.types.START, this.types.HISTORY_PAGE, this.types.BLOCK_SOURCE].includes(obj.type)) {
+            return;
+        }
+        if (obj.type !== this.types.START && !obj.requestId) {
+            obj.requestId = this.newRequestId();
+        }
         if (this.ws.readyState === WebSocket.OPEN) {
             this.ws.send(JSON.stringify(obj));
+        } else if (obj.type !== this.types.START) {
+            this._unsent.push(obj);
         }
     }
 
+    /**
+     * A new request id: one per user action. Only a retransmit of the same message reuses it
+     * (see handleConnected), so the server answers that without running it twice; sending the
+     * same content again is a new request.
+     */
+    newRequestId() {
+        return Date.now().toString(36) + '-' + (++this._requestSeq) + '-' + Math.random().toString(36).slice(2, 8);
+    }
+
     // --- Creation flow (inline in chat) ---
 
     enterCreationMode() {
@@ -308,7 +385,7 @@ class PlayInterface {
 
         // Send update to server
         this.send({
-            type: 'character_update',
+            type: this.types.CHARACTER_UPDATE,
             character: { edge, heart, iron, shadow, wits, health: 5, spirit: 5, supply: 5, momentum: 2, vows: [] }
         });
 
@@ -347,28 +424,101 @@ class PlayInterface {
     }
 
     handlePlayResume(msg) {
-        this.removeLoadingIndicator();
+        // Full replay of the latest page: discard anything shown before
+        this.chatContainer.innerHTML = '';
         this.appendBlocks((msg.blocks || []));
+        this.setHistoryCursor(msg);
         this.addSystemMessage('Type <code>/help</code> for a guide to the interface and gameplay.');
     }
 
+    handlePlaySync(msg) {
+        this.removeLoadingIndicator();
+        this.applyBlockDelta(msg);
+        this.setHistoryCursor(msg);
+    }
+
+    /**
+     * Apply server-side block changes: remove tombstoned blocks, then insert new
+     * blocks after their anchor. Inserts anchored outside the loaded window are skipped;
+     * they will arrive with history paging.
+     */
+    applyBlockDelta(msg) {
+        for (const id of (msg.tombstones || [])) {
+            const div = this.findBlockElement(id);
+            if (div) div.remove();
+        }
+        for (const insert of (msg.inserts || [])) {
+            if (this.findBlockElement(insert.block.id)) continue;
+            const div = this.createBlockElement(insert.block);
+            if (insert.after == null) {
+                if (!this.historyHasMore) {
+                    this.chatContainer.insertBefore(div, this.chatContainer.firstChild);
+                }
+                continue;
+            }
+            const anchor = this.findBlockElement(insert.after);
+            if (anchor) anchor.after(div);
+        }
+    }
+
     appendBlocks(blocks, extraClass) {
         for (const block of (blocks || [])) {
-            const type = block.type || 'assistant';
-            const div = document.createElement('div');
-            div.className = 'message ' + (extraClass ? (extraClass + ' ') : '') + type;
-            div.innerHTML = block.html || '';
-            if (block.index != null) div.dataset.blockIndex = block.index;
-            if (block.markdown != null) div.dataset.markdown = block.markdown;
-            // Add action buttons for blocks with a server index
-            if (block.index != null) {
-                this.addBlockActions(div, type);
-            }
-            this.chatContainer.appendChild(div);
+            // A reconnecting client may already hold blocks of a generation it attached to
+            if (this.findBlockElement(block.id)) continue;
+            this.chatContainer.appendChild(this.createBlockElement(block, extraClass));
         }
         this.scrollToBottom();
     }
 
+    createBlockElement(block, extraClass) {
+        const type = block.type || 'assistant';
+        const div = document.createElement('div');
+        div.className = 'message ' + (extraClass ? (extraClass + ' ') : '') + type;
+        div.innerHTML = block.html || '';
+        if (block.id != null) div.dataset.blockId = block.id;
+        if (block.index != null) div.dataset.blockIndex = block.index;
+        if (block.markdown != null) div.dataset.markdown = block.markdown;
+        // Add action buttons for blocks with a server id
+        if (block.id != null) {
+            this.addBlockActions(div, type);
+        }
+        return div;
+    }
+
+    // --- History paging ---
+
+    initHistoryPaging() {
+        this.chatContainer.addEventListener('scroll', () => {
+            if (this.chatContainer.scrollTop < 80) {
+                this.requestHistoryPage();
+            }
+        });
+    }
+
+    setHistoryCursor(msg) {
+        this.historyCursor = msg.cursor || null;
+        this.historyHasMore = !!msg.hasMore && !!msg.cursor;
+        this.historyLoading = false;
+    }
+
+    requestHistoryPage() {
+        if (!this.historyHasMore || this.historyLoading || this.creationMode) return;
+        this.historyLoading = true;
+        this.send({ type: this.types.HISTORY_PAGE, before: this.historyCursor });
+    }
+
+    handleHistoryPage(msg) {
+        // Prepend older blocks while keeping the current view anchored
+        const previousHeight = this.chatContainer.scrollHeight;
+        const fragment = document.createDocumentFragment();
+        for (const block of (msg.blocks || [])) {
+            fragment.appendChild(this.createBlockElement(block));
+        }
+        this.chatContainer.insertBefore(fragment, this.chatContainer.firstChild);
+        this.chatContainer.scrollTop += this.chatContainer.scrollHeight - previousHeight;
+        this.setHistoryCursor(msg);
+    }
+
     addCreationGuideMessage(text, html) {
         const div = document.createElement('div');
         div.className = 'message assistant creation-widget';
@@ -542,7 +692,7 @@ class PlayInterface {
         this.messageInput.style.height = 'auto';
         this.disableInput();
         this.addLoadingIndicator();
-        this.send({ type: 'creation_chat', text });
+        this.send({ type: this.types.CREATION_CHAT, text });
     }
 
     sendNarrative() {
@@ -554,7 +704,7 @@ class PlayInterface {
         this.messageInput.style.height = 'auto';
         this.disableInput();
         this.addLoadingIndicator();
-        this.send({ type: 'narrative', text });
+        this.send({ type: this.types.NARRATIVE, text });
     }
 
     disableInput() {
@@ -563,6 +713,7 @@ class PlayInterface {
     }
 
     enableInput() {
+        if (this.spectator) return;
         this.sendBtn.disabled = false;
         this.messageInput.disabled = false;
         this.inputContainer.classList.remove('hidden');
@@ -688,6 +839,18 @@ class PlayInterface {
         div.className = 'loading';
         div.id = 'loading';
         div.textContent = text || (this.creationMode ? 'The guide considers...' : 'The oracle speaks...');
+        if (!text) {
+            // Generation in progress: let the player stop it
+            const stopBtn = document.createElement('button');
+            stopBtn.className = 'action-btn cancel-generation-btn';
+            stopBtn.textContent = 'Stop';
+            stopBtn.title = 'Cancel this response';
+            stopBtn.addEventListener('click', () => {
+                stopBtn.disabled = true;
+                this.send({ type: this.types.CANCEL });
+            });
+            div.appendChild(stopBtn);
+        }
         this.chatContainer.appendChild(div);
         this.scrollToBottom();
     }
@@ -707,7 +870,7 @@ class PlayInterface {
         this.removeLoadingIndicator();
         if (msg.blocks && msg.blocks.length > 0) {
             this.appendBlocks(msg.blocks);
-        } else {
+        } else if (msg.narrativeHtml || msg.narrative) {
             this.addNarrativeMessage(msg.narrativeHtml || msg.narrative);
         }
         if (msg.location) {
@@ -756,6 +919,8 @@ class PlayInterface {
     }
 
     handleOracleResult(msg) {
+        // A replayed duplicate: the roll is already shown
+        if (msg.blockId != null && this.findBlockElement(msg.blockId)) return;
         const r = msg.result;
         const div = document.createElement('div');
         div.className = 'message mechanical oracle';
@@ -763,7 +928,16 @@ class PlayInterface {
         if (msg.blockIndex != null) {
             div.dataset.blockIndex = msg.blockIndex;
         }
-        this.chatContainer.appendChild(div);
+        if (msg.blockId != null) {
+            div.dataset.blockId = msg.blockId;
+        }
+        // The roll arrives before its narration: keep the loading indicator last
+        const loading = document.getElementById('loading');
+        if (loading && loading.parentNode === this.chatContainer) {
+            this.chatContainer.insertBefore(div, loading);
+        } else {
+            this.chatContainer.appendChild(div);
+        }
         this.scrollToBottom();
     }
 
@@ -773,6 +947,13 @@ class PlayInterface {
         this.updateCharacterDisplay();
     }
 
+    handleCharacterDelta(msg) {
+        const changes = msg.changes || {};
+        if (Object.keys(changes).length === 0) return;
+        this.character = Object.assign(this.character || {}, changes);
+        this.updateCharacterDisplay();
+    }
+
     // --- Meters ---
 
     initMeters() {
@@ -791,7 +972,7 @@ class PlayInterface {
                     clearTimeout(this.meterDebounce);
                     this.meterDebounce = setTimeout(() => {
                         console.log('[character] sending meter update:', key, '=', val);
-                        this.send({ type: 'character_update', character: this.character });
+                        this.send({ type: this.types.CHARACTER_UPDATE, character: this.character });
                     }, 500);
                 }
             });
@@ -833,7 +1014,7 @@ class PlayInterface {
 
             vowsList.querySelectorAll('.progress-mark-btn').forEach(btn => {
                 btn.addEventListener('click', () => {
-                    this.send({ type: 'progress_mark', vowIndex: parseInt(btn.dataset.vow) });
+                    this.send({ type: this.types.PROGRESS_MARK, vowIndex: parseInt(btn.dataset.vow) });
                 });
             });
         }
@@ -1015,7 +1196,7 @@ class PlayInterface {
 
         this.character.momentum = 2;
         console.log('[character] sending momentum burn update');
-        this.send({ type: 'character_update', character: this.character });
+        this.send({ type: this.types.CHARACTER_UPDATE, character: this.character });
         this.updateCharacterDisplay();
 
         this.addSystemMessage('Momentum burned! (' + data.momentum + ' → 2)');
@@ -1038,7 +1219,7 @@ class PlayInterface {
 
         const playerAction = this.messageInput.value.trim();
         const msg = {
-            type: 'move_result',
+            type: this.types.MOVE_RESULT,
             categoryKey: this.pendingMove.category,
             moveKey: this.pendingMove.key,
             stat: this.selectedStat,
@@ -1096,7 +1277,7 @@ class PlayInterface {
         document.querySelectorAll('.oracle-btn').forEach(btn => {
             btn.addEventListener('click', () => {
                 this.send({
-                    type: 'oracle',
+                    type: this.types.ORACLE,
                     collectionKey: btn.dataset.collection,
                     tableKey: btn.dataset.table
                 });
@@ -1115,7 +1296,7 @@ class PlayInterface {
     sendInspire() {
         this.disableInput();
         this.addLoadingIndicator();
-        this.send({ type: this.creationMode ? 'creation_inspire' : 'inspire' });
+        this.send({ type: this.creationMode ? this.types.CREATION_INSPIRE : this.types.INSPIRE });
     }
 
     // --- Inline block editing & deletion ---
@@ -1156,9 +1337,8 @@ class PlayInterface {
             const blockType = div.classList.contains('user') ? 'user'
                 : div.classList.contains('mechanical') ? 'mechanical' : 'assistant';
             this.send({
-                type: 'delete_block',
-                blockIndex: parseInt(div.dataset.blockIndex),
-                blockText: div.dataset.markdown || '',
+                type: this.types.DELETE_BLOCK,
+                blockId: div.dataset.blockId,
                 blockType
             });
             btn.disabled = true;
@@ -1188,16 +1368,28 @@ class PlayInterface {
     }
 
     handleDeleteDone(msg) {
-        // Full UI refresh from server-provided blocks
-        this.chatContainer.innerHTML = '';
-        this.appendBlocks(msg.blocks || []);
         if (!msg.success) {
             this.addSystemMessage('Could not find that block in the journal.');
+            this.refreshFromServer();
+            return;
         }
+        // The block itself was removed by the preceding block_delta
+        const div = this.findBlockElement(msg.blockId);
+        if (div) div.remove();
+    }
+
+    findBlockElement(blockId) {
+        if (blockId == null) return null;
+        return this.chatContainer.querySelector('.message[data-block-id="' + CSS.escape(blockId) + '"]');
     }
 
     startEdit(div) {
         if (div.classList.contains('editing')) return;
+        if (div.dataset.markdown == null) {
+            // Compact protocol: fetch the block's markdown first
+            this.send({ type: this.types.BLOCK_SOURCE, blockId: div.dataset.blockId });
+            return;
+        }
         div.classList.add('editing');
 
         const markdown = div.dataset.markdown || '';
@@ -1230,6 +1422,13 @@ class PlayInterface {
         textarea.focus();
     }
 
+    handleBlockSource(msg) {
+        const div = this.findBlockElement(msg.blockId);
+        if (!div) return;
+        div.dataset.markdown = msg.markdown;
+        this.startEdit(div);
+    }
+
     cancelEdit(div) {
         div.innerHTML = div._originalHtml;
         div.classList.remove('editing');
@@ -1253,20 +1452,19 @@ class PlayInterface {
             this.cancelEdit(div);
             return;
         }
-        const blockIndex = parseInt(div.dataset.blockIndex);
+        const blockId = div.dataset.blockId;
         const blockType = div.classList.contains('user') ? 'user' : 'assistant';
         this.send({
-            type: 'edit_block',
-            blockIndex,
+            type: this.types.EDIT_BLOCK,
+            blockId,
             blockType,
-            originalText,
             newText
         });
         div.querySelector('.edit-save-btn').disabled = true;
 
         // Timeout: if no response in 5s, refresh UI from server
         this._pendingEdit = {
-            blockIndex,
+            blockId,
             timeout: setTimeout(() => {
                 this._pendingEdit = null;
                 this.refreshFromServer();
@@ -1276,7 +1474,7 @@ class PlayInterface {
 
     handleEditDone(msg) {
         // Clear pending edit timeout
-        if (this._pendingEdit && this._pendingEdit.blockIndex === msg.blockIndex) {
+        if (this._pendingEdit && this._pendingEdit.blockId === msg.blockId) {
             clearTimeout(this._pendingEdit.timeout);
             this._pendingEdit = null;
         }
@@ -1287,23 +1485,18 @@ class PlayInterface {
             return;
         }
 
-        const div = this.chatContainer.querySelector('.message[data-block-index="' + msg.blockIndex + '"]');
-        if (!div) {
-            console.warn('edit_done: no div found for blockIndex', msg.blockIndex);
-            return;
+        // The preceding block_delta replaced the edited block; if its content
+        // did not actually change, the original is still here in edit mode.
+        const div = this.findBlockElement(msg.blockId);
+        if (div && div._originalHtml) {
+            this.cancelEdit(div);
         }
-        div.classList.remove('editing');
-        delete div._originalHtml;
-        div.innerHTML = msg.html;
-        div.dataset.markdown = msg.markdown;
-        const type = div.classList.contains('user') ? 'user' : 'assistant';
-        this.addBlockActions(div, type);
     }
 
     refreshFromServer() {
         this.chatContainer.innerHTML = '';
         this.addLoadingIndicator();
-        this.send({ type: 'start' });
+        this.send({ type: this.types.START, protocol: this.protocol, role: this.role() });
     }
 
     // --- Bottom drawer (narrow screens) ---
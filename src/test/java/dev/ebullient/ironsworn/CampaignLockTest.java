@@ -0,0 +1,139 @@
+package dev.ebullient.ironsworn;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Campaign locks are taken by handlers running on virtual threads; waiting for (or holding)
+ * one must not pin the carrier thread. Uses JFR's <code>jdk.VirtualThreadPinned</code> event.
+ */
+class CampaignLockTest {
+
+    static final String THREAD_PREFIX = "campaign-lock-test-";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void contendedWriteLock_doesNotPin() throws Exception {
+        CampaignLock lock = new CampaignLock();
+        AtomicInteger counter = new AtomicInteger();
+
+        List<RecordedEvent> pinned = recordPinning(() -> runVirtual(50, () -> {
+            try (var held = lock.write()) {
+                int value = counter.get();
+                Thread.sleep(2); // parks while holding the lock
+                counter.set(value + 1);
+            }
+        }));
+
+        assertEquals(50, counter.get(), "Writers should be exclusive");
+        assertTrue(pinned.isEmpty(), "Virtual threads pinned: " + pinned);
+    }
+
+    @Test
+    void readersShareTheLock() throws Exception {
+        CampaignLock lock = new CampaignLock();
+        try (var reader = lock.read()) {
+            Thread other = Thread.ofVirtual().start(() -> {
+                try (var held = lock.read()) {
+                    assertFalse(lock.isWriteLocked());
+                }
+            });
+            assertTrue(other.join(Duration.ofSeconds(5)), "A second reader should not wait");
+        }
+    }
+
+    @Test
+    void concurrentJournalAccess_doesNotPin() throws Exception {
+        GameJournal journal = new GameJournal();
+        var field = GameJournal.class.getDeclaredField("journalDir");
+        field.setAccessible(true);
+        field.set(journal, tempDir.toString());
+        journal.createStubCampaign("Test Hero");
+
+        List<RecordedEvent> pinned = recordPinning(() -> runVirtual(40, () -> {
+            journal.appendNarrative("test-hero", "The wind rises.");
+            journal.readCharacter("test-hero");
+            journal.getRecentJournal("test-hero", 10);
+        }));
+
+        long appended = journal.getFullJournal("test-hero").lines()
+                .filter(line -> line.contains("The wind rises."))
+                .count();
+        assertEquals(40, appended, "Appends should not interleave");
+        assertTrue(pinned.isEmpty(), "Virtual threads pinned: " + pinned);
+    }
+
+    @Test
+    void synchronizedMonitor_pins() throws Exception {
+        // Negative control: before JDK 24, parking inside a monitor pins the carrier
+        assumeTrue(Runtime.version().feature() < 24);
+        Object monitor = new Object();
+
+        List<RecordedEvent> pinned = recordPinning(() -> runVirtual(4, () -> {
+            synchronized (monitor) {
+                Thread.sleep(25);
+            }
+        }));
+
+        assertFalse(pinned.isEmpty(), "Expected the monitor to pin its carrier");
+    }
+
+    interface Work {
+        void run() throws Exception;
+    }
+
+    static List<RecordedEvent> recordPinning(Work work) throws Exception {
+        List<RecordedEvent> pinned = new CopyOnWriteArrayList<>();
+        try (RecordingStream rs = new RecordingStream()) {
+            rs.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            rs.onEvent("jdk.VirtualThreadPinned", event -> {
+                if (event.getThread() != null && event.getThread().getJavaName() != null
+                        && event.getThread().getJavaName().startsWith(THREAD_PREFIX)) {
+                    pinned.add(event);
+                }
+            });
+            rs.startAsync();
+            work.run();
+            rs.stop();
+        }
+        return pinned;
+    }
+
+    static void runVirtual(int tasks, Work task) throws Exception {
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+        try (ExecutorService executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name(THREAD_PREFIX, 0).factory())) {
+            for (int i = 0; i < tasks; i++) {
+                executor.submit(() -> {
+                    try {
+                        task.run();
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS), "Tasks did not finish");
+        }
+        assertTrue(failures.isEmpty(), "Task failures: " + failures);
+    }
+}
@@ -0,0 +1,96 @@
+package dev.ebullient.ironsworn;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CampaignRegistryTest {
+
+    /** Campaign ids passed to the eviction listener, in order. */
+    final List<String> evicted = new ArrayList<>();
+
+    CampaignRegistry campaigns;
+    SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        campaigns = new CampaignRegistry();
+        campaigns.registry = registry;
+        campaigns.idleEvictMillis = 50;
+        campaigns.onEvict(evicted::add);
+    }
+
+    @Test
+    void sweep_evictsCampaignsIdleForTheEvictPeriod() throws Exception {
+        campaigns.touch("old");
+        Thread.sleep(100);
+        campaigns.touch("recent");
+
+        campaigns.sweep();
+        assertEquals(List.of("old"), evicted);
+        assertEquals(1, campaigns.size());
+        assertEquals(1, registry.counter("ironsworn.campaign.evicted", "reason", "idle").count());
+    }
+
+    @Test
+    void sweep_keepsCampaignsHeldBySessions() throws Exception {
+        campaigns.retain("open");
+        Thread.sleep(100);
+
+        campaigns.sweep();
+        assertTrue(evicted.isEmpty(), "A live session keeps its campaign");
+
+        // The idle period starts when the last session closes
+        campaigns.release("open");
+        campaigns.sweep();
+        assertTrue(evicted.isEmpty());
+
+        Thread.sleep(100);
+        campaigns.sweep();
+        assertEquals(List.of("open"), evicted);
+        assertEquals(0, campaigns.size());
+    }
+
+    @Test
+    void lock_isKeptUntilEvicted() {
+        CampaignLock lock = campaigns.lock("hero", "journal");
+        assertSame(lock, campaigns.lock("hero", "journal"));
+        assertNotSame(lock, campaigns.lock("hero", "index"));
+
+        campaigns.remove("hero");
+        assertNotSame(lock, campaigns.lock("hero", "journal"), "Eviction drops the campaign's locks");
+    }
+
+    @Test
+    void remove_callsListenersEvenIfOneFails() {
+        Map<String, String> state = new ConcurrentHashMap<>(Map.of("hero", "a", "other", "b"));
+        campaigns.onEvict(id -> {
+            throw new IllegalStateException("broken listener");
+        });
+        campaigns.onEvict(state::remove);
+        campaigns.retain("hero");
+
+        campaigns.remove("hero");
+        assertEquals(List.of("hero"), evicted);
+        assertEquals(Map.of("other", "b"), state, "Later listeners still run");
+        assertEquals(1, registry.counter("ironsworn.campaign.evicted", "reason", "removed").count());
+    }
+
+    @Test
+    void track_exportsMapSize() {
+        Map<String, String> state = new ConcurrentHashMap<>();
+        campaigns.track("test", state);
+        state.put("hero", "a");
+
+        assertEquals(1, registry.get("ironsworn.campaign.state.entries").tag("map", "test").gauge().value());
+    }
+}
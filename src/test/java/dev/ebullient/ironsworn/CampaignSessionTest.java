@@ -0,0 +1,129 @@
+package dev.ebullient.ironsworn;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.ebullient.ironsworn.CampaignSession.BlockDelta;
+import dev.ebullient.ironsworn.CampaignSession.JournalHistory;
+import dev.ebullient.ironsworn.CampaignSession.SyncResult;
+import dev.ebullient.ironsworn.JournalParser.JournalBlock;
+import dev.ebullient.ironsworn.chat.MarkdownAugmenter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CampaignSessionTest {
+
+    @TempDir
+    Path tempDir;
+
+    GameJournal journal;
+    ScheduledExecutorService scheduler;
+    ExecutorService generationExecutor;
+    CampaignSession session;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        journal = new GameJournal();
+        var field = GameJournal.class.getDeclaredField("journalDir");
+        field.setAccessible(true);
+        field.set(journal, tempDir.toString());
+        journal.createStubCampaign("Test Hero");
+
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        generationExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        MeterRegistry registry = new SimpleMeterRegistry();
+        CharacterWriteBehind writer = new CharacterWriteBehind("test-hero", journal, scheduler, 0, 0, registry);
+        session = new CampaignSession("test-hero", journal, new MarkdownAugmenter(), generationExecutor,
+                registry, 16, writer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+        generationExecutor.shutdownNow();
+    }
+
+    @Test
+    void sync_sendsMissingBlocksAndTombstones() {
+        journal.appendNarrative("test-hero", "The gate is shut.");
+        journal.appendNarrative("test-hero", "A raven watches.");
+        journal.appendNarrative("test-hero", "Night falls.");
+        List<String> known = ids();
+
+        journal.deleteBlockText("test-hero", "A raven watches.", "assistant");
+        journal.appendNarrative("test-hero", "Torches approach.");
+
+        SyncResult result = session.sync(known);
+        BlockDelta delta = result.delta();
+        assertNotNull(delta);
+        assertEquals(1, delta.inserts().size());
+        assertEquals(known.get(2), delta.inserts().getFirst().after(), "Anchored on the block it follows");
+        assertEquals("Torches approach.", delta.inserts().getFirst().block().markdown());
+        assertNotNull(delta.inserts().getFirst().block().html(), "Inserted blocks are rendered");
+        assertEquals(List.of(known.get(1)), delta.tombstones());
+        assertFalse(result.hasMore());
+        assertEquals(known.getFirst(), result.cursor());
+    }
+
+    @Test
+    void sync_keepsTheClientWindowAndReportsOlderBlocks() {
+        journal.appendNarrative("test-hero", "The gate is shut.");
+        journal.appendNarrative("test-hero", "A raven watches.");
+        List<String> all = ids();
+
+        // The client only holds the newest page
+        SyncResult result = session.sync(List.of(all.get(1)));
+        assertTrue(result.delta().isEmpty());
+        assertTrue(result.hasMore());
+        assertEquals(all.get(1), result.cursor());
+    }
+
+    @Test
+    void sync_resetsUnknownOrDistantClients() {
+        journal.appendNarrative("test-hero", "The gate is shut.");
+        String first = ids().getFirst();
+
+        assertNull(session.sync(List.of("unknown")).delta());
+        assertNull(session.sync(List.of()).delta());
+
+        for (int i = 0; i < CampaignSession.MAX_SYNC_BLOCKS; i++) {
+            journal.appendNarrative("test-hero", "Step " + i + ".");
+        }
+        assertNull(session.sync(List.of(first)).delta(), "Too many blocks to reconcile");
+    }
+
+    @Test
+    void changesSince_reportsEditsAsInsertPlusTombstone() {
+        journal.appendNarrative("test-hero", "The gate is shut.");
+        journal.appendNarrative("test-hero", "A raven watches.");
+        JournalHistory before = session.history();
+        List<String> old = ids();
+
+        journal.replaceBlockText("test-hero", "The gate is shut.", "The gate stands open.");
+        journal.appendNarrative("test-hero", "Night falls.");
+
+        BlockDelta delta = session.changesSince(before);
+        assertEquals(2, delta.inserts().size());
+        assertNull(delta.inserts().get(0).after(), "The first block is inserted at the top");
+        assertEquals("The gate stands open.", delta.inserts().get(0).block().markdown());
+        assertEquals(old.get(1), delta.inserts().get(1).after());
+        assertEquals("Night falls.", delta.inserts().get(1).block().markdown());
+        assertEquals(List.of(old.getFirst()), delta.tombstones());
+
+        assertTrue(session.changesSince(session.history()).isEmpty());
+    }
+
+    private List<String> ids() {
+        return session.history().blocks().stream().map(JournalBlock::id).toList();
+    }
+}
@@ -0,0 +1,164 @@
+package dev.ebullient.ironsworn;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.ebullient.ironsworn.model.CharacterSheet;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CharacterWriteBehindTest {
+
+    @TempDir
+    Path tempDir;
+
+    GameJournal journal;
+    /** How many of the next character writes fail. */
+    final AtomicInteger failingWrites = new AtomicInteger();
+    ScheduledExecutorService scheduler;
+    MeterRegistry registry;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        journal = new GameJournal() {
+            @Override
+            public void updateCharacter(String campaignId, CharacterSheet character) {
+                if (failingWrites.getAndDecrement() > 0) {
+                    throw new UncheckedIOException(new IOException("disk full"));
+                }
+                super.updateCharacter(campaignId, character);
+            }
+        };
+        var field = GameJournal.class.getDeclaredField("journalDir");
+        field.setAccessible(true);
+        field.set(journal, tempDir.toString());
+        journal.createStubCampaign("Test Hero");
+
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void burstOfUpdates_isWrittenOnce() throws Exception {
+        CharacterWriteBehind writer = new CharacterWriteBehind("test-hero", journal, scheduler, 200, 5000, registry);
+
+        for (int momentum = 3; momentum <= 8; momentum++) {
+            writer.submit(withMomentum(momentum));
+        }
+        assertTrue(writer.isDirty());
+        assertEquals(2, journal.readCharacter("test-hero").momentum(), "Nothing is written during the burst");
+
+        Thread.sleep(600);
+        assertFalse(writer.isDirty());
+        assertEquals(8, journal.readCharacter("test-hero").momentum());
+        assertEquals(1, registry.counter("ironsworn.character.writes").count());
+        assertEquals(5, registry.counter("ironsworn.character.coalesced").count());
+    }
+
+    @Test
+    void continuousUpdates_areWrittenWithinMaxDelay() throws Exception {
+        CharacterWriteBehind writer = new CharacterWriteBehind("test-hero", journal, scheduler, 100, 250, registry);
+
+        // Each update arrives inside the quiet period, so only the max delay forces a write
+        for (int i = 0; i < 20; i++) {
+            writer.submit(withMomentum(3 + (i % 5)));
+            Thread.sleep(50);
+        }
+        assertTrue(registry.counter("ironsworn.character.writes").count() >= 2,
+                "Writes should not wait for the updates to stop");
+        writer.flush();
+    }
+
+    @Test
+    void flush_writesImmediately() {
+        CharacterWriteBehind writer = new CharacterWriteBehind("test-hero", journal, scheduler, 60_000, 60_000, registry);
+
+        writer.submit(withMomentum(7));
+        writer.flush();
+
+        assertFalse(writer.isDirty());
+        assertEquals(7, journal.readCharacter("test-hero").momentum());
+    }
+
+    @Test
+    void zeroQuietPeriod_writesThrough() {
+        CharacterWriteBehind writer = new CharacterWriteBehind("test-hero", journal, scheduler, 0, 0, registry);
+
+        writer.submit(withMomentum(5));
+
+        assertFalse(writer.isDirty());
+        assertEquals(5, journal.readCharacter("test-hero").momentum());
+    }
+
+    @Test
+    void discard_dropsPendingAndLaterChanges() {
+        CharacterWriteBehind writer = new CharacterWriteBehind("test-hero", journal, scheduler, 60_000, 60_000, registry);
+
+        writer.submit(withMomentum(7));
+        writer.discard();
+        writer.submit(withMomentum(8));
+        writer.flush();
+
+        assertFalse(writer.isDirty());
+        assertEquals(2, journal.readCharacter("test-hero").momentum());
+        assertEquals(0, registry.counter("ironsworn.character.writes").count());
+    }
+
+    @Test
+    void failedWrite_isRetried() throws Exception {
+        CharacterWriteBehind writer = new CharacterWriteBehind("test-hero", journal, scheduler, 50, 50, registry);
+        failingWrites.set(2);
+
+        writer.submit(withMomentum(7));
+        // Retried after 250ms, then 500ms
+        Thread.sleep(1200);
+
+        assertFalse(writer.isDirty());
+        assertEquals(7, journal.readCharacter("test-hero").momentum());
+        assertEquals(2, registry.counter("ironsworn.character.write.failures").count());
+        assertEquals(1, registry.counter("ironsworn.character.writes").count());
+    }
+
+    @Test
+    void failedWrite_isSupersededByANewerSheet() throws Exception {
+        CharacterWriteBehind writer = new CharacterWriteBehind("test-hero", journal, scheduler, 60_000, 60_000, registry);
+        failingWrites.set(1);
+
+        writer.submit(withMomentum(7));
+        writer.flush();
+        assertTrue(writer.isDirty(), "The failed sheet is requeued");
+
+        writer.submit(withMomentum(8));
+        writer.flush();
+        Thread.sleep(400);
+
+        assertFalse(writer.isDirty());
+        assertEquals(8, journal.readCharacter("test-hero").momentum());
+        assertEquals(1, registry.counter("ironsworn.character.write.failures").count());
+        assertEquals(1, registry.counter("ironsworn.character.writes").count(), "The older sheet is not written");
+    }
+
+    static CharacterSheet withMomentum(int momentum) {
+        return new CharacterSheet("Test Hero", 1, 1, 1, 1, 1,
+                5, 5, 5, momentum, "", List.of());
+    }
+}
@@ -0,0 +1,113 @@
+package dev.ebullient.ironsworn;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dev.ebullient.ironsworn.chat.TokenCounter;
+
+class ContextBudgeterTest {
+
+    ContextBudgeter budgeter;
+
+    @BeforeEach
+    void setUp() {
+        budgeter = new ContextBudgeter();
+        // One token per character keeps the arithmetic readable
+        budgeter.tokens = new TokenCounter() {
+            @Override
+            public int count(String text) {
+                return text == null ? 0 : text.length();
+            }
+        };
+        budgeter.maxTokens = 4096;
+        budgeter.responseTokens = 768;
+        budgeter.memoryShare = 0.25;
+    }
+
+    @Test
+    void blocks_keepPlayerEntriesTogether() {
+        String journal = """
+                The rain falls.
+
+                <player>
+                I search the ruins.
+
+                Carefully.
+                </player>
+
+                > **Oracle** (Action / Theme): 42 → Reveal
+                """;
+
+        List<String> blocks = ContextBudgeter.blocks(journal);
+
+        assertEquals(3, blocks.size(), blocks.toString());
+        assertTrue(blocks.get(1).startsWith("<player>"));
+        assertTrue(blocks.get(1).endsWith("</player>"));
+    }
+
+    @Test
+    void trimJournal_dropsOldestBlocksAndKeepsNewest() {
+        String journal = "aaaaaaaaaa\n\nbbbbbbbbbb\n\ncccccccccc\n\ndddddddddd";
+
+        assertEquals(journal, budgeter.trimJournal(journal, 1000, 1));
+        assertEquals("cccccccccc\n\ndddddddddd", budgeter.trimJournal(journal, 25, 1));
+        assertEquals("dddddddddd", budgeter.trimJournal(journal, 1, 1));
+    }
+
+    @Test
+    void trimJournal_alignedStartIsStableAsEntriesAreAppended() {
+        String journal = "a1\n\na2\n\na3\n\na4\n\na5\n\na6";
+        String longer = journal + "\n\na7";
+
+        // Dropping two blocks at a time: both versions start at the same block
+        String trimmed = budgeter.trimJournal(journal, 15, 2);
+        String trimmedLonger = budgeter.trimJournal(longer, 15, 2);
+
+        assertTrue(trimmed.startsWith("a3"), trimmed);
+        assertTrue(trimmedLonger.startsWith("a3"), trimmedLonger);
+    }
+
+    @Test
+    void trimMemory_keepsMostRelevantExcerpts() {
+        String memory = "- first excerpt\n- second excerpt\n- third excerpt";
+
+        assertEquals("- first excerpt\n- second excerpt", budgeter.trimMemory(memory, 35));
+        assertEquals("", budgeter.trimMemory(memory, 5));
+    }
+
+    @Test
+    void allocate_countsFixedTextAndCapsMemory() {
+        var allocation = budgeter.allocate(ContextBudgeter.Prompt.NARRATE, "x".repeat(300));
+
+        assertTrue(allocation.available() < 4096 - 768 - 300, "Templates should be counted");
+        assertEquals((int) (allocation.available() * 0.25), allocation.memory());
+    }
+
+    @Test
+    void withoutPlaceholders_countsOnlyTheTemplatesOwnText() {
+        String template = """
+                Story so far: {storySummary}
+                {#if memoryContext}Remember: {memoryContext}{/if}
+                Reply as JSON: {"narrative": "..."}
+                """;
+
+        assertEquals("""
+                Story so far:\s
+                Remember:\s
+                Reply as JSON: {"narrative": "..."}
+                """, ContextBudgeter.withoutPlaceholders(template));
+    }
+
+    @Test
+    void allocate_withoutMemoryGivesTheJournalEverything() {
+        var allocation = budgeter.allocate(ContextBudgeter.Prompt.MOVE_RESULT).withoutMemory();
+
+        assertEquals(0, allocation.memory());
+        assertTrue(allocation.available() > 0);
+    }
+}
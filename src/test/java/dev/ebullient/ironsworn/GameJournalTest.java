@@ -2,6 +2,7 @@ package dev.ebullient.ironsworn;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
@@ -210,6 +211,34 @@ class GameJournalTest {
         assertEquals(5, read.vows().get(0).progress());
     }
 
+    @Test
+    void journalRevision_changesWithTheJournalSectionOnly() {
+        journal.createStubCampaign("Test Hero");
+        journal.appendNarrative("test-hero", "The gate is shut.");
+        long revision = journal.journalRevision("test-hero");
+        assertEquals(revision, journal.journalRevision("test-hero"));
+
+        journal.updateCharacter("test-hero", new CharacterSheet("Test Hero", 1, 1, 1, 1, 1,
+                5, 5, 5, 4, "Hills", List.of()));
+        assertEquals(revision, journal.journalRevision("test-hero"), "The character header is not journal content");
+
+        journal.appendNarrative("test-hero", "Night falls.");
+        assertNotEquals(revision, journal.journalRevision("test-hero"));
+    }
+
+    @Test
+    void journalRevision_seesEditsMadeOutsideTheApplication() throws IOException {
+        Campaign campaign = journal.createStubCampaign("Test Hero");
+        journal.appendNarrative("test-hero", "The gate is shut.");
+        long revision = journal.journalRevision("test-hero");
+
+        String content = Files.readString(campaign.journalPath(), StandardCharsets.UTF_8);
+        Files.writeString(campaign.journalPath(), content.replace("The gate is shut.", "The gate stands open."),
+                StandardCharsets.UTF_8);
+
+        assertNotEquals(revision, journal.journalRevision("test-hero"));
+    }
+
     @Test
     void listCampaigns_findsMultiple() {
         journal.createStubCampaign("Hero One");
@@ -2,6 +2,8 @@ package dev.ebullient.ironsworn;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.List;
+
 import org.junit.jupiter.api.Test;
 
 class JournalParserTest {
@@ -430,4 +432,76 @@ class JournalParserTest {
         assertTrue(exchanges.get(0).content().contains("Line two"));
         assertTrue(exchanges.get(0).content().contains("narrator responds"));
     }
+
+    // --- parseToBlocks ids ---
+
+    @Test
+    void parseToBlocks_idsStayStableWhenTheJournalGrows() {
+        String journal = """
+                <player>
+                I search the ruins.
+                </player>
+
+                Dust and silence.
+                """;
+        var before = JournalParser.parseToBlocks(journal, null);
+        String move = "> **Face Danger** (+wits): Action 6, Challenge 2|4 → **Strong hit**\n";
+        var after = JournalParser.parseToBlocks(journal + "\n" + move, null);
+
+        assertEquals(2, before.size());
+        assertEquals(3, after.size());
+        assertEquals(before.get(0).id(), after.get(0).id());
+        assertEquals(before.get(1).id(), after.get(1).id());
+        assertEquals("mechanical", after.get(2).type());
+        assertNull(after.get(2).html(), "No HTML without an augmenter");
+    }
+
+    @Test
+    void parseToBlocks_idDependsOnTypeAndContent() {
+        var blocks = JournalParser.parseToBlocks("""
+                <player>
+                Wait.
+                </player>
+
+                Wait.
+
+                Something else.
+                """, null);
+
+        assertEquals(3, blocks.size());
+        assertEquals("user", blocks.get(0).type());
+        assertEquals("assistant", blocks.get(1).type());
+        assertNotEquals(blocks.get(0).id(), blocks.get(1).id(), "Same text, different type");
+        assertNotEquals(blocks.get(1).id(), blocks.get(2).id());
+        assertTrue(blocks.get(0).id().matches("[0-9a-f]{12}"), blocks.get(0).id());
+    }
+
+    @Test
+    void parseToBlocks_repeatedContentGetsOccurrenceSuffix() {
+        var blocks = JournalParser.parseToBlocks("""
+                The wind howls.
+
+                The wind howls.
+
+                The wind howls.
+                """, null);
+
+        assertEquals(3, blocks.size());
+        String id = blocks.get(0).id();
+        assertEquals(id + "-2", blocks.get(1).id());
+        assertEquals(id + "-3", blocks.get(2).id());
+
+        // Editing the first copy shifts occurrence numbers only for the copies that remain
+        var edited = JournalParser.parseToBlocks("""
+                The wind screams.
+
+                The wind howls.
+
+                The wind howls.
+                """, null);
+        assertNotEquals(id, edited.get(0).id());
+        assertEquals(id, edited.get(1).id());
+        assertEquals(id + "-2", edited.get(2).id());
+        assertEquals(List.of(0, 1, 2), edited.stream().map(JournalParser.JournalBlock::index).toList());
+    }
 }
@@ -0,0 +1,190 @@
+package dev.ebullient.ironsworn;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.websockets.next.WebSocketConnection;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.UniEmitter;
+
+class OutboundChannelTest {
+
+    final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** Frames written to the connection, in order. */
+    final List<String> frames = new ArrayList<>();
+    /** Completes the send of the matching frame: sends stay in flight until the test completes them. */
+    final List<UniEmitter<? super Void>> sends = new ArrayList<>();
+    boolean connectionClosed;
+
+    SimpleMeterRegistry registry;
+    OutboundMetrics metrics;
+    PlayProtocol protocol;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new OutboundMetrics();
+        metrics.registry = registry;
+        metrics.init();
+        protocol = new PlayProtocol(objectMapper);
+    }
+
+    @Test
+    void sendCharacter_coalescesQueuedSheets() throws Exception {
+        OutboundChannel outbound = channel(16);
+
+        outbound.send("{\"type\":\"ready\"}");
+        for (int momentum = 3; momentum <= 5; momentum++) {
+            outbound.sendCharacter(CharacterWriteBehindTest.withMomentum(momentum));
+        }
+        assertEquals(2, outbound.pending(), "One frame in flight, one sheet queued");
+        assertEquals(2, registry.counter("ironsworn.ws.outbound.coalesced").count());
+
+        complete(0);
+        JsonNode sheet = objectMapper.readTree(frames.get(1));
+        assertEquals("character_update", sheet.get("type").asText());
+        assertEquals(5, sheet.get("character").get("momentum").asInt(), "Only the latest sheet is sent");
+    }
+
+    @Test
+    void sendLoading_isKeptUntilItsGenerationEnds() {
+        OutboundChannel outbound = channel(16);
+        Generation generation = new Generation(1, "narrate", null);
+
+        outbound.send("first");
+        outbound.sendLoading(generation);
+        outbound.send("oracle");
+        assertEquals(3, outbound.pending(), "Another message does not make the ping stale");
+
+        generation.complete((p, includeBlocks) -> "reply");
+        outbound.send("reply");
+        assertEquals(3, outbound.pending(), "The reply replaces the waiting ping");
+        assertEquals(1, registry.counter("ironsworn.ws.outbound.dropped", "reason", "stale_loading").count());
+
+        complete(0);
+        complete(1);
+        assertEquals(List.of("first", "oracle", "reply"), frames);
+    }
+
+    @Test
+    void enqueue_closesAClientThatFallsTooFarBehind() {
+        OutboundChannel outbound = channel(2);
+
+        outbound.send("a");
+        outbound.send("b");
+        outbound.send("c");
+        assertTrue(outbound.isOpen());
+        outbound.send("d");
+
+        assertFalse(outbound.isOpen());
+        assertTrue(connectionClosed);
+        assertEquals(1, registry.counter("ironsworn.ws.outbound.overflow").count());
+        outbound.send("e");
+        assertEquals(List.of("a"), frames, "Nothing is queued after the overflow");
+    }
+
+    @Test
+    void pendingGauges_areSharedAndReleasedOnClose() {
+        OutboundChannel first = channel(16);
+        OutboundChannel second = channel(16);
+        first.send("a");
+        second.send("b");
+        second.send("c");
+        second.send("d");
+
+        assertEquals(1, registry.find("ironsworn.ws.outbound.pending").gauges().size());
+        assertEquals(4, registry.get("ironsworn.ws.outbound.pending").gauge().value());
+        assertEquals(3, registry.get("ironsworn.ws.outbound.pending.max").gauge().value(), "The slowest connection");
+        assertEquals(3, registry.get("ironsworn.ws.outbound.queue.depth").summary().max());
+
+        first.close();
+        second.close();
+        assertEquals(0, registry.get("ironsworn.ws.outbound.pending").gauge().value());
+        assertEquals(0, registry.get("ironsworn.ws.outbound.pending.max").gauge().value());
+    }
+
+    @Test
+    void drain_batchesQueuedMessagesForV3Clients() throws Exception {
+        protocol.negotiate(PlayProtocol.V3);
+        OutboundChannel outbound = channel(64);
+
+        outbound.send("{\"type\":\"ready\"}");
+        for (int i = 0; i < OutboundChannel.MAX_BATCH + 2; i++) {
+            outbound.send("{\"n\":" + i + "}");
+        }
+        complete(0);
+
+        JsonNode batch = objectMapper.readTree(frames.get(1));
+        assertEquals("batch", batch.get("type").asText());
+        assertEquals(OutboundChannel.MAX_BATCH, batch.get("messages").size());
+        assertEquals(0, batch.get("messages").get(0).get("n").asInt());
+
+        complete(1);
+        JsonNode rest = objectMapper.readTree(frames.get(2));
+        assertEquals(2, rest.get("messages").size());
+        assertEquals(OutboundChannel.MAX_BATCH, rest.get("messages").get(0).get("n").asInt());
+        assertEquals(3, registry.get("ironsworn.ws.outbound.batch.size").summary().count());
+    }
+
+    @Test
+    void hold_sendsAHandlerStepAsOneFrame() throws Exception {
+        protocol.negotiate(PlayProtocol.V3);
+        OutboundChannel outbound = channel(16);
+
+        outbound.hold();
+        outbound.send("{\"type\":\"oracle_result\"}");
+        outbound.send("{\"type\":\"ready\"}");
+        assertTrue(frames.isEmpty(), "Held until the step finishes");
+        outbound.flush();
+
+        String oracle = "{\"type\":\"oracle_result\"}";
+        assertEquals(List.of(OutboundChannel.batch(List.of(oracle, "{\"type\":\"ready\"}"))), frames);
+        JsonNode batch = objectMapper.readTree(frames.getFirst());
+        assertEquals("oracle_result", batch.get("messages").get(0).get("type").asText());
+
+        // A single message is not wrapped
+        complete(0);
+        outbound.send("{\"type\":\"ready\"}");
+        assertEquals("{\"type\":\"ready\"}", frames.get(1));
+    }
+
+    private OutboundChannel channel(int maxPending) {
+        return new OutboundChannel(connection(), protocol, "test-hero", maxPending, metrics);
+    }
+
+    private void complete(int frame) {
+        sends.get(frame).complete(null);
+    }
+
+    private WebSocketConnection connection() {
+        return (WebSocketConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { WebSocketConnection.class },
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "id" -> "connection-1";
+                    case "isOpen" -> !connectionClosed;
+                    case "sendText" -> {
+                        frames.add((String) args[0]);
+                        yield Uni.createFrom().<Void> emitter(sends::add);
+                    }
+                    case "close" -> {
+                        connectionClosed = true;
+                        yield Uni.createFrom().voidItem();
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "test connection";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,87 @@
+package dev.ebullient.ironsworn;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.ebullient.ironsworn.model.CharacterSheet;
+
+class PlayProtocolTest {
+
+    final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void character_v1AlwaysSendsTheFullSheet() throws Exception {
+        PlayProtocol protocol = new PlayProtocol(objectMapper);
+
+        JsonNode first = read(protocol.character(sheet(2, "Moor")));
+        JsonNode second = read(protocol.character(sheet(3, "Moor")));
+
+        assertEquals("character_update", second.get("type").asText());
+        assertEquals(3, second.get("character").get("momentum").asInt());
+        assertEquals(first.get("character").get("name"), second.get("character").get("name"));
+    }
+
+    @Test
+    void character_v2SendsTheFirstSheetThenChangedFields() throws Exception {
+        PlayProtocol protocol = new PlayProtocol(objectMapper);
+        protocol.negotiate(PlayProtocol.V2);
+
+        JsonNode first = read(protocol.character(sheet(2, "Moor")));
+        assertEquals("character_update", first.get("type").asText());
+        assertEquals("Test Hero", first.get("character").get("name").asText());
+
+        JsonNode delta = read(protocol.character(sheet(5, "Moor")));
+        assertEquals("character_delta", delta.get("type").asText());
+        assertEquals(List.of("momentum"), fieldNames(delta.get("changes")));
+        assertEquals(5, delta.get("changes").get("momentum").asInt());
+
+        JsonNode unchanged = read(protocol.character(sheet(5, "Moor")));
+        assertEquals(0, unchanged.get("changes").size());
+
+        // Renegotiating (a new start) resets the baseline
+        protocol.negotiate(PlayProtocol.V2);
+        assertEquals("character_update", read(protocol.character(sheet(5, "Moor"))).get("type").asText());
+    }
+
+    @Test
+    void character_v2SendsNullForRemovedFields() throws Exception {
+        // With null fields left out of the sheet, clearing the location removes the field
+        ObjectMapper nonNull = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        PlayProtocol protocol = new PlayProtocol(nonNull);
+        protocol.negotiate(PlayProtocol.V3);
+
+        protocol.character(sheet(2, "Moor"));
+        JsonNode delta = read(protocol.character(sheet(2, null)));
+
+        assertEquals(List.of("location"), fieldNames(delta.get("changes")));
+        assertTrue(delta.get("changes").get("location").isNull());
+    }
+
+    @Test
+    void negotiate_unknownVersionFallsBackToV1() {
+        PlayProtocol protocol = new PlayProtocol(objectMapper);
+        protocol.negotiate(99);
+        assertEquals(PlayProtocol.V1, protocol.version());
+        assertFalse(protocol.isCompact());
+    }
+
+    private JsonNode read(String json) throws Exception {
+        return objectMapper.readTree(json);
+    }
+
+    private static List<String> fieldNames(JsonNode node) {
+        return node.properties().stream().map(e -> e.getKey()).toList();
+    }
+
+    private static CharacterSheet sheet(int momentum, String location) {
+        return new CharacterSheet("Test Hero", 1, 1, 1, 1, 1,
+                5, 5, 5, momentum, location, List.of());
+    }
+}
@@ -0,0 +1,57 @@
+package dev.ebullient.ironsworn;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class RequestWindowTest {
+
+    @Test
+    void claim_firstIsNotDuplicate() {
+        RequestWindow window = new RequestWindow(4);
+        assertFalse(window.claim("a", "c1").duplicate());
+    }
+
+    @Test
+    void claim_duplicateGetsFirstReply() throws Exception {
+        RequestWindow window = new RequestWindow(4);
+        window.claim("a", "c1");
+        var duplicate = window.claim("a", "c2");
+        assertTrue(duplicate.duplicate());
+        assertEquals("c1", duplicate.connectionId());
+        assertFalse(duplicate.reply().isDone());
+
+        RequestWindow.Reply reply = (protocol, outbound) -> outbound.send("{\"type\":\"ready\"}");
+        window.complete("a", reply);
+        assertSame(reply, duplicate.reply().get());
+    }
+
+    @Test
+    void forget_allowsRetryAndCancelsWaiters() {
+        RequestWindow window = new RequestWindow(4);
+        window.claim("a", "c1");
+        var waiting = window.claim("a", "c1");
+
+        window.forget("a");
+        assertTrue(waiting.reply().isCompletedExceptionally());
+        assertThrows(Exception.class, () -> waiting.reply().join());
+        assertFalse(window.claim("a", "c1").duplicate());
+    }
+
+    @Test
+    void claim_oldestIdsAreEvicted() {
+        RequestWindow window = new RequestWindow(2);
+        window.claim("a", "c1");
+        window.claim("b", "c1");
+        window.claim("c", "c1");
+        assertEquals(2, window.size());
+        assertFalse(window.claim("a", "c1").duplicate());
+        assertTrue(window.claim("c", "c1").duplicate());
+    }
+
+    @Test
+    void forget_unknownIdIsIgnored() {
+        RequestWindow window = new RequestWindow(2);
+        assertDoesNotThrow(() -> window.forget("missing"));
+    }
+}
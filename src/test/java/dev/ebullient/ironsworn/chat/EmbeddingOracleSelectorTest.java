@@ -0,0 +1,49 @@
+package dev.ebullient.ironsworn.chat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import dev.ebullient.ironsworn.ContextAssembler;
+
+class EmbeddingOracleSelectorTest {
+
+    @Test
+    void descriptions_coverEveryInspireTable() {
+        InspireOracleSelector.INSPIRE_ORACLE_TABLES.forEach((collection, tables) -> tables
+                .forEach(table -> assertNotNull(EmbeddingOracleSelector.DESCRIPTIONS.get(collection + "/" + table),
+                        collection + "/" + table)));
+    }
+
+    @Test
+    void sample_zeroTemperatureTakesClosest() {
+        double[] scores = { 0.2, 0.7, 0.5 };
+
+        assertEquals(1, EmbeddingOracleSelector.sample(scores, 0, new Random(1)));
+    }
+
+    @Test
+    void sample_favoursCloserTables() {
+        double[] scores = { 0.2, 0.7, 0.65 };
+        Random random = new Random(42);
+        int[] picks = new int[scores.length];
+        for (int i = 0; i < 1000; i++) {
+            picks[EmbeddingOracleSelector.sample(scores, 0.05, random)]++;
+        }
+
+        assertTrue(picks[0] < 5, "A distant table is practically never drawn");
+        assertTrue(picks[1] > picks[2], "The closest table is drawn most often");
+        assertTrue(picks[2] > 0, "A close runner-up is drawn sometimes");
+    }
+
+    @Test
+    void sceneQuery_ignoresBlankLines() {
+        String raw = "one\n\n\ntwo\n\nthree\n";
+        String budgeted = "one\n\ntwo\n\nthree";
+
+        assertEquals("one\ntwo\nthree", ContextAssembler.sceneQuery(raw));
+        assertEquals(ContextAssembler.sceneQuery(raw), ContextAssembler.sceneQuery(budgeted));
+    }
+}
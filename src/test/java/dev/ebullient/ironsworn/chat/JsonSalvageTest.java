@@ -0,0 +1,87 @@
+package dev.ebullient.ironsworn.chat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.guardrail.OutputGuardrailResult;
+
+class JsonSalvageTest {
+
+    final ObjectMapper mapper = new ObjectMapper();
+
+    PlayResponse read(String text) {
+        return JsonSalvage.read(mapper, text, PlayResponse.class, "narrative")
+                .map(JsonSalvage.Parsed::value)
+                .orElse(null);
+    }
+
+    @Test
+    void salvage_fenceAndTrailingProse() {
+        PlayResponse response = read("""
+                Here is the scene:
+                ```json
+                {"narrative": "The wind rises.", "npcs": ["Kira"], "location": "Hills", "choices": []}
+                ```
+                Let me know what you do next!
+                """);
+
+        assertNotNull(response);
+        assertEquals("The wind rises.", response.narrative());
+        assertEquals("Hills", response.location());
+    }
+
+    @Test
+    void salvage_unescapedQuoteAndRawNewline() {
+        PlayResponse response = read("{\"narrative\": \"She says \"run\".\nThen silence.\", \"npcs\": [],}");
+
+        assertNotNull(response);
+        assertEquals("She says \"run\".\nThen silence.", response.narrative());
+    }
+
+    @Test
+    void salvage_invalidEscape() {
+        PlayResponse response = read("{\"narrative\": \"It\\'s cold.\", \"npcs\": []}");
+
+        assertNotNull(response);
+        assertEquals("It's cold.", response.narrative());
+    }
+
+    @Test
+    void salvage_missingClosingBraces() {
+        PlayResponse response = read("{\"narrative\": \"The gate opens.\", \"npcs\": [\"Kira\", \"Ash\"], \"location\":");
+
+        assertNotNull(response);
+        assertEquals("The gate opens.", response.narrative());
+        assertEquals(2, response.npcs().size());
+        assertNull(response.location());
+    }
+
+    @Test
+    void salvage_truncatedNarrativeIsRejected() {
+        var salvaged = JsonSalvage.salvage("{\"narrative\": \"The gate opens and");
+
+        assertTrue(salvaged.isPresent());
+        assertFalse(salvaged.get().isIntact("narrative"));
+        assertNull(read("{\"narrative\": \"The gate opens and"));
+    }
+
+    @Test
+    void salvage_noObject() {
+        assertTrue(JsonSalvage.salvage("I cannot answer that.").isEmpty());
+    }
+
+    @Test
+    void guardrail_acceptsSalvagedResponse() {
+        PlayResponseGuardrail guardrail = new PlayResponseGuardrail();
+        guardrail.objectMapper = mapper;
+
+        OutputGuardrailResult result = guardrail
+                .validate(AiMessage.from("```json\n{\"narrative\": \"Test\", \"npcs\": [], \"location\": \"The Deep Wood\"}\n```"));
+        assertFalse(result.isReprompt());
+        assertInstanceOf(PlayResponse.class, result.successfulResult());
+    }
+}
@@ -0,0 +1,164 @@
+package dev.ebullient.ironsworn.chat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dev.ebullient.ironsworn.chat.LlmScheduler.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.config.SmallRyeConfigBuilder;
+
+class LlmSchedulerTest {
+
+    static final Duration WAIT = Duration.ofSeconds(10);
+
+    LlmScheduler scheduler;
+    SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        withSlots(1);
+    }
+
+    void withSlots(int maxConcurrent) {
+        registry = new SimpleMeterRegistry();
+        scheduler = new LlmScheduler();
+        scheduler.registry = registry;
+        scheduler.config = new SmallRyeConfigBuilder()
+                .withDefaultValue("ironsworn.llm.max-concurrent", String.valueOf(maxConcurrent))
+                .withDefaultValue("ironsworn.llm.max-queued", "4")
+                .build();
+    }
+
+    @Test
+    void admit_roundRobinAcrossCampaignsAndInteractiveFirst() throws Exception {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        LlmScheduler.Permit held = scheduler.admit("m", "r", 8, "a", Priority.INTERACTIVE, WAIT);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            enqueue(executor, "background", Priority.BACKGROUND, "summary", order, 1);
+            enqueue(executor, "a", Priority.INTERACTIVE, "a2", order, 2);
+            enqueue(executor, "a", Priority.INTERACTIVE, "a3", order, 3);
+            enqueue(executor, "b", Priority.INTERACTIVE, "b1", order, 4);
+
+            held.close();
+        }
+        // Campaign b is not stuck behind both of a's calls; background work goes last
+        assertEquals(List.of("a2", "b1", "a3", "summary"), order);
+    }
+
+    @Test
+    void admit_shedsWhenQueueIsFull() throws Exception {
+        LlmScheduler.Permit held = scheduler.admit("m", "r", 8, "a", Priority.INTERACTIVE, WAIT);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 1; i <= 4; i++) {
+                enqueue(executor, "c" + i, Priority.INTERACTIVE, "c" + i, order, i);
+            }
+
+            LlmBusyException e = assertThrows(LlmBusyException.class,
+                    () -> scheduler.admit("m", "r", 8, "c5", Priority.INTERACTIVE, WAIT));
+            assertEquals(LlmScheduler.BUSY_MESSAGE, e.getMessage());
+
+            held.close();
+        }
+        assertEquals(4, order.size());
+        assertEquals(1, registry.counter("ironsworn.llm.shed",
+                "model", "m", "priority", "interactive", "reason", "queue_full").count());
+    }
+
+    @Test
+    void admit_shedsAfterMaxWait() {
+        try (LlmScheduler.Permit held = scheduler.admit("m", "r", 8, "a", Priority.INTERACTIVE, WAIT)) {
+            assertThrows(LlmBusyException.class,
+                    () -> scheduler.admit("m", "r", 8, "b", Priority.INTERACTIVE, Duration.ofMillis(20)));
+            assertEquals(0, queueDepth("m"), "A shed call leaves the queue");
+        }
+        // The slot is free again
+        scheduler.admit("m", "r", 8, "b", Priority.INTERACTIVE, WAIT).close();
+    }
+
+    @Test
+    void admit_backgroundCallsLeaveASlotForPlayers() throws Exception {
+        withSlots(2);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        LlmScheduler.Permit summary = scheduler.admit("m", "summarizer", 8, "a", Priority.BACKGROUND, WAIT);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // A second background call waits although a slot is free
+            enqueue(executor, "b", Priority.BACKGROUND, "summary", order, 1);
+
+            scheduler.admit("m", "narrator", 8, "c", Priority.INTERACTIVE, Duration.ofMillis(100)).close();
+            assertEquals(List.of(), order);
+
+            summary.close();
+        }
+        assertEquals(List.of("summary"), order);
+    }
+
+    @Test
+    void admit_queueIsBoundedPerPriority() throws Exception {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        LlmScheduler.Permit held = scheduler.admit("m", "r", 8, "a", Priority.INTERACTIVE, WAIT);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 1; i <= 4; i++) {
+                enqueue(executor, "s" + i, Priority.BACKGROUND, "s" + i, order, i);
+            }
+            assertThrows(LlmBusyException.class,
+                    () -> scheduler.admit("m", "r", 8, "s5", Priority.BACKGROUND, WAIT));
+
+            // Background work filling its queue does not shed a player's call
+            enqueue(executor, "b", Priority.INTERACTIVE, "b1", order, 5);
+            held.close();
+        }
+        assertEquals("b1", order.getFirst());
+        assertEquals(5, order.size());
+    }
+
+    @Test
+    void admit_routeAtItsLimitIsPassedOver() throws Exception {
+        withSlots(2);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        LlmScheduler.Permit creation = scheduler.admit("m", "creation", 1, "a", Priority.INTERACTIVE, WAIT);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            enqueue(executor, "b", "creation", 1, Priority.INTERACTIVE, "creation", order, 1);
+
+            // The model has a free slot: a call on another route runs while the creation call waits
+            scheduler.admit("m", "narrator", 2, "c", Priority.INTERACTIVE, Duration.ofMillis(100)).close();
+            assertEquals(List.of(), order);
+
+            creation.close();
+        }
+        assertEquals(List.of("creation"), order);
+    }
+
+    /** Start a call that records its name once admitted, and wait until it is queued. */
+    private void enqueue(ExecutorService executor, String campaignId, Priority priority, String name,
+            List<String> order, int depth) throws InterruptedException {
+        enqueue(executor, campaignId, "r", 8, priority, name, order, depth);
+    }
+
+    private void enqueue(ExecutorService executor, String campaignId, String route, int routeLimit, Priority priority,
+            String name, List<String> order, int depth) throws InterruptedException {
+        executor.submit(() -> {
+            try (var permit = scheduler.admit("m", route, routeLimit, campaignId, priority, WAIT)) {
+                order.add(name);
+            }
+        });
+        long deadline = System.nanoTime() + WAIT.toNanos();
+        while (queueDepth("m") < depth) {
+            assertTrue(System.nanoTime() < deadline, "Call was not queued");
+            Thread.sleep(1);
+        }
+    }
+
+    private double queueDepth(String model) {
+        return registry.get("ironsworn.llm.queue.depth").tag("model", model).gauge().value();
+    }
+}
@@ -0,0 +1,108 @@
+package dev.ebullient.ironsworn.chat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.config.SmallRyeConfigBuilder;
+
+class ModelRouterTest {
+
+    ModelRouter router;
+    SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        var config = new SmallRyeConfigBuilder()
+                .withDefaultValue("ironsworn.llm.max-concurrent", "1")
+                .withDefaultValue("ironsworn.route.selector.max-wait", "PT0.05S")
+                .build();
+        router = new ModelRouter();
+        router.registry = registry;
+        router.config = config;
+        router.scheduler = new LlmScheduler();
+        router.scheduler.config = config;
+        router.scheduler.registry = registry;
+        router.init();
+    }
+
+    @Test
+    void call_busyRouteUsesFallback() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> first = executor.submit(() -> router.call(ModelRoute.SELECTOR, "c1", () -> {
+                started.countDown();
+                await(release);
+                return "model";
+            }));
+            started.await();
+
+            // The only slot is held: the second call waits max-wait, then falls back
+            assertEquals("fallback", router.call(ModelRoute.SELECTOR, "c2", () -> "model", () -> "fallback"));
+            assertThrows(LlmBusyException.class, () -> router.call(ModelRoute.SELECTOR, "c2", () -> "model"));
+
+            release.countDown();
+            assertEquals("model", first.get());
+        }
+        assertEquals(2, registry.counter("ironsworn.llm.route.calls", "route", "selector", "outcome", "rejected").count());
+        assertEquals(1, registry.counter("ironsworn.llm.route.calls", "route", "selector", "outcome", "fallback").count());
+    }
+
+    @Test
+    void call_failureUsesFallbackAndReleasesSlot() {
+        assertNull(router.call(ModelRoute.SELECTOR, "c1", () -> {
+            throw new IllegalStateException("model not found");
+        }, () -> null));
+
+        // The failed call released its slot
+        assertEquals("model", router.call(ModelRoute.SELECTOR, "c1", () -> "model"));
+    }
+
+    @Test
+    void call_exposesTheCampaignToTheModelCall() {
+        List<String> seen = new ArrayList<>();
+        router.call(ModelRoute.NARRATOR, "c1", () -> {
+            seen.add(router.call(ModelRoute.SELECTOR, "c2", () -> ModelRouter.currentCampaign().orElseThrow()));
+            // Restored after the nested call
+            return seen.add(ModelRouter.currentCampaign().orElseThrow());
+        });
+
+        assertEquals(List.of("c2", "c1"), seen);
+        assertTrue(ModelRouter.currentCampaign().isEmpty());
+    }
+
+    @Test
+    void call_routesOnDifferentModelsHaveSeparateSlots() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            executor.submit(() -> router.call(ModelRoute.SELECTOR, "c1", () -> {
+                started.countDown();
+                await(release);
+                return "model";
+            }));
+            started.await();
+
+            assertEquals("narration", router.call(ModelRoute.NARRATOR, "c2", () -> "narration"));
+            release.countDown();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
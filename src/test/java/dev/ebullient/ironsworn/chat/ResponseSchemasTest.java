@@ -0,0 +1,49 @@
+package dev.ebullient.ironsworn.chat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class ResponseSchemasTest {
+
+    final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void playResponse_requiresNarrativeAndThreeChoices() throws Exception {
+        JsonNode schema = mapper.readTree(ResponseSchemas.of(PlayResponse.class));
+
+        assertEquals("object", schema.get("type").asText());
+        assertEquals(4, schema.get("required").size());
+        JsonNode narrative = schema.at("/properties/narrative");
+        assertEquals("string", narrative.get("type").asText());
+        assertEquals(1, narrative.get("minLength").asInt());
+        assertTrue(narrative.get("description").asText().contains("markdown"));
+        JsonNode choices = schema.at("/properties/choices");
+        assertEquals("array", choices.get("type").asText());
+        assertEquals(3, choices.get("minItems").asInt());
+        assertEquals(3, choices.get("maxItems").asInt());
+        assertFalse(schema.at("/properties/npcs").has("minItems"));
+    }
+
+    @Test
+    void nullableComponent_allowsNull() throws Exception {
+        JsonNode schema = mapper.readTree(ResponseSchemas.of(CreationResponse.class));
+
+        JsonNode vow = schema.at("/properties/suggestedVow");
+        assertTrue(vow.get("type").isArray());
+        assertFalse(vow.has("minLength"));
+        assertEquals(1, schema.at("/properties/message/minLength").asInt());
+    }
+
+    @Test
+    void configSource_suppliesFormatForEachStructuredModel() {
+        ResponseSchemaConfigSource source = new ResponseSchemaConfigSource();
+
+        assertEquals(ResponseSchemaConfigSource.RESPONSES.size(), source.getPropertyNames().size());
+        assertEquals(ResponseSchemas.of(InspireOracleChoice.class),
+                source.getValue("quarkus.langchain4j.ollama.oracle-choice.chat-model.format"));
+    }
+}
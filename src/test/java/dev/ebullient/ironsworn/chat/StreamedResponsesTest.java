@@ -0,0 +1,60 @@
+package dev.ebullient.ironsworn.chat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.smallrye.mutiny.Multi;
+
+class StreamedResponsesTest {
+
+    @Test
+    void collect_joinsTheStreamedText() {
+        assertEquals("{\"narrative\":\"Rain.\"}",
+                StreamedResponses.collect(Multi.createFrom().items("{\"narr", "ative\":", "\"Rain.\"}")));
+    }
+
+    @Test
+    void collect_rethrowsTheStreamFailure() {
+        var failure = new IllegalStateException("model unavailable");
+        assertSame(failure, assertThrows(IllegalStateException.class,
+                () -> StreamedResponses.collect(Multi.createFrom().failure(failure))));
+    }
+
+    @Test
+    void collect_interruptCancelsTheStream() throws Exception {
+        CountDownLatch subscribed = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        Multi<String> endless = Multi.createFrom().ticks().every(Duration.ofMillis(10))
+                .map(tick -> "token ")
+                .onSubscription().invoke(subscribed::countDown)
+                .onCancellation().invoke(cancelled::countDown);
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> collecting = executor.submit(() -> StreamedResponses.collect(endless));
+            assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+
+            collecting.cancel(true);
+            assertTrue(cancelled.await(5, TimeUnit.SECONDS), "the stream should be cancelled");
+        }
+    }
+
+    @Test
+    void collect_throwsCancellationWhenInterrupted() {
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(CancellationException.class,
+                    () -> StreamedResponses.collect(Multi.createFrom().nothing()));
+            assertTrue(Thread.interrupted(), "the interrupt should be kept");
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
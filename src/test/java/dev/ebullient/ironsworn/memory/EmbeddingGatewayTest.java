@@ -0,0 +1,102 @@
+package dev.ebullient.ironsworn.memory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class EmbeddingGatewayTest {
+
+    /** Sizes of the batches the model was asked to embed. */
+    final List<Integer> batches = Collections.synchronizedList(new ArrayList<>());
+    volatile RuntimeException failure;
+
+    EmbeddingGateway gateway;
+    SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        EmbeddingModel model = segments -> {
+            batches.add(segments.size());
+            if (failure != null) {
+                throw failure;
+            }
+            return Response.from(segments.stream()
+                    .map(s -> Embedding.from(new float[] { s.text().length() }))
+                    .toList());
+        };
+        registry = new SimpleMeterRegistry();
+        gateway = new EmbeddingGateway() {
+            @Override
+            EmbeddingModel model() {
+                return model;
+            }
+        };
+        gateway.registry = registry;
+        gateway.maxBatchSize = 8;
+        gateway.maxWaitMillis = 200;
+        gateway.maxInFlight = 1;
+        gateway.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.shutdown();
+    }
+
+    @Test
+    void embedAll_concurrentCallsShareABatch() throws Exception {
+        List<Future<List<Embedding>>> results = new ArrayList<>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 1; i <= 4; i++) {
+                String text = "x".repeat(i);
+                results.add(executor.submit(() -> gateway.embedAll(List.of(
+                        TextSegment.from(text), TextSegment.from(text + text)))));
+            }
+        }
+        // Each caller gets its own embeddings, in order
+        for (int i = 1; i <= 4; i++) {
+            List<Embedding> embeddings = results.get(i - 1).get();
+            assertEquals(2, embeddings.size());
+            assertEquals(i, embeddings.get(0).vector()[0]);
+            assertEquals(2 * i, embeddings.get(1).vector()[0]);
+        }
+        assertTrue(batches.size() < 4, "Calls were not batched: " + batches);
+        assertEquals(8, batches.stream().mapToInt(Integer::intValue).sum());
+        assertEquals(8, registry.get("ironsworn.embedding.batch.size").summary().totalAmount());
+    }
+
+    @Test
+    void embedAll_oversizedCallIsSentAlone() {
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            segments.add(TextSegment.from("segment " + i));
+        }
+        assertEquals(20, gateway.embedAll(segments).size());
+        assertEquals(List.of(20), batches);
+    }
+
+    @Test
+    void embed_failureReachesTheCaller() {
+        failure = new IllegalStateException("model not found");
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> gateway.embed("scene"));
+        assertEquals("model not found", e.getMessage());
+
+        // The gateway keeps serving
+        failure = null;
+        assertEquals(5, gateway.embed("scene").vector()[0]);
+    }
+}
@@ -0,0 +1,87 @@
+package dev.ebullient.ironsworn.memory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dev.langchain4j.data.embedding.Embedding;
+
+class StoryMemoryServiceTest {
+
+    /** Texts sent to the embedding model, in order. */
+    final List<String> embedded = Collections.synchronizedList(new ArrayList<>());
+    /** Held until the test lets the embedding model answer. */
+    volatile CountDownLatch modelAnswers = new CountDownLatch(0);
+    final CountDownLatch modelCalled = new CountDownLatch(1);
+
+    StoryMemoryService memory;
+
+    @BeforeEach
+    void setUp() {
+        memory = new StoryMemoryService();
+        memory.embeddingGateway = new EmbeddingGateway() {
+            @Override
+            public Embedding embed(String text) {
+                embedded.add(text);
+                modelCalled.countDown();
+                try {
+                    modelAnswers.await();
+                } catch (InterruptedException e) {
+                    throw new CancellationException("Interrupted waiting for embeddings");
+                }
+                return Embedding.from(new float[] { text.length() });
+            }
+        };
+    }
+
+    @Test
+    void embedQuery_reusesTheLastQueryEmbedding() {
+        Embedding first = memory.embedQuery("c1", "The gate is shut.");
+
+        assertSame(first, memory.embedQuery("c1", "The gate is shut."));
+        memory.embedQuery("c2", "The gate is shut.");
+        memory.embedQuery("c1", "Night falls.");
+        assertEquals(List.of("The gate is shut.", "The gate is shut.", "Night falls."), embedded);
+    }
+
+    @Test
+    void embedQuery_secondCallerJoinsTheEmbeddingInFlight() throws Exception {
+        modelAnswers = new CountDownLatch(1);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Embedding> first = executor.submit(() -> memory.embedQuery("c1", "The gate is shut."));
+            modelCalled.await();
+            Future<Embedding> second = executor.submit(() -> memory.embedQuery("c1", "The gate is shut."));
+
+            modelAnswers.countDown();
+            assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(List.of("The gate is shut."), embedded);
+    }
+
+    @Test
+    void embedQuery_embedsAgainWhenTheFirstCallerIsCancelled() throws Exception {
+        modelAnswers = new CountDownLatch(1);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Embedding> first = executor.submit(() -> memory.embedQuery("c1", "The gate is shut."));
+            modelCalled.await();
+            Future<Embedding> second = executor.submit(() -> memory.embedQuery("c1", "The gate is shut."));
+
+            first.cancel(true);
+            // The cancelled call fails before the model answers
+            Thread.sleep(100);
+            modelAnswers.countDown();
+            assertNotNull(second.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(List.of("The gate is shut.", "The gate is shut."), embedded);
+    }
+}
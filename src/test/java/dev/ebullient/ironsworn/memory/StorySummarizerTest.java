@@ -0,0 +1,122 @@
+package dev.ebullient.ironsworn.memory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dev.ebullient.ironsworn.JournalParser.JournalExchange;
+import dev.ebullient.ironsworn.chat.ModelRoute;
+import dev.ebullient.ironsworn.chat.ModelRouter;
+import dev.ebullient.ironsworn.chat.StorySummary;
+import dev.ebullient.ironsworn.memory.StorySummarizer.SummaryState;
+
+class StorySummarizerTest {
+
+    /** Chapter texts sent to the model, in order. */
+    final List<String> summarized = new ArrayList<>();
+    final List<ModelRoute> routes = new ArrayList<>();
+
+    StorySummarizer summarizer;
+
+    @BeforeEach
+    void setUp() {
+        summarizer = new StorySummarizer();
+        summarizer.chapterExchanges = 2;
+        summarizer.chapterMaxChars = 8000;
+        summarizer.chaptersPerRun = 10;
+        summarizer.contextChapters = 2;
+        summarizer.maxChars = 2000;
+        summarizer.assistant = (campaignId, synopsis, chapter) -> {
+            summarized.add(chapter);
+            String summary = "S" + summarized.size();
+            return new StorySummary(summary, synopsis.isEmpty() ? summary : synopsis + " " + summary);
+        };
+        summarizer.router = new ModelRouter() {
+            @Override
+            public <T> T call(ModelRoute route, String campaignId, Supplier<T> call) {
+                routes.add(route);
+                return call.get();
+            }
+        };
+    }
+
+    @Test
+    void update_summarizesOnlyNewCompleteChapters() {
+        List<SummaryState> saved = new ArrayList<>();
+        SummaryState state = summarizer.update("c", new SummaryState(List.of()), exchanges(5), saved::add);
+
+        // Five exchanges: two complete chapters; the fifth is left to the recent journal
+        assertEquals(2, state.chapters().size());
+        assertEquals(List.of("one\n\ntwo", "three\n\nfour"), summarized);
+        assertEquals("S1 S2", state.synopsis());
+        assertEquals(2, saved.size(), "Each chapter is saved as it is summarized");
+        assertEquals(List.of(ModelRoute.SUMMARIZER, ModelRoute.SUMMARIZER), routes);
+
+        // Appending one exchange completes the third chapter only
+        state = summarizer.update("c", state, exchanges(6), s -> {
+        });
+        assertEquals(3, summarized.size());
+        assertEquals("five\n\nsix", summarized.getLast());
+        assertEquals("S1 S2 S3", state.synopsis());
+    }
+
+    @Test
+    void update_editResummarizesFromTheChangedChapter() {
+        SummaryState state = summarizer.update("c", new SummaryState(List.of()), exchanges(6), s -> {
+        });
+        assertEquals(3, summarized.size());
+
+        List<JournalExchange> edited = new ArrayList<>(exchanges(6));
+        edited.set(2, new JournalExchange(2, "THREE"));
+        state = summarizer.update("c", state, edited, s -> {
+        });
+
+        // Chapter 1 is kept; chapters 2 and 3 are summarized again, folded into chapter 1's synopsis
+        assertEquals(5, summarized.size());
+        assertEquals("THREE\n\nfour", summarized.get(3));
+        assertEquals("S1 S4 S5", state.synopsis());
+    }
+
+    @Test
+    void update_summarizesAtMostChaptersPerRun() {
+        summarizer.chaptersPerRun = 1;
+        SummaryState state = summarizer.update("c", new SummaryState(List.of()), exchanges(6), s -> {
+        });
+        assertEquals(1, state.chapters().size());
+        assertEquals(List.of("one\n\ntwo"), summarized);
+
+        // The next run continues from the first chapter not yet summarized
+        state = summarizer.update("c", state, exchanges(6), s -> {
+        });
+        assertEquals(2, state.chapters().size());
+        assertEquals("S1 S2", state.synopsis());
+    }
+
+    @Test
+    void render_keepsSynopsisAndLatestChaptersWithinBudget() {
+        SummaryState state = summarizer.update("c", new SummaryState(List.of()), exchanges(6), s -> {
+        });
+        String block = summarizer.render(state);
+        assertTrue(block.startsWith("S1 S2 S3\n\nLatest chapters:\n"), block);
+        assertFalse(block.contains("Chapter 1:"), block);
+        assertTrue(block.contains("- Chapter 2: S2\n- Chapter 3: S3"), block);
+
+        summarizer.maxChars = 30;
+        assertEquals("S1 S2 S3\n\nLatest chapters:\n- Chapter 3: S3", summarizer.render(state));
+        assertEquals("", summarizer.render(new SummaryState(List.of())));
+    }
+
+    private static List<JournalExchange> exchanges(int n) {
+        String[] words = { "one", "two", "three", "four", "five", "six" };
+        List<JournalExchange> exchanges = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            exchanges.add(new JournalExchange(i, words[i]));
+        }
+        return exchanges;
+    }
+}